@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Runs the @Scheduled methods of the services (e.g. the due date scanner
+// of RecommendationRequests) on Spring's single scheduler thread.
+@Configuration
+@EnableScheduling
+class SchedulingConfig {}
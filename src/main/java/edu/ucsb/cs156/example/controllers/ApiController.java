@@ -1,5 +1,6 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.errors.EntityConflictException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -31,4 +32,13 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ EntityConflictException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleConflictException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
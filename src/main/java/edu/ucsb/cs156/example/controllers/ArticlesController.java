@@ -1,8 +1,13 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.errors.EntityConflictException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.ArticlesFeedPage;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.services.ArticleUrlService;
+import edu.ucsb.cs156.example.services.ArticlesAtomFeedService;
+import edu.ucsb.cs156.example.services.ArticlesFeedService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,19 +18,27 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.List;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 @Tag(name = "Articles")
@@ -37,6 +50,21 @@ public class ArticlesController extends ApiController{
     @Autowired
     ArticlesRepository articlesRepository;
 
+    @Autowired
+    ArticleUrlService articleUrlService;
+
+    @Autowired
+    ArticlesFeedService articlesFeedService;
+
+    @Autowired
+    ArticlesAtomFeedService articlesAtomFeedService;
+
+    // what postArticle does when an article with the same canonical url exists:
+    // ALLOW saves another one, REJECT answers 409, MERGE updates the oldest
+    // existing article with the posted fields (keeping its dateAdded); the
+    // last two hold ArticleUrlService.lockFor(url) from the check to the save
+    public enum OnDuplicate { ALLOW, REJECT, MERGE }
+
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -45,6 +73,72 @@ public class ArticlesController extends ApiController{
         return articles;
     }
 
+    @Operation(summary= "Articles newest first, one page at a time; pass the nextCursor of a page to get the page after it")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/feed", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ArticlesFeedPage feed(
+            @Parameter(name="cursor", description="nextCursor from the previous page; omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(name="limit", description="articles per page (1-100)") @RequestParam(defaultValue = "20") int limit) {
+        return articlesFeedService.page(feedCursor(cursor), Math.max(1, Math.min(100, limit)));
+    }
+
+    @Operation(summary= "Articles newest first as newline delimited JSON, streamed from the database")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/feed", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void feedNdjson(
+            @Parameter(name="cursor", description="start after this cursor; omit to start with the newest article") @RequestParam(required = false) String cursor,
+            @Parameter(name="limit", description="maximum number of articles; omit for all of them") @RequestParam(required = false) Integer limit,
+            HttpServletResponse response) throws IOException {
+        ArticlesFeedService.Cursor after = feedCursor(cursor);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        articlesFeedService.writeNdjson(after, limit == null ? null : Math.max(0, limit), response.getOutputStream());
+    }
+
+    // Public so that feed readers, which cannot log in, can subscribe.
+    // The feed is served from memory; unchanged polls are answered with 304.
+    @Operation(summary= "Atom feed of the newest articles")
+    @GetMapping("/atom")
+    public void atomFeed(
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+            ServletWebRequest webRequest,
+            HttpServletResponse response) throws IOException {
+        ArticlesAtomFeedService.Rendered feed = articlesAtomFeedService.current();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        response.setHeader("Vary", "Accept-Encoding");
+        if (webRequest.checkNotModified(gzip ? feed.gzipEtag() : feed.etag(), feed.lastModified())) {
+            return;
+        }
+
+        byte[] body = gzip ? feed.gzipped() : feed.xml();
+        response.setContentType("application/atom+xml;charset=UTF-8");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase().split(",")) {
+            String[] parts = coding.trim().split("\\s*;\\s*");
+            if (parts[0].equals("gzip") && !(parts.length > 1 && parts[1].matches("q=0(\\.0*)?"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ArticlesFeedService.Cursor feedCursor(String cursor) {
+        try {
+            return ArticlesFeedService.decodeCursor(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @Operation(summary= "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
@@ -56,6 +150,14 @@ public class ArticlesController extends ApiController{
         return article;
     }
 
+    @Operation(summary= "Articles with the same url, after normalizing case, default ports, trailing slashes, fragments, tracking parameters and parameter order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/byUrl")
+    public List<Articles> getByUrl(
+            @Parameter(name="url") @RequestParam String url) {
+        return articleUrlService.findByUrl(url);
+    }
+
 
     @Operation(summary= "Create a new Article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -66,23 +168,52 @@ public class ArticlesController extends ApiController{
         @Parameter(name="explanation") @RequestParam String explanation,
         @Parameter(name="email") @RequestParam String email,
 
-        @Parameter(name="dateAdded") @RequestParam("dateAdded") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime localDateTime) 
+        @Parameter(name="dateAdded") @RequestParam("dateAdded") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime localDateTime,
+        @Parameter(name="onDuplicate", description="ALLOW, REJECT or MERGE when the url is already used") @RequestParam(defaultValue="ALLOW") OnDuplicate onDuplicate) 
         
         throws JsonProcessingException{
             log.info("dateAdded={} ", localDateTime);
-            
-            Articles article = new Articles();
-            article.setTitle(title);
-            article.setUrl(url);
-            article.setExplanation(explanation);
-            article.setEmail(email);
-            article.setDateAdded(localDateTime);
-
-            Articles savedArticle = articlesRepository.save(article);
 
-            return savedArticle;
+            if (onDuplicate == OnDuplicate.ALLOW) {
+                return saveNewArticle(title, url, explanation, email, localDateTime);
+            }
+
+            // the check and the insert as one step, so two posts of the same url can not both insert
+            synchronized (ArticleUrlService.lockFor(url)) {
+                List<Articles> existing = articleUrlService.findByUrl(url);
+                if (!existing.isEmpty() && onDuplicate == OnDuplicate.REJECT) {
+                    throw new EntityConflictException("Article with url %s already exists (id %d)".formatted(url, existing.get(0).getId()));
+                }
+                if (!existing.isEmpty()) {
+                    Articles article = existing.get(0);
+                    article.setTitle(title);
+                    article.setUrl(url);
+                    article.setExplanation(explanation);
+                    article.setEmail(email);
+                    article.setUrlHash(ArticleUrlService.hash(url));
+                    Articles mergedArticle = articlesRepository.save(article);
+                    articlesAtomFeedService.invalidate();
+                    return mergedArticle;
+                }
+                return saveNewArticle(title, url, explanation, email, localDateTime);
+            }
         }
 
+    private Articles saveNewArticle(String title, String url, String explanation, String email, LocalDateTime localDateTime) {
+        Articles article = new Articles();
+        article.setTitle(title);
+        article.setUrl(url);
+        article.setExplanation(explanation);
+        article.setEmail(email);
+        article.setDateAdded(localDateTime);
+        article.setUrlHash(ArticleUrlService.hash(url));
+
+        Articles savedArticle = articlesRepository.save(article);
+        articlesAtomFeedService.invalidate();
+
+        return savedArticle;
+    }
+
     @Operation(summary= "Update an existing article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
@@ -99,8 +230,10 @@ public class ArticlesController extends ApiController{
         article.setExplanation(incoming.getExplanation());
         article.setEmail(incoming.getEmail());
         article.setDateAdded(incoming.getDateAdded());
+        article.setUrlHash(ArticleUrlService.hash(incoming.getUrl()));
 
         articlesRepository.save(article);
+        articlesAtomFeedService.invalidate();
 
         return article;
     }
@@ -114,6 +247,7 @@ public class ArticlesController extends ApiController{
         Articles article = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
         articlesRepository.delete(article);
+        articlesAtomFeedService.invalidate();
         return genericMessage("Article with id %s deleted".formatted(id));
     }
     
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestStreamService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,15 +14,18 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 import java.time.LocalDateTime;
@@ -37,6 +41,9 @@ public class HelpRequestController extends ApiController{
     @Autowired
     HelpRequestRepository requestRepository;
 
+    @Autowired
+    HelpRequestStreamService helpRequestStreamService;
+
     @Operation(summary= "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -56,6 +63,14 @@ public class HelpRequestController extends ApiController{
         return request;
     }
 
+    @Operation(summary= "Stream help request changes as server-sent events (created, updated, deleted; resync means reload /all)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @Parameter(name="Last-Event-ID", description="id of the last event received, to replay what was missed") @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return helpRequestStreamService.subscribe(lastEventId);
+    }
+
 
     @Operation(summary= "Create a new help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -77,6 +92,7 @@ public class HelpRequestController extends ApiController{
             request.setRequestDateTime(requestDateTime);
 
             HelpRequest savedArticle = requestRepository.save(request);
+            helpRequestStreamService.publish("created", savedArticle);
 
             return savedArticle;
         }
@@ -90,6 +106,7 @@ public class HelpRequestController extends ApiController{
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
         requestRepository.delete(commons);
+        helpRequestStreamService.publish("deleted", HelpRequestStreamService.deleted(id));
         return genericMessage("HelpRequest with id %d deleted".formatted(id));
     }
 
@@ -110,6 +127,7 @@ public class HelpRequestController extends ApiController{
         request.setRequestDateTime(incoming.getRequestDateTime());
 
         requestRepository.save(request);
+        helpRequestStreamService.publish("updated", request);
 
         return request;
     }
@@ -2,7 +2,16 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.MenuItemRatingStats;
+import edu.ucsb.cs156.example.models.ReviewIngestMetrics;
+import edu.ucsb.cs156.example.models.ReviewIngestStatus;
+import edu.ucsb.cs156.example.models.TopMenuItem;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewIngestService;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.MenuItemReviewTopService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,7 +21,11 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -22,8 +35,11 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 import javax.validation.Valid;
 
@@ -36,6 +52,18 @@ public class MenuItemReviewController extends ApiController {
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    MenuItemReviewStatsService menuItemReviewStatsService;
+
+    @Autowired
+    MenuItemReviewTopService menuItemReviewTopService;
+
+    @Autowired
+    MenuItemReviewIngestService menuItemReviewIngestService;
+
+    @Autowired
+    UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
     @Operation(summary = "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -44,6 +72,72 @@ public class MenuItemReviewController extends ApiController {
         return menuItemReviews;
     }
 
+    @Operation(summary = "One page of the reviews of a menu item, newest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/byItem")
+    public Page<MenuItemReview> reviewsByItem(
+        @Parameter(name="itemId") @RequestParam Long itemId,
+        @Parameter(name="page", description="page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+        @Parameter(name="size", description="reviews per page (1-100)") @RequestParam(defaultValue = "20") int size
+    ) {
+        return menuItemReviewRepository.findPageByItemId(itemId, pageRequest(page, size));
+    }
+
+    @Operation(summary = "One page of the reviews written by a reviewer, newest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/byReviewer")
+    public Page<MenuItemReview> reviewsByReviewer(
+        @Parameter(name="reviewerEmail") @RequestParam String reviewerEmail,
+        @Parameter(name="page", description="page number, starting at 0") @RequestParam(defaultValue = "0") int page,
+        @Parameter(name="size", description="reviews per page (1-100)") @RequestParam(defaultValue = "20") int size
+    ) {
+        return menuItemReviewRepository.findPageByReviewerEmail(reviewerEmail, pageRequest(page, size));
+    }
+
+    private static PageRequest pageRequest(int page, int size) {
+        return PageRequest.of(Math.max(0, page), Math.max(1, Math.min(100, size)));
+    }
+
+    @Operation(summary = "Review count, star total, average and 0-5 star histogram of a menu item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats")
+    public MenuItemRatingStats statsForItem(
+        @Parameter(name="itemId") @RequestParam long itemId
+    ) {
+        return menuItemReviewStatsService.get(itemId);
+    }
+
+    @Operation(summary = "Rating stats of every reviewed menu item, keyed by itemId")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/stats/all")
+    public Map<Long, MenuItemRatingStats> statsForAllItems() {
+        return menuItemReviewStatsService.getAll();
+    }
+
+    @Operation(summary = "The k best rated menu items, by average stars then number of reviews")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/top")
+    public List<TopMenuItem> topMenuItems(
+        @Parameter(name="k", description="how many items, 1 to 100") @RequestParam(defaultValue = "10") int k,
+        @Parameter(name="since", description="only count reviews on or after this time (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+        @Parameter(name="diningCommonsCode", description="only items of this dining commons") @RequestParam(required = false) String diningCommonsCode
+    ) {
+        return menuItemReviewTopService.top(Math.max(1, Math.min(100, k)), since, diningCommonsCode);
+    }
+
+    @Operation(summary = "Check the rating stats against a recount of the reviews table, optionally repairing them")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/stats/verify")
+    public ConsistencyReport verifyStats(
+        @Parameter(name="repair", description="replace the stats with the recount if they differ") @RequestParam(defaultValue = "false") boolean repair
+    ) {
+        ConsistencyReport report = menuItemReviewStatsService.verify(repair);
+        if (report.getRepaired()) {
+            ucsbDiningCommonsSnapshotService.invalidateAll();
+        }
+        return report;
+    }
+
     @Operation(summary = "Create a new MenuItemReview")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
@@ -55,6 +149,7 @@ public class MenuItemReviewController extends ApiController {
         @Parameter(name="comments") @RequestParam String comments
     ) throws JsonProcessingException {
 
+        long started = System.nanoTime();
         log.info("postItemReview: itemId={}, reviewerEmail={}, stars={}, dateReviewed={}, comments={}", itemId, reviewerEmail, stars, dateReviewed, comments);
         MenuItemReview menuItemReview = MenuItemReview.builder()
             .itemId(itemId)
@@ -64,7 +159,51 @@ public class MenuItemReviewController extends ApiController {
             .comments(comments)
             .build();
         
-        return menuItemReviewRepository.save(menuItemReview);
+        MenuItemReview savedMenuItemReview = menuItemReviewRepository.save(menuItemReview);
+        menuItemReviewStatsService.add(savedMenuItemReview.getItemId(), savedMenuItemReview.getStars());
+        menuItemReviewTopService.invalidate();
+        ucsbDiningCommonsSnapshotService.invalidateItem(savedMenuItemReview.getItemId());
+        menuItemReviewIngestService.recordSync(System.nanoTime() - started);
+        return savedMenuItemReview;
+    }
+
+    @Operation(summary = "Queue a new MenuItemReview to be written in the background; answers 202 with a trackingId, or 503 if the queue is full")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/post/async")
+    public ResponseEntity<Map<String, String>> postItemReviewAsync(
+        @Parameter(name="itemId") @RequestParam Long itemId,
+        @Parameter(name="reviewerEmail") @RequestParam String reviewerEmail,
+        @Parameter(name="stars") @RequestParam int stars,
+        @Parameter(name="dateReviewed") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateReviewed,
+        @Parameter(name="comments") @RequestParam String comments
+    ) {
+        MenuItemReview menuItemReview = MenuItemReview.builder()
+            .itemId(itemId)
+            .reviewerEmail(reviewerEmail)
+            .stars(stars)
+            .dateReviewed(dateReviewed)
+            .comments(comments)
+            .build();
+
+        String trackingId = menuItemReviewIngestService.submit(menuItemReview)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "review queue is full, try again later"));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("trackingId", trackingId));
+    }
+
+    @Operation(summary = "Whether a review queued by /post/async has been written (QUEUED, WRITTEN, FAILED or UNKNOWN)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/post/async")
+    public ReviewIngestStatus asyncPostStatus(
+        @Parameter(name="trackingId") @RequestParam String trackingId
+    ) {
+        return menuItemReviewIngestService.status(trackingId);
+    }
+
+    @Operation(summary = "Throughput and latency of /post compared with /post/async")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/ingest/metrics")
+    public ReviewIngestMetrics ingestMetrics() {
+        return menuItemReviewIngestService.metrics();
     }
 
     @Operation(summary = "Get a single menu item review")
@@ -88,6 +227,8 @@ public class MenuItemReviewController extends ApiController {
     ) {
         MenuItemReview existingMenuItemReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        Long oldItemId = existingMenuItemReview.getItemId();
+        int oldStars = existingMenuItemReview.getStars();
 
         existingMenuItemReview.setItemId(menuItemReview.getItemId());
         existingMenuItemReview.setReviewerEmail(menuItemReview.getReviewerEmail());
@@ -96,6 +237,10 @@ public class MenuItemReviewController extends ApiController {
         existingMenuItemReview.setComments(menuItemReview.getComments());
 
         menuItemReviewRepository.save(existingMenuItemReview);
+        menuItemReviewStatsService.update(oldItemId, oldStars, existingMenuItemReview.getItemId(), existingMenuItemReview.getStars());
+        menuItemReviewTopService.invalidate();
+        ucsbDiningCommonsSnapshotService.invalidateItem(oldItemId);
+        ucsbDiningCommonsSnapshotService.invalidateItem(existingMenuItemReview.getItemId());
 
         return existingMenuItemReview;
     }
@@ -110,6 +255,9 @@ public class MenuItemReviewController extends ApiController {
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
         menuItemReviewRepository.delete(menuItemReview);
+        menuItemReviewStatsService.remove(menuItemReview.getItemId(), menuItemReview.getStars());
+        menuItemReviewTopService.invalidate();
+        ucsbDiningCommonsSnapshotService.invalidateItem(menuItemReview.getItemId());
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 }
\ No newline at end of file
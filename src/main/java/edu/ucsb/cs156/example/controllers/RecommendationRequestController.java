@@ -1,8 +1,16 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.errors.EntityConflictException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.DueScanMetrics;
+import edu.ucsb.cs156.example.models.DueSoonEvent;
+import edu.ucsb.cs156.example.models.InboxSummary;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.RecommendationRequestClaimService;
+import edu.ucsb.cs156.example.services.RecommendationRequestDueScanService;
+import edu.ucsb.cs156.example.services.RecommendationRequestInboxService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,6 +19,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -25,17 +35,30 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 
 @Tag(name = "RecommendationRequest")
 @RequestMapping("/api/recommendationrequest")
 @RestController
 public class RecommendationRequestController extends ApiController{
+
+    // later than any dateNeeded, for the queue without the overdue filter
+    static final LocalDateTime NO_DEADLINE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
     
     // Create the Repository Instance
     @Autowired
     RecommendationRequestRepository recommendationRequestRepository;
 
+    @Autowired
+    RecommendationRequestClaimService recommendationRequestClaimService;
+
+    @Autowired
+    RecommendationRequestInboxService recommendationRequestInboxService;
+
+    @Autowired
+    RecommendationRequestDueScanService recommendationRequestDueScanService;
+
     // GET /api/recommendationrequest/all
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
@@ -57,6 +80,60 @@ public class RecommendationRequestController extends ApiController{
         return recommendationRequest;
     }
 
+    // GET /api/recommendationrequest/queue?professorEmail&limit&overdue
+    @Operation(summary= "Open recommendation requests, soonest dateNeeded first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/queue")
+    public List<RecommendationRequest> queue(
+            @Parameter(name="professorEmail", description="only the requests to this professor; all professors if omitted") @RequestParam(required = false) String professorEmail,
+            @Parameter(name="limit", description="at most this many requests (1-500)") @RequestParam(defaultValue = "50") int limit,
+            @Parameter(name="overdue", description="only the requests whose dateNeeded has passed") @RequestParam(defaultValue = "false") boolean overdue) {
+        LocalDateTime before = overdue ? LocalDateTime.now() : NO_DEADLINE;
+        PageRequest first = PageRequest.of(0, Math.max(1, Math.min(500, limit)));
+        if (professorEmail == null || professorEmail.isBlank()) {
+            return recommendationRequestRepository.findOpen(before, first);
+        }
+        return recommendationRequestRepository.findOpenByProfessorEmail(professorEmail, before, first);
+    }
+
+    // GET /api/recommendationrequest/inbox-summary?professorEmail
+    @Operation(summary= "Open, overdue and completed request counts per professor")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/inbox-summary")
+    public List<InboxSummary> inboxSummary(
+            @Parameter(name="professorEmail", description="only this professor; every professor with requests if omitted") @RequestParam(required = false) String professorEmail) {
+        if (professorEmail == null || professorEmail.isBlank()) {
+            return recommendationRequestInboxService.getAll();
+        }
+        return List.of(recommendationRequestInboxService.get(professorEmail));
+    }
+
+    // GET /api/recommendationrequest/inbox-summary/verify?repair
+    @Operation(summary= "Check the inbox counts against a fresh aggregate of the table, optionally repairing them")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/inbox-summary/verify")
+    public ConsistencyReport verifyInboxSummary(
+            @Parameter(name="repair", description="replace the counts with the aggregate if they differ") @RequestParam(defaultValue = "false") boolean repair) {
+        return recommendationRequestInboxService.verify(repair);
+    }
+
+    // GET /api/recommendationrequest/due-soon?after
+    @Operation(summary= "Open recommendation requests that came within 48 hours (by default) of their dateNeeded, oldest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/due-soon")
+    public List<DueSoonEvent> dueSoon(
+            @Parameter(name="after", description="only events with a greater id, e.g. the last id seen") @RequestParam(defaultValue = "0") long after) {
+        return recommendationRequestDueScanService.eventsAfter(after);
+    }
+
+    // GET /api/recommendationrequest/due-soon/metrics
+    @Operation(summary= "Runs, run durations and rows scanned of the due date scanner")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/due-soon/metrics")
+    public DueScanMetrics dueSoonMetrics() {
+        return recommendationRequestDueScanService.metrics();
+    }
+
     // POST /api/recommendationrequest/post
     @Operation(summary= "Create a new recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -81,6 +158,8 @@ public class RecommendationRequestController extends ApiController{
                                         .build();
         
         RecommendationRequest savedRequest = recommendationRequestRepository.save(request);
+        recommendationRequestInboxService.add(savedRequest.getProfessorEmail(), savedRequest.getDateNeeded(), savedRequest.getDone());
+        recommendationRequestDueScanService.created(savedRequest);
 
         return savedRequest;    
     }
@@ -100,6 +179,16 @@ public class RecommendationRequestController extends ApiController{
                 .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
 
 
+        // Refuse to overwrite changes the client has not seen
+        if (nReq.getVersion() != null && !nReq.getVersion().equals(request.getVersion())) {
+            throw new EntityConflictException("RecommendationRequest with id %d was changed since version %d (now version %s)".formatted(id, nReq.getVersion(), request.getVersion()));
+        }
+
+        // What the inbox counts have for it now
+        String oldProfessorEmail = request.getProfessorEmail();
+        LocalDateTime oldDateNeeded = request.getDateNeeded();
+        boolean oldDone = request.getDone();
+
         // Update the fields
         request.setRequesterEmail(nReq.getRequesterEmail());
         request.setProfessorEmail(nReq.getProfessorEmail());
@@ -108,12 +197,41 @@ public class RecommendationRequestController extends ApiController{
         request.setDateNeeded(nReq.getDateNeeded());
         request.setDone(nReq.getDone());
 
-        // Save the updated recommendation request
-        recommendationRequestRepository.save(request);
+        // Save the updated recommendation request; the saved copy carries the new version
+        try {
+            request = recommendationRequestRepository.save(request);
+        } catch (OptimisticLockingFailureException e) {
+            throw new EntityConflictException("RecommendationRequest with id %d was changed while it was being updated".formatted(id));
+        }
+        recommendationRequestInboxService.update(oldProfessorEmail, oldDateNeeded, oldDone,
+                request.getProfessorEmail(), request.getDateNeeded(), request.getDone());
+        recommendationRequestDueScanService.updated(oldDateNeeded, oldDone, request);
 
         return request;    
     }
 
+    // POST /api/recommendationrequest/claim?id&version
+    @Operation(summary= "Claim an open recommendation request for the current user; 409 if it changed since the given version")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/claim")
+    public RecommendationRequest claimRecommendationRequest(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="version", description="the version of the request as last read") @RequestParam Long version) {
+        return recommendationRequestClaimService.claim(id, version, getCurrentUser().getUser().getEmail());
+    }
+
+    // POST /api/recommendationrequest/complete?id&version
+    @Operation(summary= "Mark an open recommendation request done; 409 if it changed since the given version or someone else claimed it")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/complete")
+    public RecommendationRequest completeRecommendationRequest(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="version", description="the version of the request as last read") @RequestParam Long version) {
+        RecommendationRequest completed = recommendationRequestClaimService.complete(id, version, getCurrentUser().getUser().getEmail());
+        recommendationRequestDueScanService.removed(completed);
+        return completed;
+    }
+
     // DELETE /api/recommendationrequest/delete
     @Operation(summary= "Delete an existing recommendation request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
@@ -127,6 +245,8 @@ public class RecommendationRequestController extends ApiController{
 
         // Delete the recommendation request
         recommendationRequestRepository.delete(request);
+        recommendationRequestInboxService.remove(request.getProfessorEmail(), request.getDateNeeded(), request.getDone());
+        recommendationRequestDueScanService.removed(request);
         
         return genericMessage("RecommendationRequest with id %s deleted".formatted(id));
 
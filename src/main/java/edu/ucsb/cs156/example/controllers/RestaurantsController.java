@@ -2,12 +2,16 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Restaurant;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BulkUpsertResult;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.RestaurantIndexService;
+import edu.ucsb.cs156.example.services.RestaurantUpsertService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,8 +22,12 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.util.List;
+
 @Tag(name = "Restaurants")
 @RequestMapping("/api/restaurants")
 @RestController
@@ -28,6 +36,12 @@ public class RestaurantsController extends ApiController {
     @Autowired
     RestaurantRepository restaurantRepository;
 
+    @Autowired
+    RestaurantIndexService restaurantIndexService;
+
+    @Autowired
+    RestaurantUpsertService restaurantUpsertService;
+
     @Operation(summary = "List all restaurants")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -36,6 +50,24 @@ public class RestaurantsController extends ApiController {
         return restaurants;
     }
 
+    @Operation(summary = "Search restaurants by name and description, best match first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public List<Restaurant> searchRestaurants(
+            @Parameter(name = "q", description = "words to search for") @RequestParam String q,
+            @Parameter(name = "limit", description = "maximum number of results (1-100)") @RequestParam(defaultValue = "20") int limit) {
+        return restaurantIndexService.search(q, Math.max(1, Math.min(100, limit)));
+    }
+
+    @Operation(summary = "Restaurants with a word in their name starting with the prefix, for type-ahead")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/autocomplete")
+    public List<Restaurant> autocompleteRestaurants(
+            @Parameter(name = "prefix", description = "what has been typed so far") @RequestParam String prefix,
+            @Parameter(name = "limit", description = "maximum number of results (1-50)") @RequestParam(defaultValue = "10") int limit) {
+        return restaurantIndexService.autocomplete(prefix, Math.max(1, Math.min(50, limit)));
+    }
+
     @Operation(summary = "Get a single restaurant")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
@@ -59,6 +91,7 @@ public class RestaurantsController extends ApiController {
         restaurant.setDescription(description);
         
         Restaurant savedrestaurant = restaurantRepository.save(restaurant);
+        restaurantIndexService.put(savedrestaurant);
         return savedrestaurant;
     }
 
@@ -71,6 +104,7 @@ public class RestaurantsController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(Restaurant.class, id));
 
         restaurantRepository.delete(restaurant);
+        restaurantIndexService.remove(restaurant.getId());
         return genericMessage("Restaurant with id %s deleted".formatted(id));
     }
 
@@ -88,7 +122,23 @@ public class RestaurantsController extends ApiController {
         restaurant.setDescription(incoming.getDescription());
 
         restaurantRepository.save(restaurant);
+        restaurantIndexService.put(restaurant);
 
         return restaurant;
     }
+
+    @Operation(summary = "Insert or update many restaurants from a JSON array; rows with an id update that restaurant, rows without one are matched by name")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkUpsertResult bulkUpsertRestaurants(
+            @RequestBody List<Restaurant> restaurants) {
+        return restaurantUpsertService.upsert(restaurants);
+    }
+
+    @Operation(summary = "Insert or update many restaurants from newline delimited JSON, one restaurant per line")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BulkUpsertResult bulkUpsertRestaurantsNdjson(HttpServletRequest request) throws IOException {
+        return restaurantUpsertService.upsertNdjson(request.getInputStream());
+    }
 }
\ No newline at end of file
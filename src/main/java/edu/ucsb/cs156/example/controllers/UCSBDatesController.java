@@ -2,7 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.UCSBDateImportResult;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.UCSBDateCalendarService;
+import edu.ucsb.cs156.example.services.UCSBDateImportService;
+import edu.ucsb.cs156.example.services.UCSBDateIndexService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,6 +17,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -22,10 +27,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Tag(name = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -36,6 +47,15 @@ public class UCSBDatesController extends ApiController {
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
+    @Autowired
+    UCSBDateIndexService ucsbDateIndexService;
+
+    @Autowired
+    UCSBDateCalendarService ucsbDateCalendarService;
+
+    @Autowired
+    UCSBDateImportService ucsbDateImportService;
+
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -44,6 +64,35 @@ public class UCSBDatesController extends ApiController {
         return dates;
     }
 
+    @Operation(summary= "List ucsb dates between two times (inclusive), optionally for a single quarter")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/range")
+    public List<UCSBDate> rangeOfUCSBDates(
+            @Parameter(name="from", description="in iso format, e.g. YYYY-mm-ddTHH:MM:SS") @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(name="to", description="in iso format, e.g. YYYY-mm-ddTHH:MM:SS") @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(name="quarter", description="quarter in YYYYQ format, e.g. 20222; omit for all quarters") @RequestParam(name="quarter", required=false) String quarter) {
+        return ucsbDateIndexService.range(from, to, quarter);
+    }
+
+    // Public so that calendar clients, which cannot log in, can subscribe.
+    // Unchanged polls are answered with 304 from in-memory state alone.
+    @Operation(summary= "iCalendar (.ics) feed of the dates in a quarter")
+    @GetMapping("/ics")
+    public void icsForQuarter(
+            @Parameter(name="quarter", description="quarter in YYYYQ format, e.g. 20222") @RequestParam String quarter,
+            ServletWebRequest webRequest,
+            HttpServletResponse response) throws IOException {
+        String etag = ucsbDateIndexService.etagForQuarter(quarter);
+        long lastModified = ucsbDateIndexService.lastModifiedForQuarter(quarter);
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setContentType("text/calendar;charset=UTF-8");
+        response.setHeader("Content-Disposition", "inline; filename=\"ucsbdates-%s.ics\"".formatted(quarter.replaceAll("[^0-9A-Za-z]", "")));
+        ucsbDateCalendarService.writeQuarter(quarter, lastModified, response.getWriter());
+    }
+
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
@@ -75,10 +124,33 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(localDateTime);
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        ucsbDateIndexService.put(savedUcsbDate);
 
         return savedUcsbDate;
     }
 
+    @Operation(summary= "Import dates from a CSV file with columns quarterYYYYQ,name,localDateTime")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public UCSBDateImportResult importUCSBDates(
+            @Parameter(name="file", description="CSV file; an optional header row is skipped") @RequestParam("file") MultipartFile file,
+            @Parameter(name="batchSize", description="rows per JDBC batch (default from app.ucsbdates.import.batchSize)") @RequestParam(name="batchSize", required=false) Integer batchSize)
+            throws IOException {
+
+        UCSBDateImportResult result;
+        try (InputStream in = file.getInputStream()) {
+            result = ucsbDateImportService.importCsv(in, batchSize);
+        }
+
+        // the rows were inserted with plain JDBC, so the index picks up
+        // their generated ids by reloading each quarter that was touched
+        for (String quarter : result.getQuarters()) {
+            ucsbDateIndexService.reloadQuarter(quarter, ucsbDateRepository.findAllByQuarterYYYYQ(quarter));
+        }
+
+        return result;
+    }
+
     @Operation(summary= "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
@@ -88,6 +160,7 @@ public class UCSBDatesController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
         ucsbDateRepository.delete(ucsbDate);
+        ucsbDateIndexService.remove(ucsbDate.getId());
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
@@ -106,6 +179,7 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
         ucsbDateRepository.save(ucsbDate);
+        ucsbDateIndexService.put(ucsbDate);
 
         return ucsbDate;
     }
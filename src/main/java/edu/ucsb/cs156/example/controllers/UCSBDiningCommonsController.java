@@ -2,22 +2,33 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DiningCommonsDistance;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsGeoIndexService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.List;
 
 import javax.validation.Valid;
 
@@ -29,6 +40,12 @@ public class UCSBDiningCommonsController extends ApiController {
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    UCSBDiningCommonsGeoIndexService ucsbDiningCommonsGeoIndexService;
+
+    @Autowired
+    UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -48,6 +65,28 @@ public class UCSBDiningCommonsController extends ApiController {
         return commons;
     }
 
+    @Operation(summary= "A commons with its menu items grouped by station and the rating stats of each item")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/{code}/snapshot", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] snapshot(
+            @Parameter(name="code") @PathVariable String code) throws JsonProcessingException {
+        return ucsbDiningCommonsSnapshotService.snapshot(code);
+    }
+
+    @Operation(summary= "The k dining commons nearest to a location, nearest first, with their distance in km")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<DiningCommonsDistance> nearestCommons(
+            @Parameter(name="lat", description="latitude in degrees") @RequestParam double lat,
+            @Parameter(name="lon", description="longitude in degrees") @RequestParam double lon,
+            @Parameter(name="k", description="how many commons (1-50)") @RequestParam(defaultValue = "3") int k,
+            @Parameter(name="hasTakeOutMeal", description="only commons with (true) or without (false) take out meals") @RequestParam(required = false) Boolean hasTakeOutMeal) {
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "lat must be in [-90, 90] and lon in [-180, 180]");
+        }
+        return ucsbDiningCommonsGeoIndexService.nearest(lat, lon, Math.max(1, Math.min(50, k)), hasTakeOutMeal);
+    }
+
     @Operation(summary= "Create a new commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
@@ -72,6 +111,8 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        ucsbDiningCommonsGeoIndexService.put(savedCommons);
+        ucsbDiningCommonsSnapshotService.invalidateCommons(code);
 
         return savedCommons;
     }
@@ -85,6 +126,8 @@ public class UCSBDiningCommonsController extends ApiController {
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
         ucsbDiningCommonsRepository.delete(commons);
+        ucsbDiningCommonsGeoIndexService.remove(code);
+        ucsbDiningCommonsSnapshotService.invalidateCommons(code);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
@@ -107,6 +150,8 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(incoming.getLongitude());
 
         ucsbDiningCommonsRepository.save(commons);
+        ucsbDiningCommonsGeoIndexService.put(commons);
+        ucsbDiningCommonsSnapshotService.invalidateCommons(code);
 
         return commons;
     }
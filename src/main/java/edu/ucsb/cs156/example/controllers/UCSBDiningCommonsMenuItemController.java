@@ -2,7 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.MenuItemName;
+import edu.ucsb.cs156.example.models.MenuReplaceResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsMenuService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -21,6 +25,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 
 import javax.validation.Valid;
 
@@ -32,6 +41,12 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @Autowired
+    UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
+    @Autowired
+    UCSBDiningCommonsMenuService ucsbDiningCommonsMenuService;
+
     @Operation(summary= "List all UCSB Dining Commons Menu Items")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -68,6 +83,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
 
 
             UCSBDiningCommonsMenuItem savedItem = ucsbDiningCommonsMenuItemRepository.save(uCSBDiningCommonsMenuItem);
+            ucsbDiningCommonsSnapshotService.invalidateCommons(diningCommonsCode);
 
             return savedItem;
         }
@@ -80,17 +96,64 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
         @RequestBody @Valid UCSBDiningCommonsMenuItem incoming){
             UCSBDiningCommonsMenuItem uCSBDiningCommonsMenuItem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+            String oldDiningCommonsCode = uCSBDiningCommonsMenuItem.getDiningCommonsCode();
 
             uCSBDiningCommonsMenuItem.setDiningCommonsCode(incoming.getDiningCommonsCode());
             uCSBDiningCommonsMenuItem.setName(incoming.getName());
             uCSBDiningCommonsMenuItem.setStation(incoming.getStation());
 
             ucsbDiningCommonsMenuItemRepository.save(uCSBDiningCommonsMenuItem);
-            
+            ucsbDiningCommonsSnapshotService.invalidateCommons(oldDiningCommonsCode);
+            ucsbDiningCommonsSnapshotService.invalidateCommons(uCSBDiningCommonsMenuItem.getDiningCommonsCode());
 
             return uCSBDiningCommonsMenuItem;
         }
 
+    @Operation(summary= "The menu of a dining commons grouped by station, optionally only one station")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/menu")
+    public Map<String, List<UCSBDiningCommonsMenuItem>> menu(
+        @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode,
+        @Parameter(name="station", description="only this station") @RequestParam(required = false) String station) {
+            List<UCSBDiningCommonsMenuItem> items = station == null
+                ? ucsbDiningCommonsMenuItemRepository.findMenu(diningCommonsCode)
+                : ucsbDiningCommonsMenuItemRepository.findMenuAtStation(diningCommonsCode, station);
+            return byStation(items, UCSBDiningCommonsMenuItem::getStation, Function.identity());
+        }
+
+    @Operation(summary= "The ids and names of the items on the menu of a dining commons grouped by station, optionally only one station")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/menu", params = "namesOnly=true")
+    public Map<String, List<MenuItemName>> menuNames(
+        @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode,
+        @Parameter(name="station", description="only this station") @RequestParam(required = false) String station,
+        @Parameter(name="namesOnly", description="must be true") @RequestParam boolean namesOnly) {
+            List<UCSBDiningCommonsMenuItemRepository.NameRow> rows = station == null
+                ? ucsbDiningCommonsMenuItemRepository.findMenuNames(diningCommonsCode)
+                : ucsbDiningCommonsMenuItemRepository.findMenuNamesAtStation(diningCommonsCode, station);
+            return byStation(rows, UCSBDiningCommonsMenuItemRepository.NameRow::getStation,
+                row -> new MenuItemName(row.getId(), row.getName()));
+        }
+
+    // stations in alphabetical order; items without a station are listed under ""
+    private static <R, T> Map<String, List<T>> byStation(List<R> rows, Function<R, String> station, Function<R, T> item) {
+        Map<String, List<T>> stations = new TreeMap<>();
+        for (R row : rows) {
+            String key = station.apply(row) == null ? "" : station.apply(row);
+            stations.computeIfAbsent(key, k -> new ArrayList<>()).add(item.apply(row));
+        }
+        return stations;
+    }
+
+    @Operation(summary= "Replace the whole menu of a dining commons; items are matched to the current ones by name and station")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/menu")
+    public MenuReplaceResult replaceMenu(
+        @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode,
+        @RequestBody List<UCSBDiningCommonsMenuItem> menu) {
+            return ucsbDiningCommonsMenuService.replaceMenu(diningCommonsCode, menu);
+        }
+
     @Operation(summary= "Delete a UCSB Dining Commons Menu Item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
@@ -101,6 +164,7 @@ public class UCSBDiningCommonsMenuItemController extends ApiController{
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
         ucsbDiningCommonsMenuItemRepository.delete(uCSBDiningCommonsMenuItem);
+        ucsbDiningCommonsSnapshotService.invalidateCommons(uCSBDiningCommonsMenuItem.getDiningCommonsCode());
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
         }
 }
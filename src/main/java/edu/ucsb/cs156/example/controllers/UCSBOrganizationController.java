@@ -2,7 +2,10 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.CacheStats;
+import edu.ucsb.cs156.example.models.OrganizationBatch;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.UCSBOrganizationCacheService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,6 +15,8 @@ import lombok.extern.slf4j.Slf4j;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -21,6 +26,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.validation.Valid;
 
@@ -30,16 +39,23 @@ import javax.validation.Valid;
 @Slf4j
 
 public class UCSBOrganizationController extends ApiController{
+    static final int MAX_BATCH = 1000;
+
     @Autowired
     UCSBOrganizationRepository uCSBOrganizationRepository;
 
+    @Autowired
+    UCSBOrganizationCacheService ucsbOrganizationCacheService;
 
-    @Operation(summary = "List all ucsb organizations")
+    @Operation(summary = "List all ucsb organizations, or only the active or inactive ones")
     @PreAuthorize("hasRole('ROLE_USER')")
-    @GetMapping("/all")
-    public Iterable<UCSBOrganization> allUCSBOrganization() {
-        Iterable<UCSBOrganization> UCSBOrganizations = uCSBOrganizationRepository.findAll();
-        return UCSBOrganizations;
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] allUCSBOrganization(
+            @Parameter(name="active", description="true for active organizations only, false for inactive ones only") @RequestParam(required = false) Boolean active) throws JsonProcessingException {
+        if (active == null) {
+            return ucsbOrganizationCacheService.allJson();
+        }
+        return ucsbOrganizationCacheService.partitionJson(!active);
     }
 
     @Operation(summary= "Get a UCSB organization by ID")
@@ -47,12 +63,47 @@ public class UCSBOrganizationController extends ApiController{
     @GetMapping("")
     public UCSBOrganization getById(
             @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization ucsborg = uCSBOrganizationRepository.findById(orgCode)
+        UCSBOrganization ucsborg = ucsbOrganizationCacheService.get(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
         return ucsborg;
     }
 
+    @Operation(summary= "Get UCSB organizations by a comma separated list of codes, with the codes that were not found")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public OrganizationBatch getBatch(
+            @Parameter(name="orgCodes", description="e.g. ZPR,SKY,OSLI") @RequestParam List<String> orgCodes) {
+        return ucsbOrganizationCacheService.getAll(batchCodes(orgCodes));
+    }
+
+    @Operation(summary= "Get UCSB organizations by a JSON array of codes, for lists too long for a query string")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("/batch")
+    public OrganizationBatch postBatch(@RequestBody List<String> orgCodes) {
+        return ucsbOrganizationCacheService.getAll(batchCodes(orgCodes));
+    }
+
+    private static List<String> batchCodes(List<String> orgCodes) {
+        List<String> codes = new ArrayList<>();
+        for (String orgCode : orgCodes) {
+            if (orgCode != null && !orgCode.isBlank()) {
+                codes.add(orgCode.trim());
+            }
+        }
+        if (codes.size() > MAX_BATCH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "at most %d orgCodes per batch".formatted(MAX_BATCH));
+        }
+        return codes;
+    }
+
+    @Operation(summary= "Hit, miss and eviction counts of the organization cache")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/cache/stats")
+    public CacheStats cacheStats() {
+        return ucsbOrganizationCacheService.stats();
+    }
+
 
 
     @Operation(summary = "Create a new ucsb organization")
@@ -73,6 +124,7 @@ public class UCSBOrganizationController extends ApiController{
         UCSBOrg.setInactive(inactive);
 
         UCSBOrganization savedorg = uCSBOrganizationRepository.save(UCSBOrg);
+        ucsbOrganizationCacheService.put(savedorg);
         return savedorg;
     }
 
@@ -94,6 +146,7 @@ public class UCSBOrganizationController extends ApiController{
         ucsborg.setInactive(incoming.getInactive());
 
         uCSBOrganizationRepository.save(ucsborg);
+        ucsbOrganizationCacheService.put(ucsborg);
 
         return ucsborg;
     }
@@ -109,6 +162,7 @@ public class UCSBOrganizationController extends ApiController{
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
         uCSBOrganizationRepository.delete(Org);
+        ucsbOrganizationCacheService.evict(orgCode);
         return genericMessage("record %s deleted".formatted(orgCode));
     }
 
@@ -2,11 +2,16 @@ package edu.ucsb.cs156.example.entities;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +22,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "articles")
+@Table(indexes = {
+  @Index(name = "idx_articles_urlhash", columnList = "urlHash"),
+  @Index(name = "idx_articles_dateadded_id", columnList = "dateAdded, Id")
+})
 public class Articles {
   
   @Id
@@ -28,4 +37,9 @@ public class Articles {
   private String explanation;
   private String email;
   private LocalDateTime dateAdded;
+
+  // SHA-256 of the canonical url, see ArticleUrlService
+  @JsonIgnore
+  @Column(length = 64)
+  private String urlHash;
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
 import lombok.Data;
@@ -17,6 +19,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreviews")
+@Table(indexes = {
+  @Index(name = "idx_menuitemreviews_itemid_date", columnList = "itemId, dateReviewed, Id"),
+  @Index(name = "idx_menuitemreviews_reviewer_date", columnList = "reviewerEmail, dateReviewed, Id")
+})
 public class MenuItemReview {
 
   @Id
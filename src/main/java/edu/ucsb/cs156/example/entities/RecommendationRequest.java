@@ -5,6 +5,9 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 
 import lombok.Data;
@@ -17,6 +20,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendationrequests")
+@Table(indexes = {
+    @Index(name = "idx_recommendationrequests_done_professor_needed", columnList = "done, professorEmail, dateNeeded, Id"),
+    @Index(name = "idx_recommendationrequests_done_needed", columnList = "done, dateNeeded, Id")
+})
 public class RecommendationRequest {
 
     @Id
@@ -29,4 +36,10 @@ public class RecommendationRequest {
     private LocalDateTime dateRequested;
     private LocalDateTime dateNeeded;
     private boolean done;
+    private String claimedBy;  // email of the user working on it, null if nobody is
+
+    // bumped by every update; null only for rows saved before it existed,
+    // which RecommendationRequestClaimService sets to 0 at startup
+    @Version
+    private Long version;
 }
\ No newline at end of file
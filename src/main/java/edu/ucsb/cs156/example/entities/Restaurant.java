@@ -4,6 +4,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,6 +17,7 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "restaurant")
+@Table(indexes = @Index(name = "idx_restaurant_name", columnList = "name"))
 public class Restaurant {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -5,6 +5,8 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
 import lombok.Data;
@@ -17,6 +19,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdates")
+@Table(indexes = {
+  @Index(name = "idx_ucsbdates_localdatetime", columnList = "localDateTime"),
+  @Index(name = "idx_ucsbdates_quarter_localdatetime", columnList = "quarterYYYYQ, localDateTime")
+})
 public class UCSBDate {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
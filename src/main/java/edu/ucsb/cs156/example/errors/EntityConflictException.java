@@ -0,0 +1,7 @@
+package edu.ucsb.cs156.example.errors;
+
+public class EntityConflictException extends RuntimeException {
+  public EntityConflictException(String message) {
+    super(message);
+  }
+}
\ No newline at end of file
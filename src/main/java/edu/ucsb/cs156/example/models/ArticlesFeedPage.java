@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+import edu.ucsb.cs156.example.entities.Articles;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ArticlesFeedPage {
+  private List<Articles> articles;
+  private String nextCursor;  // null on the last page
+}
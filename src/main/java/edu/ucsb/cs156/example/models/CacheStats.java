@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CacheStats {
+  private long hits;
+  private long misses;
+  private long evictions;  // dropped to stay within maxEntries
+  private long invalidations;  // dropped because the row was written
+  private int size;
+  private int maxEntries;
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ConsistencyReport {
+  private boolean consistent;
+  private long checked;  // number of keys compared
+  private List<String> mismatches;  // one line per key whose in-memory value differs from the recount
+  private boolean repaired;  // whether the in-memory state was replaced by the recount
+}
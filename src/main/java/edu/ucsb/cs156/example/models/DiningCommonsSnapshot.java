@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import java.util.Map;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DiningCommonsSnapshot {
+  private UCSBDiningCommons commons;
+  private Map<String, List<MenuItemSnapshot>> stations;  // by station name, in alphabetical order
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DueScanMetrics {
+  private long runs;
+  private LocalDateTime lastRunAt;
+  private double lastRunMillis;
+  private double maxRunMillis;
+  private long lastRowsScanned;
+  private long rowsScanned;  // over all runs
+  private long eventsPublished;
+  private LocalDateTime scannedUntil;  // high-water mark: dateNeeded up to here has been scanned
+}
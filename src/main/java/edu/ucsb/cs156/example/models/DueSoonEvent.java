@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class DueSoonEvent {
+  private long id;  // increasing; pass the last one seen as ?after= to get only newer events
+  private long requestId;
+  private String requesterEmail;
+  private String professorEmail;
+  private LocalDateTime dateNeeded;
+  private LocalDateTime flaggedAt;
+}
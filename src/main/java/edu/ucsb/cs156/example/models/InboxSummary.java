@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class InboxSummary {
+  private String professorEmail;
+  private long open;  // not done
+  private long overdue;  // not done and dateNeeded has passed
+  private long completed;  // done
+}
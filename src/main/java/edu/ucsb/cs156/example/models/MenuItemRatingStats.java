@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class MenuItemRatingStats {
+  private long itemId;
+  private long count;
+  private long sum;
+  private double average;  // 0 when there are no reviews
+  private long[] histogram;  // histogram[s] is the number of s star reviews, s = 0..5
+}
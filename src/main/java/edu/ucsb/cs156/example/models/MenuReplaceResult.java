@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class MenuReplaceResult {
+  private long inserted;
+  private long deleted;
+  private long unchanged;
+  private long rejected;
+  private List<ImportRowError> errors;  // line is the 1-based position in the request
+}
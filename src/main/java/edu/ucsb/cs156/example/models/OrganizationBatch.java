@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import java.util.Map;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class OrganizationBatch {
+  private Map<String, UCSBOrganization> organizations;  // found ones, in request order
+  private List<String> missing;  // in request order
+}
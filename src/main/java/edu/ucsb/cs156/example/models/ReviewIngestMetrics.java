@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewIngestMetrics {
+  // synchronous /post: one insert per request
+  private long syncPosts;
+  private double syncAverageMillis;
+  private double syncMaxMillis;
+  private double syncRowsPerSecond;  // rows per second of time spent inserting
+
+  // write-behind /post/async
+  private long asyncAccepted;
+  private long asyncRejected;  // queue full, answered with 503
+  private long asyncWritten;
+  private long asyncFailed;
+  private long batches;
+  private int queueDepth;
+  private int queueCapacity;
+  private double asyncAverageAcceptMillis;  // time to answer the request
+  private double asyncAverageLagMillis;  // from accepted to committed
+  private double asyncMaxLagMillis;
+  private double asyncRowsPerSecond;  // rows per second of time spent inserting
+}
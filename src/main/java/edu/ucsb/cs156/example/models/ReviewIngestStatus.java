@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewIngestStatus {
+  private String trackingId;
+  private String status;  // QUEUED, WRITTEN, FAILED or UNKNOWN
+}
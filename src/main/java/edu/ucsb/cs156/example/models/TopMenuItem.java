@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class TopMenuItem {
+  private long itemId;
+  private String name;  // null if the menu item no longer exists
+  private String station;
+  private String diningCommonsCode;
+  private long count;  // reviews counted
+  private double average;
+}
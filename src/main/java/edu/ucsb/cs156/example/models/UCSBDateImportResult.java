@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+import java.util.Set;
+
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class UCSBDateImportResult {
+  private long rowsRead;
+  private long rowsImported;
+  private long rowsRejected;
+  private List<ImportRowError> errors;   // only the first 100 are reported
+  private Set<String> quarters;          // quarters that received new dates
+  private int batchSize;
+  private long batches;
+  private long elapsedMillis;
+  private long rowsPerSecond;
+}
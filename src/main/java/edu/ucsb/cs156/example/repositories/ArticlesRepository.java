@@ -2,9 +2,33 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface ArticlesRepository extends CrudRepository<Articles, Long> {
+  List<Articles> findAllByUrlHash(String urlHash);
+  List<Articles> findAllByUrlHashIsNull();
+
+  // keyset pagination: the articles that come after (dateAdded, id) in
+  // dateAdded DESC, id DESC order; articles without a dateAdded are not included
+  @Query("SELECT a FROM articles a WHERE a.dateAdded < :dateAdded OR (a.dateAdded = :dateAdded AND a.id < :id) ORDER BY a.dateAdded DESC, a.id DESC")
+  List<Articles> findFeedAfter(@Param("dateAdded") LocalDateTime dateAdded, @Param("id") long id, Pageable pageable);
+
+  // same as findFeedAfter, unbounded; must be consumed inside a transaction, and closed
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT a FROM articles a WHERE a.dateAdded < :dateAdded OR (a.dateAdded = :dateAdded AND a.id < :id) ORDER BY a.dateAdded DESC, a.id DESC")
+  Stream<Articles> streamFeedAfter(@Param("dateAdded") LocalDateTime dateAdded, @Param("id") long id);
 }
\ No newline at end of file
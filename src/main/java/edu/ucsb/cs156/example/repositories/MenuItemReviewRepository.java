@@ -2,9 +2,26 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
+  // rows of {itemId, stars, count}
+  @Query("SELECT r.itemId, r.stars, COUNT(r) FROM menuitemreviews r WHERE r.itemId IS NOT NULL GROUP BY r.itemId, r.stars")
+  List<Object[]> countByItemIdAndStars();
+
+  // newest first, each one range of the matching index; written out because
+  // a derived OrderBy...IdDesc can not resolve the capitalized Id attribute
+  @Query("SELECT r FROM menuitemreviews r WHERE r.itemId = :itemId ORDER BY r.dateReviewed DESC, r.id DESC")
+  Page<MenuItemReview> findPageByItemId(@Param("itemId") Long itemId, Pageable pageable);
+
+  @Query("SELECT r FROM menuitemreviews r WHERE r.reviewerEmail = :reviewerEmail ORDER BY r.dateReviewed DESC, r.id DESC")
+  Page<MenuItemReview> findPageByReviewerEmail(@Param("reviewerEmail") String reviewerEmail, Pageable pageable);
 }
\ No newline at end of file
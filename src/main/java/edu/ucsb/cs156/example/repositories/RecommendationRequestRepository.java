@@ -2,9 +2,35 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
 public interface RecommendationRequestRepository extends CrudRepository<RecommendationRequest, Long> {
+  // rows of {professorEmail, done, dateNeeded, count}; dateNeeded is only
+  // grouped on for open requests, so done ones collapse to one row each
+  @Query("SELECT r.professorEmail, r.done, CASE WHEN r.done = true THEN NULL ELSE r.dateNeeded END, COUNT(r)"
+      + " FROM recommendationrequests r WHERE r.professorEmail IS NOT NULL"
+      + " GROUP BY r.professorEmail, r.done, CASE WHEN r.done = true THEN NULL ELSE r.dateNeeded END")
+  List<Object[]> countByProfessorEmail();
+
+  // open requests needed before a time, soonest first; each is one range of
+  // an index that starts with done, so done rows are never read
+  @Query("SELECT r FROM recommendationrequests r WHERE r.done = false AND r.professorEmail = :professorEmail"
+      + " AND r.dateNeeded < :before ORDER BY r.dateNeeded, r.id")
+  List<RecommendationRequest> findOpenByProfessorEmail(@Param("professorEmail") String professorEmail, @Param("before") LocalDateTime before, Pageable pageable);
+
+  @Query("SELECT r FROM recommendationrequests r WHERE r.done = false AND r.dateNeeded < :before ORDER BY r.dateNeeded, r.id")
+  List<RecommendationRequest> findOpen(@Param("before") LocalDateTime before, Pageable pageable);
+
+  // open requests with after < dateNeeded <= upTo, on the (done, dateNeeded) index
+  @Query("SELECT r FROM recommendationrequests r WHERE r.done = false AND r.dateNeeded > :after"
+      + " AND r.dateNeeded <= :upTo ORDER BY r.dateNeeded, r.id")
+  List<RecommendationRequest> findOpenNeededBetween(@Param("after") LocalDateTime after, @Param("upTo") LocalDateTime upTo);
 }
\ No newline at end of file
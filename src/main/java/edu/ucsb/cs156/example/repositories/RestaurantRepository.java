@@ -5,6 +5,11 @@ import edu.ucsb.cs156.example.entities.Restaurant;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RestaurantRepository extends CrudRepository<Restaurant, Long> {
-}
+  List<Restaurant> findAllByNameIn(Collection<String> names);
+  List<Restaurant> findAllByIdInOrNameIn(Collection<Long> ids, Collection<String> names);
+}
\ No newline at end of file
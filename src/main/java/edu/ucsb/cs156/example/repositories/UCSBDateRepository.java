@@ -2,11 +2,22 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 
 @Repository
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
+
+  // must be consumed inside a transaction, and closed
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+  Stream<UCSBDate> streamAllByQuarterYYYYQOrderByLocalDateTimeAsc(String quarterYYYYQ);
 }
\ No newline at end of file
@@ -2,9 +2,40 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
+  List<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCode(String diningCommonsCode);
+
+  // id, name and station of a menu item, for listings that only need names
+  interface NameRow {
+    Long getId();
+    String getName();
+    String getStation();
+  }
+
+  // the menu of a commons; one query per shape rather than an optional
+  // station parameter, so each gets its own plan on the composite index
+
+  @Query("SELECT m FROM ucsbdiningcommonsmenuitem m WHERE m.diningCommonsCode = :diningCommonsCode"
+      + " ORDER BY m.station, m.name, m.id")
+  List<UCSBDiningCommonsMenuItem> findMenu(@Param("diningCommonsCode") String diningCommonsCode);
+
+  @Query("SELECT m FROM ucsbdiningcommonsmenuitem m WHERE m.diningCommonsCode = :diningCommonsCode"
+      + " AND m.station = :station ORDER BY m.name, m.id")
+  List<UCSBDiningCommonsMenuItem> findMenuAtStation(@Param("diningCommonsCode") String diningCommonsCode, @Param("station") String station);
+
+  @Query("SELECT m.id AS id, m.name AS name, m.station AS station FROM ucsbdiningcommonsmenuitem m"
+      + " WHERE m.diningCommonsCode = :diningCommonsCode ORDER BY m.station, m.name, m.id")
+  List<NameRow> findMenuNames(@Param("diningCommonsCode") String diningCommonsCode);
+
+  @Query("SELECT m.id AS id, m.name AS name, m.station AS station FROM ucsbdiningcommonsmenuitem m"
+      + " WHERE m.diningCommonsCode = :diningCommonsCode AND m.station = :station ORDER BY m.name, m.id")
+  List<NameRow> findMenuNamesAtStation(@Param("diningCommonsCode") String diningCommonsCode, @Param("station") String station);
 }
\ No newline at end of file
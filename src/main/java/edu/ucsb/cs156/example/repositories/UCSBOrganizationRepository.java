@@ -3,6 +3,9 @@ import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
+  List<UCSBOrganization> findAllByInactive(boolean inactive);
 }
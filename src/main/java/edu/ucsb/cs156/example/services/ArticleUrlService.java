@@ -0,0 +1,152 @@
+package edu.ucsb.cs156.example.services;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Canonical form and hash of Article urls, used to find articles by url
+// with an index probe on articles.url_hash instead of scanning every row.
+//
+// Two urls are the same article when they only differ in scheme/host case,
+// a default port, a trailing slash, a fragment, tracking parameters
+// (utm_*, fbclid, gclid) or the order of the query parameters. A url
+// without a scheme is taken to be http.
+//
+// Articles saved before url_hash existed are hashed once at startup.
+//
+// url_hash has no unique index, since duplicates may be saved on purpose,
+// so looking for an article by url and then saving one is not atomic.
+// Callers that must not save a duplicate hold lockFor(url) around both.
+// It is one of a fixed set of locks picked by the hash, so it only
+// serializes posts within this process.
+
+@Slf4j
+@Service("articleUrls")
+public class ArticleUrlService {
+
+  private static final Pattern HAS_SCHEME = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://.*");
+  private static final Pattern TRACKING_PARAMETER = Pattern.compile("(?i)^(utm_[^=]*|fbclid|gclid)(=.*)?$");
+
+  private static final Object[] URL_LOCKS = new Object[64];
+
+  static {
+    Arrays.setAll(URL_LOCKS, i -> new Object());
+  }
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @PostConstruct
+  public void backfill() {
+    List<Articles> unhashed = articlesRepository.findAllByUrlHashIsNull();
+    if (unhashed.isEmpty()) {
+      return;
+    }
+    unhashed.forEach(article -> article.setUrlHash(hash(article.getUrl())));
+    articlesRepository.saveAll(unhashed);
+    log.info("computed url hashes for {} articles", unhashed.size());
+  }
+
+  /** Articles whose url has the same canonical form, oldest first. */
+  public List<Articles> findByUrl(String url) {
+    String canonical = canonicalize(url);
+    List<Articles> matches = new ArrayList<>();
+    for (Articles article : articlesRepository.findAllByUrlHash(sha256(canonical))) {
+      // guards against the (astronomically unlikely) hash collision
+      if (canonical.equals(canonicalize(article.getUrl()))) {
+        matches.add(article);
+      }
+    }
+    matches.sort(Comparator.comparingLong(Articles::getId));
+    return matches;
+  }
+
+  /** The lock for finding and saving articles with this url; the same for every url with the same canonical form. */
+  public static Object lockFor(String url) {
+    return URL_LOCKS[Math.floorMod(hash(url).hashCode(), URL_LOCKS.length)];
+  }
+
+  public static String hash(String url) {
+    return sha256(canonicalize(url));
+  }
+
+  public static String canonicalize(String url) {
+    if (url == null) {
+      return "";
+    }
+    String trimmed = url.trim();
+    String withScheme = HAS_SCHEME.matcher(trimmed).matches() ? trimmed : "http://" + trimmed;
+    URI uri;
+    try {
+      uri = new URI(withScheme);
+    } catch (URISyntaxException e) {
+      return trimmed;
+    }
+    if (uri.getRawAuthority() == null || uri.getHost() == null) {
+      return trimmed;
+    }
+
+    String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+    StringBuilder canonical = new StringBuilder(scheme).append("://");
+    if (uri.getRawUserInfo() != null) {
+      canonical.append(uri.getRawUserInfo()).append('@');
+    }
+    canonical.append(uri.getHost().toLowerCase(Locale.ROOT));
+    int port = uri.getPort();
+    if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+      canonical.append(':').append(port);
+    }
+
+    // never null: a uri with an authority is hierarchical
+    String path = uri.getRawPath();
+    while (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    canonical.append(path);
+
+    if (uri.getRawQuery() != null) {
+      List<String> parameters = new ArrayList<>();
+      for (String parameter : uri.getRawQuery().split("&")) {
+        if (!parameter.isEmpty() && !TRACKING_PARAMETER.matcher(parameter).matches()) {
+          parameters.add(parameter);
+        }
+      }
+      if (!parameters.isEmpty()) {
+        parameters.sort(null);
+        canonical.append('?').append(String.join("&", parameters));
+      }
+    }
+    return canonical.toString();
+  }
+
+  private static String sha256(String text) {
+    return hexDigest("SHA-256", text);
+  }
+
+  static String hexDigest(String algorithm, String text) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance(algorithm);
+      return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(algorithm + " is not available", e);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Atom (RFC 4287) feed of the newest articles, rendered once and kept as
+// bytes (plain and gzipped) until an article is posted, updated or deleted.
+// ArticlesController calls invalidate() after each write; the next request
+// renders the feed again.
+//
+// The ETag is derived from a counter bumped on every invalidation, so
+// unchanged polls are answered with 304 without touching the database.
+// dateAdded has no time zone; it is written as UTC.
+
+@Slf4j
+@Service("articlesAtomFeed")
+public class ArticlesAtomFeedService {
+
+  private static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+  private static final DateTimeFormatter RFC_3339 = DateTimeFormatter.ISO_INSTANT;
+
+  public record Rendered(byte[] xml, byte[] gzipped, String etag, String gzipEtag, long lastModified) {
+  }
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Value("${app.articles.atom.size:50}")
+  int size;
+
+  private final long startedAt = System.currentTimeMillis();
+  private long version = 0;
+  private long lastModified = startedAt;
+  private volatile Rendered rendered;
+
+  /** The current feed, rendering it first if an article changed since the last call. */
+  public Rendered current() {
+    Rendered feed = rendered;
+    if (feed != null) {
+      return feed;
+    }
+    // invalidate() waits for a render in progress, so a render that read the
+    // table before a write can never be cached after that write
+    synchronized (this) {
+      if (rendered == null) {
+        rendered = render();
+      }
+      return rendered;
+    }
+  }
+
+  public synchronized void invalidate() {
+    version++;
+    lastModified = Math.max(System.currentTimeMillis(), lastModified + 1);
+    rendered = null;
+  }
+
+  private Rendered render() {
+    ArticlesFeedService.Cursor start = ArticlesFeedService.START;
+    List<Articles> articles = articlesRepository.findFeedAfter(start.dateAdded(), start.id(), PageRequest.of(0, size));
+    byte[] xml = toAtom(articles);
+    String etag = "\"%d-%d\"".formatted(startedAt, version);
+    String gzipEtag = "\"%d-%d-gz\"".formatted(startedAt, version);
+    log.info("rendered atom feed of {} articles ({} bytes)", articles.size(), xml.length);
+    return new Rendered(xml, gzip(xml), etag, gzipEtag, lastModified);
+  }
+
+  static byte[] toAtom(List<Articles> articles) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeAtom(articles, out);
+    return out.toByteArray();
+  }
+
+  static void writeAtom(List<Articles> articles, OutputStream out) {
+    try {
+      XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+      xml.writeStartDocument("UTF-8", "1.0");
+      xml.writeStartElement("feed");
+      xml.writeDefaultNamespace(ATOM_NS);
+      element(xml, "id", "urn:ucsb-cs156:articles");
+      element(xml, "title", "Articles");
+      element(xml, "updated", timestamp(articles.isEmpty() ? null : articles.get(0).getDateAdded()));
+      for (Articles article : articles) {
+        xml.writeStartElement("entry");
+        element(xml, "id", "urn:ucsb-cs156:articles:" + article.getId());
+        element(xml, "title", article.getTitle());
+        if (article.getUrl() != null) {
+          xml.writeEmptyElement("link");
+          xml.writeAttribute("href", article.getUrl());
+        }
+        element(xml, "updated", timestamp(article.getDateAdded()));
+        if (article.getEmail() != null) {
+          xml.writeStartElement("author");
+          element(xml, "email", article.getEmail());
+          element(xml, "name", article.getEmail());
+          xml.writeEndElement();
+        }
+        element(xml, "summary", article.getExplanation());
+        xml.writeEndElement();
+      }
+      xml.writeEndElement();
+      xml.writeEndDocument();
+      xml.close();
+    } catch (XMLStreamException e) {
+      throw new IllegalStateException("could not render atom feed", e);
+    }
+  }
+
+  private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+    xml.writeStartElement(name);
+    xml.writeCharacters(text == null ? "" : text);
+    xml.writeEndElement();
+  }
+
+  private static String timestamp(LocalDateTime dateTime) {
+    return RFC_3339.format(dateTime == null ? Instant.EPOCH : dateTime.toInstant(ZoneOffset.UTC));
+  }
+
+  static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    gzip(bytes, out);
+    return out.toByteArray();
+  }
+
+  static void gzip(byte[] bytes, OutputStream out) {
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.models.ArticlesFeedPage;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+// Articles newest first (dateAdded DESC, id DESC), paged with keyset
+// cursors rather than OFFSET so every page is an index range scan no matter
+// how deep the client has paged, and rows added meanwhile do not shift pages.
+//
+// A cursor is the (dateAdded, id) of the last article on the previous page,
+// base64url encoded so clients treat it as opaque. The first page starts
+// after a sentinel position later than any real article.
+//
+// writeNdjson streams the same order straight from the result set, one JSON
+// object per line, so memory use does not depend on the size of the table.
+
+@Service("articlesFeed")
+public class ArticlesFeedService {
+
+  public record Cursor(LocalDateTime dateAdded, long id) {
+  }
+
+  static final Cursor START = new Cursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  public ArticlesFeedPage page(Cursor after, int limit) {
+    // one extra row tells us whether there is a next page
+    List<Articles> articles = articlesRepository.findFeedAfter(after.dateAdded(), after.id(), PageRequest.of(0, limit + 1));
+    String nextCursor = null;
+    if (articles.size() > limit) {
+      articles = articles.subList(0, limit);
+      Articles last = articles.get(limit - 1);
+      nextCursor = encodeCursor(new Cursor(last.getDateAdded(), last.getId()));
+    }
+    return ArticlesFeedPage.builder().articles(articles).nextCursor(nextCursor).build();
+  }
+
+  /** Write the articles after the cursor as newline delimited JSON, at most limit of them if limit is not null. */
+  @Transactional(readOnly = true)
+  public void writeNdjson(Cursor after, Integer limit, OutputStream out) throws IOException {
+    try (Stream<Articles> articles = articlesRepository.streamFeedAfter(after.dateAdded(), after.id())) {
+      Iterator<Articles> it = (limit == null ? articles : articles.limit(limit)).iterator();
+      while (it.hasNext()) {
+        Articles article = it.next();
+        out.write(mapper.writeValueAsBytes(article));
+        out.write('\n');
+        // keep the persistence context from growing with the result set
+        entityManager.detach(article);
+      }
+    }
+    out.flush();
+  }
+
+  public static String encodeCursor(Cursor cursor) {
+    String text = cursor.dateAdded() + "|" + cursor.id();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The cursor, or START when there is none; throws IllegalArgumentException if it was not made by encodeCursor. */
+  public static Cursor decodeCursor(String token) {
+    if (token == null || token.isEmpty()) {
+      return START;
+    }
+    try {
+      String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int bar = text.indexOf('|');
+      return new Cursor(LocalDateTime.parse(text.substring(0, bar)), Long.parseLong(text.substring(bar + 1)));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+      throw new IllegalArgumentException("invalid cursor '%s'".formatted(token));
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+// Fan-out of HelpRequest changes to the /api/helprequest/stream
+// server-sent event subscribers, so open help-desk screens do not have to
+// poll /all.
+//
+// HelpRequestController publishes created/updated/deleted after each write.
+// An event is serialized once and offered to every subscriber's bounded
+// buffer without blocking; a pool of senderThreads drains the buffers into
+// the connections. A subscriber whose buffer is full is too slow to keep
+// up: its buffer is dropped, it gets a "resync" event telling it to reload
+// /all, and its stream is closed.
+//
+// The last replaySize events are kept in a ring. Event ids are
+// "<startedAt>-<sequence>", so a client reconnecting with a Last-Event-ID
+// of this process gets the events it missed; one whose id is older than
+// the ring, or from before a restart, gets a "resync" first instead. So
+// does one that missed more than bufferSize events, as replaying them would
+// only fill its buffer and drop it. A subscriber is registered after its
+// replay, and only if that did not already close its connection.
+//
+// Each offer counts one more pending event for the subscriber; the offer
+// that finds none pending schedules a drain, and the drain keeps polling
+// until it has seen as many offers as were counted.
+
+@Slf4j
+@Service("helpRequestStream")
+public class HelpRequestStreamService {
+
+  public static final String RESYNC = "resync";
+
+  record Event(long sequence, String name, String json) {
+  }
+
+  class Subscriber {
+    final SseEmitter emitter;
+    final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+    final AtomicInteger pending = new AtomicInteger();
+    volatile Event dropped;
+    volatile boolean closed;
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+  }
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.helprequest.stream.bufferSize:256}")
+  int bufferSize;
+
+  @Value("${app.helprequest.stream.replaySize:1000}")
+  int replaySize;
+
+  @Value("${app.helprequest.stream.timeoutMillis:1800000}")
+  long timeoutMillis;
+
+  @Value("${app.helprequest.stream.senderThreads:4}")
+  int senderThreads;
+
+  Executor executor;
+
+  private final long startedAt = System.currentTimeMillis();
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final Deque<Event> ring = new ArrayDeque<>();
+  private long sequence = 0;
+
+  @PostConstruct
+  public void init() {
+    executor = Executors.newFixedThreadPool(senderThreads, runnable -> {
+      Thread thread = new Thread(runnable, "helprequest-stream");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    subscribers.clear();
+    if (executor instanceof ExecutorService service) {
+      service.shutdownNow();
+    }
+  }
+
+  public SseEmitter subscribe(String lastEventId) {
+    return subscribe(lastEventId, new SseEmitter(timeoutMillis));
+  }
+
+  SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter);
+    emitter.onCompletion(() -> remove(subscriber));
+    emitter.onTimeout(() -> remove(subscriber));
+    emitter.onError(e -> remove(subscriber));
+    synchronized (this) {
+      if (lastEventId != null && !lastEventId.isBlank()) {
+        replay(subscriber, lastEventId.trim());
+      }
+      subscribers.add(subscriber);
+      // closed during the replay, or by the client before the add
+      if (subscriber.closed) {
+        subscribers.remove(subscriber);
+      }
+    }
+    return emitter;
+  }
+
+  /** Send an event to every subscriber; payload is serialized as the event data. */
+  public void publish(String name, Object payload) {
+    String json;
+    try {
+      json = mapper.writeValueAsString(payload);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("could not serialize %s event".formatted(name), e);
+    }
+    Event event;
+    synchronized (this) {
+      event = new Event(++sequence, name, json);
+      ring.addLast(event);
+      while (ring.size() > replaySize) {
+        ring.removeFirst();
+      }
+      // inside the lock so a subscriber replaying the ring can not miss or repeat it
+      for (Subscriber subscriber : subscribers) {
+        offer(subscriber, event);
+      }
+    }
+  }
+
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  String eventId(long sequence) {
+    return "%d-%d".formatted(startedAt, sequence);
+  }
+
+  private void replay(Subscriber subscriber, String lastEventId) {
+    long after = -1;
+    String prefix = startedAt + "-";
+    if (lastEventId.startsWith(prefix)) {
+      try {
+        after = Long.parseLong(lastEventId.substring(prefix.length()));
+      } catch (NumberFormatException e) {
+        after = -1;
+      }
+    }
+    long oldest = ring.isEmpty() ? sequence + 1 : ring.peekFirst().sequence();
+    if (after < oldest - 1 || after > sequence) {
+      offer(subscriber, resync(lastEventId + " is not in the last %d events".formatted(replaySize)));
+      return;
+    }
+    if (sequence - after > bufferSize) {
+      offer(subscriber, resync(lastEventId + " is more than %d events behind".formatted(bufferSize)));
+      return;
+    }
+    for (Event event : ring) {
+      if (event.sequence() > after) {
+        offer(subscriber, event);
+      }
+    }
+  }
+
+  private Event resync(String reason) {
+    return new Event(sequence, RESYNC, "{\"reason\":\"%s\"}".formatted(reason.replace("\\", "\\\\").replace("\"", "\\\"")));
+  }
+
+  private void offer(Subscriber subscriber, Event event) {
+    if (!subscriber.buffer.offer(event)) {
+      remove(subscriber);
+      subscriber.buffer.clear();
+      subscriber.dropped = resync("more than %d events behind".formatted(bufferSize));
+      log.warn("dropped a help request stream subscriber more than {} events behind", bufferSize);
+    }
+    if (subscriber.pending.getAndIncrement() == 0) {
+      executor.execute(() -> drain(subscriber));
+    }
+  }
+
+  private void drain(Subscriber subscriber) {
+    try {
+      int seen = 1;
+      do {
+        if (subscriber.dropped != null) {
+          subscriber.emitter.send(toSse(subscriber.dropped));
+          subscriber.emitter.complete();
+          return;
+        }
+        for (Event event = subscriber.buffer.poll(); event != null; event = subscriber.buffer.poll()) {
+          subscriber.emitter.send(toSse(event));
+        }
+        // non-zero if events were offered since the ones counted in seen
+        seen = subscriber.pending.addAndGet(-seen);
+      } while (seen != 0);
+    } catch (IOException | IllegalStateException e) {
+      // the client went away
+      remove(subscriber);
+      subscriber.emitter.completeWithError(e);
+    }
+  }
+
+  private void remove(Subscriber subscriber) {
+    subscriber.closed = true;
+    subscribers.remove(subscriber);
+  }
+
+  private SseEmitter.SseEventBuilder toSse(Event event) {
+    return SseEmitter.event().id(eventId(event.sequence())).name(event.name()).data(event.json());
+  }
+
+  /** The payload of a deleted event. */
+  public static Map<String, Long> deleted(long id) {
+    return Map.of("id", id);
+  }
+}
@@ -0,0 +1,310 @@
+package edu.ucsb.cs156.example.services;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewIngestMetrics;
+import edu.ucsb.cs156.example.models.ReviewIngestStatus;
+import lombok.extern.slf4j.Slf4j;
+
+// Write-behind ingestion of MenuItemReviews for /api/menuitemreview/post/async.
+//
+// submit() only puts the review on a bounded queue and hands back a
+// tracking id; a single writer thread takes up to batchSize reviews at a
+// time and inserts them with one JDBC batch in one transaction. When the
+// queue is full submit() refuses the review and the controller answers 503,
+// so a burst can not grow the heap without limit.
+//
+// If a batch fails it is retried one row at a time, so one bad review only
+// fails itself. After each batch the rating stats, the top items cache and
+// the dining commons snapshots are updated as the synchronous /post does.
+//
+// On shutdown the writer finishes its batch and whatever is still queued is
+// written before the bean is destroyed. submit() checks that the service is
+// running and queues the review under a read lock that shutdown() takes
+// for writing to stop it, so no review can be queued after the last drain.
+// Reviews still queued when the JVM is killed outright are lost; clients
+// that need a guarantee use /post.
+//
+// The status of the last STATUS_RETAINED tracking ids is kept. Timings of
+// both paths are collected for /api/menuitemreview/ingest/metrics.
+
+@Slf4j
+@Service("menuItemReviewIngest")
+public class MenuItemReviewIngestService {
+
+  public static final String QUEUED = "QUEUED";
+  public static final String WRITTEN = "WRITTEN";
+  public static final String FAILED = "FAILED";
+  public static final String UNKNOWN = "UNKNOWN";
+
+  static final int STATUS_RETAINED = 10000;
+
+  static final String INSERT_SQL = "INSERT INTO menuitemreviews (item_id, reviewer_email, stars, date_reviewed, comments)"
+      + " VALUES (?, ?, ?, ?, ?)";
+
+  private record Pending(String trackingId, MenuItemReview review, long acceptedAt) {
+  }
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  MenuItemReviewStatsService menuItemReviewStatsService;
+
+  @Autowired
+  MenuItemReviewTopService menuItemReviewTopService;
+
+  @Autowired
+  UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
+  @Value("${app.menuitemreview.ingest.capacity:10000}")
+  int capacity;
+
+  @Value("${app.menuitemreview.ingest.batchSize:500}")
+  int batchSize;
+
+  @Value("${app.menuitemreview.ingest.flushMillis:200}")
+  long flushMillis;
+
+  private BlockingQueue<Pending> queue;
+  private volatile boolean running;
+  private final ReadWriteLock accepting = new ReentrantReadWriteLock();
+
+  Thread writer;
+
+  private final Map<String, String> statuses = new LinkedHashMap<>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > STATUS_RETAINED;
+    }
+  };
+
+  private final LongAdder syncPosts = new LongAdder();
+  private final LongAdder syncNanos = new LongAdder();
+  private final LongAccumulator syncMaxNanos = new LongAccumulator(Long::max, 0);
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder acceptNanos = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder writeNanos = new LongAdder();
+  private final LongAdder lagNanos = new LongAdder();
+  private final LongAccumulator maxLagNanos = new LongAccumulator(Long::max, 0);
+
+  @PostConstruct
+  public void init() {
+    open();
+    writer = new Thread(this::runWriter, "menuitemreview-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /** Accept reviews without starting the writer; tests call flush() themselves. */
+  void open() {
+    queue = new ArrayBlockingQueue<>(capacity);
+    running = true;
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    accepting.writeLock().lock();
+    try {
+      running = false;
+    } finally {
+      accepting.writeLock().unlock();
+    }
+    if (writer != null) {
+      writer.join(TimeUnit.SECONDS.toMillis(30));
+    }
+    int remaining = 0;
+    for (int n = flush(); n > 0; n = flush()) {
+      remaining += n;
+    }
+    log.info("review writer stopped, flushed {} queued reviews", remaining);
+  }
+
+  /** Queue the review; empty if the queue is full or the writer is stopping. */
+  public Optional<String> submit(MenuItemReview review) {
+    long started = System.nanoTime();
+    accepting.readLock().lock();
+    try {
+      if (!running) {
+        rejected.increment();
+        return Optional.empty();
+      }
+      String trackingId = UUID.randomUUID().toString();
+      synchronized (statuses) {
+        statuses.put(trackingId, QUEUED);
+      }
+      if (!queue.offer(new Pending(trackingId, review, started))) {
+        synchronized (statuses) {
+          statuses.remove(trackingId);
+        }
+        rejected.increment();
+        return Optional.empty();
+      }
+      accepted.increment();
+      acceptNanos.add(System.nanoTime() - started);
+      return Optional.of(trackingId);
+    } finally {
+      accepting.readLock().unlock();
+    }
+  }
+
+  public ReviewIngestStatus status(String trackingId) {
+    String status;
+    synchronized (statuses) {
+      status = statuses.getOrDefault(trackingId, UNKNOWN);
+    }
+    return ReviewIngestStatus.builder().trackingId(trackingId).status(status).build();
+  }
+
+  /** Time taken by a synchronous /post, for comparison with the queued path. */
+  public void recordSync(long nanos) {
+    syncPosts.increment();
+    syncNanos.add(nanos);
+    syncMaxNanos.accumulate(nanos);
+  }
+
+  public ReviewIngestMetrics metrics() {
+    return ReviewIngestMetrics.builder()
+        .syncPosts(syncPosts.sum())
+        .syncAverageMillis(millis(syncNanos.sum(), syncPosts.sum()))
+        .syncMaxMillis(millis(syncMaxNanos.get(), 1))
+        .syncRowsPerSecond(perSecond(syncPosts.sum(), syncNanos.sum()))
+        .asyncAccepted(accepted.sum())
+        .asyncRejected(rejected.sum())
+        .asyncWritten(written.sum())
+        .asyncFailed(failed.sum())
+        .batches(batches.sum())
+        .queueDepth(queue.size())
+        .queueCapacity(capacity)
+        .asyncAverageAcceptMillis(millis(acceptNanos.sum(), accepted.sum()))
+        .asyncAverageLagMillis(millis(lagNanos.sum(), written.sum()))
+        .asyncMaxLagMillis(millis(maxLagNanos.get(), 1))
+        .asyncRowsPerSecond(perSecond(written.sum(), writeNanos.sum()))
+        .build();
+  }
+
+  /** Write up to batchSize queued reviews now; returns how many were taken from the queue. */
+  int flush() {
+    List<Pending> batch = new ArrayList<>(batchSize);
+    queue.drainTo(batch, batchSize);
+    if (!batch.isEmpty()) {
+      write(batch);
+    }
+    return batch.size();
+  }
+
+  private void runWriter() {
+    while (running) {
+      try {
+        Pending first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          List<Pending> batch = new ArrayList<>(batchSize);
+          batch.add(first);
+          queue.drainTo(batch, batchSize - 1);
+          write(batch);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        log.error("review writer failed", e);
+      }
+    }
+  }
+
+  private void write(List<Pending> batch) {
+    long started = System.nanoTime();
+    List<Pending> done = new ArrayList<>(batch.size());
+    try {
+      insert(batch);
+      done.addAll(batch);
+    } catch (RuntimeException e) {
+      log.warn("batch of {} reviews failed, retrying one at a time: {}", batch.size(), e.getMessage());
+      for (Pending pending : batch) {
+        try {
+          insert(List.of(pending));
+          done.add(pending);
+        } catch (RuntimeException rowFailure) {
+          log.warn("review {} could not be written: {}", pending.trackingId(), rowFailure.getMessage());
+          setStatus(pending.trackingId(), FAILED);
+          failed.increment();
+        }
+      }
+    }
+    long finished = System.nanoTime();
+    writeNanos.add(finished - started);
+    batches.increment();
+    for (Pending pending : done) {
+      MenuItemReview review = pending.review();
+      menuItemReviewStatsService.add(review.getItemId(), review.getStars());
+      ucsbDiningCommonsSnapshotService.invalidateItem(review.getItemId());
+      setStatus(pending.trackingId(), WRITTEN);
+      written.increment();
+      lagNanos.add(finished - pending.acceptedAt());
+      maxLagNanos.accumulate(finished - pending.acceptedAt());
+    }
+    if (!done.isEmpty()) {
+      menuItemReviewTopService.invalidate();
+    }
+  }
+
+  private void insert(List<Pending> rows) {
+    List<Object[]> args = rows.stream()
+        .map(Pending::review)
+        .map(review -> new Object[] {
+            review.getItemId(),
+            review.getReviewerEmail(),
+            review.getStars(),
+            review.getDateReviewed() == null ? null : Timestamp.valueOf(review.getDateReviewed()),
+            review.getComments() })
+        .toList();
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args));
+  }
+
+  private void setStatus(String trackingId, String status) {
+    synchronized (statuses) {
+      if (statuses.containsKey(trackingId)) {
+        statuses.put(trackingId, status);
+      }
+    }
+  }
+
+  private static double millis(long nanos, long count) {
+    return count == 0 ? 0 : nanos / 1e6 / count;
+  }
+
+  private static double perSecond(long rows, long nanos) {
+    return nanos == 0 ? 0 : rows * 1e9 / nanos;
+  }
+}
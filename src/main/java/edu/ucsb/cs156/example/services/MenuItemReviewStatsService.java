@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.MenuItemRatingStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Per menu item star histogram of MenuItemReviews, kept in memory so the
+// count, sum and average rating of an item are O(1) to read.
+//
+// It is loaded with a GROUP BY over the table at startup, and the
+// controller keeps it current by calling add/remove/update with the
+// itemId and stars of each review it writes. Stars are clamped to 0..5.
+//
+// verify() recounts the table and compares; a review written while the
+// recount runs can show up as a spurious mismatch, so run it again before
+// repairing.
+
+@Slf4j
+@Service("menuItemReviewStats")
+public class MenuItemReviewStatsService {
+
+  static final int MAX_STARS = 5;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<Long, long[]> histograms = new HashMap<>();
+
+  @PostConstruct
+  public void init() {
+    Map<Long, long[]> recount = recount();
+    lock.writeLock().lock();
+    try {
+      histograms.clear();
+      histograms.putAll(recount);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("MenuItemReview stats loaded for {} items", recount.size());
+  }
+
+  public void add(Long itemId, int stars) {
+    lock.writeLock().lock();
+    try {
+      adjust(itemId, stars, 1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(Long itemId, int stars) {
+    lock.writeLock().lock();
+    try {
+      adjust(itemId, stars, -1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** A review changed from (oldItemId, oldStars) to (newItemId, newStars). */
+  public void update(Long oldItemId, int oldStars, Long newItemId, int newStars) {
+    lock.writeLock().lock();
+    try {
+      adjust(oldItemId, oldStars, -1);
+      adjust(newItemId, newStars, 1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** The items were deleted together with their reviews. */
+  public void removeItems(Collection<Long> itemIds) {
+    lock.writeLock().lock();
+    try {
+      histograms.keySet().removeAll(itemIds);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Stats for one item; all zero if it has no reviews. */
+  public MenuItemRatingStats get(long itemId) {
+    lock.readLock().lock();
+    try {
+      return toStats(itemId, histograms.get(itemId));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Stats for every item that has reviews, keyed and ordered by itemId. */
+  public Map<Long, MenuItemRatingStats> getAll() {
+    lock.readLock().lock();
+    try {
+      Map<Long, MenuItemRatingStats> all = new TreeMap<>();
+      histograms.forEach((itemId, histogram) -> all.put(itemId, toStats(itemId, histogram)));
+      return all;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Compare with a full recount of the table, replacing the in-memory stats with it if repair is set. */
+  public ConsistencyReport verify(boolean repair) {
+    Map<Long, long[]> recount = recount();
+    lock.writeLock().lock();
+    try {
+      TreeSet<Long> itemIds = new TreeSet<>(histograms.keySet());
+      itemIds.addAll(recount.keySet());
+      List<String> mismatches = new ArrayList<>();
+      for (Long itemId : itemIds) {
+        long[] expected = recount.getOrDefault(itemId, new long[MAX_STARS + 1]);
+        long[] actual = histograms.getOrDefault(itemId, new long[MAX_STARS + 1]);
+        if (!Arrays.equals(expected, actual)) {
+          mismatches.add("itemId %d: histogram %s, recount %s".formatted(itemId, Arrays.toString(actual), Arrays.toString(expected)));
+        }
+      }
+      boolean repaired = repair && !mismatches.isEmpty();
+      if (repaired) {
+        histograms.clear();
+        histograms.putAll(recount);
+      }
+      if (!mismatches.isEmpty()) {
+        log.warn("MenuItemReview stats differ from recount for {} items (repaired: {})", mismatches.size(), repaired);
+      }
+      return ConsistencyReport.builder()
+          .consistent(mismatches.isEmpty())
+          .checked(itemIds.size())
+          .mismatches(mismatches)
+          .repaired(repaired)
+          .build();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private Map<Long, long[]> recount() {
+    Map<Long, long[]> counts = new HashMap<>();
+    for (Object[] row : menuItemReviewRepository.countByItemIdAndStars()) {
+      long itemId = ((Number) row[0]).longValue();
+      int stars = ((Number) row[1]).intValue();
+      long count = ((Number) row[2]).longValue();
+      counts.computeIfAbsent(itemId, id -> new long[MAX_STARS + 1])[bucket(stars)] += count;
+    }
+    return counts;
+  }
+
+  private void adjust(Long itemId, int stars, int delta) {
+    if (itemId == null) {
+      return;
+    }
+    long[] histogram = histograms.computeIfAbsent(itemId, id -> new long[MAX_STARS + 1]);
+    histogram[bucket(stars)] += delta;
+    if (Arrays.stream(histogram).allMatch(n -> n == 0)) {
+      histograms.remove(itemId);
+    }
+  }
+
+  static int bucket(int stars) {
+    return Math.max(0, Math.min(MAX_STARS, stars));
+  }
+
+  static MenuItemRatingStats toStats(long itemId, long[] histogram) {
+    long[] copy = histogram == null ? new long[MAX_STARS + 1] : histogram.clone();
+    long count = 0;
+    long sum = 0;
+    for (int stars = 0; stars <= MAX_STARS; stars++) {
+      count += copy[stars];
+      sum += stars * copy[stars];
+    }
+    return MenuItemRatingStats.builder()
+        .itemId(itemId)
+        .count(count)
+        .sum(sum)
+        .average(count == 0 ? 0 : (double) sum / count)
+        .histogram(copy)
+        .build();
+  }
+}
@@ -0,0 +1,147 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+// The k best rated menu items, optionally only counting reviews since a
+// given time and only items of one dining commons.
+//
+// The database groups the reviews by item and the per-item totals are read
+// row by row into a min-heap holding the best k seen so far, so memory is
+// O(k) however many items have reviews. Ties in the average are broken by
+// review count, then by itemId.
+//
+// Results are cached per (k, since, diningCommonsCode) for
+// app.menuitemreview.top.ttlSeconds; MenuItemReviewController calls
+// invalidate() after every review it writes. A result computed while an
+// invalidation happened is returned but not cached.
+
+@Service("menuItemReviewTop")
+public class MenuItemReviewTopService {
+
+  static final int MAX_CACHED = 256;
+
+  static final String TOTALS_SQL = "SELECT item_id, COUNT(*), SUM(stars) FROM menuitemreviews"
+      + " WHERE item_id IS NOT NULL AND date_reviewed >= ?";
+  static final String IN_COMMONS_SQL = " AND item_id IN"
+      + " (SELECT id FROM ucsbdiningcommonsmenuitem WHERE dining_commons_code = ?)";
+  static final String GROUP_SQL = " GROUP BY item_id";
+
+  static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  static final Comparator<TopMenuItem> BEST_FIRST = Comparator
+      .comparingDouble(TopMenuItem::getAverage).reversed()
+      .thenComparing(Comparator.comparingLong(TopMenuItem::getCount).reversed())
+      .thenComparingLong(TopMenuItem::getItemId);
+
+  private record Key(int k, LocalDateTime since, String diningCommonsCode) {
+  }
+
+  private record Cached(Instant expires, List<TopMenuItem> items) {
+  }
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Value("${app.menuitemreview.top.ttlSeconds:60}")
+  long ttlSeconds;
+
+  Clock clock = Clock.systemUTC();
+
+  private long generation = 0;
+
+  // access ordered, so the least recently used entry is dropped first
+  private final Map<Key, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+      return size() > MAX_CACHED;
+    }
+  };
+
+  /** Best rated items first; since and diningCommonsCode may be null. */
+  public List<TopMenuItem> top(int k, LocalDateTime since, String diningCommonsCode) {
+    Key key = new Key(k, since, diningCommonsCode);
+    long computedAt;
+    synchronized (cache) {
+      Cached cached = cache.get(key);
+      if (cached != null && clock.instant().isBefore(cached.expires())) {
+        return cached.items();
+      }
+      computedAt = generation;
+    }
+    List<TopMenuItem> items = compute(key);
+    synchronized (cache) {
+      if (generation == computedAt) {
+        cache.put(key, new Cached(clock.instant().plusSeconds(ttlSeconds), items));
+      }
+    }
+    return items;
+  }
+
+  public void invalidate() {
+    synchronized (cache) {
+      generation++;
+      cache.clear();
+    }
+  }
+
+  private List<TopMenuItem> compute(Key key) {
+    int k = key.k();
+    // the head is the worst of the best k so far
+    PriorityQueue<TopMenuItem> best = new PriorityQueue<>(k + 1, BEST_FIRST.reversed());
+    LocalDateTime since = key.since() == null ? BEGINNING : key.since();
+    String sql = TOTALS_SQL + (key.diningCommonsCode() == null ? "" : IN_COMMONS_SQL) + GROUP_SQL;
+    Object[] args = key.diningCommonsCode() == null
+        ? new Object[] { since }
+        : new Object[] { since, key.diningCommonsCode() };
+    jdbcTemplate.query(sql, rs -> {
+      long count = rs.getLong(2);
+      TopMenuItem item = TopMenuItem.builder()
+          .itemId(rs.getLong(1))
+          .count(count)
+          .average((double) rs.getLong(3) / count)
+          .build();
+      best.add(item);
+      if (best.size() > k) {
+        best.poll();
+      }
+    }, args);
+
+    List<TopMenuItem> items = new ArrayList<>(best);
+    items.sort(BEST_FIRST);
+    Map<Long, UCSBDiningCommonsMenuItem> menuItems = StreamSupport
+        .stream(ucsbDiningCommonsMenuItemRepository.findAllById(items.stream().map(TopMenuItem::getItemId).toList()).spliterator(), false)
+        .collect(Collectors.toMap(UCSBDiningCommonsMenuItem::getId, Function.identity()));
+    for (TopMenuItem item : items) {
+      UCSBDiningCommonsMenuItem menuItem = menuItems.get(item.getItemId());
+      if (menuItem != null) {
+        item.setName(menuItem.getName());
+        item.setStation(menuItem.getStation());
+        item.setDiningCommonsCode(menuItem.getDiningCommonsCode());
+      }
+    }
+    return items;
+  }
+}
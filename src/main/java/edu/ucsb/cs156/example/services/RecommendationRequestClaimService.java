@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.errors.EntityConflictException;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Claiming and completing RecommendationRequests from a shared queue.
+//
+// Each is a single conditional UPDATE that only matches the version of the
+// request the caller last read, and only while it is still open, so two
+// workers can never both claim or complete the same request and no row is
+// locked while a worker decides. The loser's UPDATE matches no row; the
+// request is then read again to tell "not found" (404) from "someone else
+// got there first" (409).
+//
+// A request claimed by one user can only be completed by that user;
+// unclaimed ones can be completed by anyone. Completing moves the request
+// from open to completed in the inbox counts, under the professorEmail and
+// dateNeeded it had at the version that was completed: that version is
+// read before the UPDATE, and if the UPDATE matches it, it is exactly the
+// row that changed, whatever later writers do before it is reloaded.
+
+@Slf4j
+@Service("recommendationRequestClaims")
+public class RecommendationRequestClaimService {
+
+  static final String CLAIM_SQL = "UPDATE recommendationrequests SET claimed_by = ?, version = version + 1"
+      + " WHERE id = ? AND version = ? AND done = false AND claimed_by IS NULL";
+  static final String COMPLETE_SQL = "UPDATE recommendationrequests SET done = true, version = version + 1"
+      + " WHERE id = ? AND version = ? AND done = false AND (claimed_by IS NULL OR claimed_by = ?)";
+  static final String OPEN_AT_VERSION_SQL = "SELECT professor_email, date_needed FROM recommendationrequests"
+      + " WHERE id = ? AND version = ? AND done = false";
+  static final String INITIALIZE_VERSIONS_SQL = "UPDATE recommendationrequests SET version = 0 WHERE version IS NULL";
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  @Autowired
+  RecommendationRequestInboxService recommendationRequestInboxService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @PostConstruct
+  public void initializeVersions() {
+    int initialized = jdbcTemplate.update(INITIALIZE_VERSIONS_SQL);
+    if (initialized > 0) {
+      log.info("set version 0 on {} recommendation requests", initialized);
+    }
+  }
+
+  public RecommendationRequest claim(long id, long version, String email) {
+    if (jdbcTemplate.update(CLAIM_SQL, email, id, version) == 0) {
+      throw conflict(id, version, email);
+    }
+    return reload(id);
+  }
+
+  public RecommendationRequest complete(long id, long version, String email) {
+    List<RecommendationRequest> open = jdbcTemplate.query(OPEN_AT_VERSION_SQL, RecommendationRequestClaimService::openRow, id, version);
+    if (open.isEmpty() || jdbcTemplate.update(COMPLETE_SQL, id, version, email) == 0) {
+      throw conflict(id, version, email);
+    }
+    RecommendationRequest completed = open.get(0);
+    recommendationRequestInboxService.update(completed.getProfessorEmail(), completed.getDateNeeded(), false,
+        completed.getProfessorEmail(), completed.getDateNeeded(), true);
+    return reload(id);
+  }
+
+  static RecommendationRequest openRow(ResultSet row, int rowNum) throws SQLException {
+    return RecommendationRequest.builder()
+        .professorEmail(row.getString(1))
+        .dateNeeded(row.getObject(2, LocalDateTime.class))
+        .build();
+  }
+
+  private RecommendationRequest reload(long id) {
+    return recommendationRequestRepository.findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(RecommendationRequest.class, id));
+  }
+
+  private RuntimeException conflict(long id, long version, String email) {
+    RecommendationRequest current = reload(id);
+    String reason;
+    if (current.getDone()) {
+      reason = "is already done";
+    } else if (current.getClaimedBy() != null && !current.getClaimedBy().equals(email)) {
+      reason = "is claimed by %s".formatted(current.getClaimedBy());
+    } else if (current.getClaimedBy() != null && current.getVersion() != null && current.getVersion() == version) {
+      reason = "is already claimed by you";
+    } else {
+      reason = "was changed since version %d (now version %s)".formatted(version, current.getVersion());
+    }
+    return new EntityConflictException("RecommendationRequest with id %d %s".formatted(id, reason));
+  }
+}
@@ -0,0 +1,185 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.DueScanMetrics;
+import edu.ucsb.cs156.example.models.DueSoonEvent;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Flags open RecommendationRequests whose dateNeeded is less than
+// windowHours away, as a list of events clients poll with ?after=.
+//
+// Every scanMillis the scanner moves a high-water mark forward to
+// now + windowHours and reads only the open requests whose dateNeeded lies
+// between the old mark and the new one, i.e. the ones that crossed into the
+// window since the last run. That is one range of the (done, dateNeeded)
+// index, so a run costs the same however many requests there are. The
+// first run starts the mark at now, so requests already overdue are left
+// to the overdue queue.
+//
+// A request created, or moved to an earlier dateNeeded, below the mark
+// would never be scanned, so the controller tells created()/updated() about
+// every request it writes, which flag it right away in that case.
+//
+// A run moves the mark before it queries, and the query runs without the
+// lock, so writes are not held up by it. A request written into the range
+// meanwhile is then flagged both by the write and by the run, so each
+// requestId is published once; the ids are forgotten once their dateNeeded
+// has passed, as nothing can flag them again after that.
+//
+// A request that is deleted or completed has its events withdrawn, and its
+// id stays flagged so a run that read it before the write does not publish
+// it again. If it is reopened into the window, updated() flags it anew.
+//
+// The newest maxEvents events are kept in memory, so they are lost on
+// restart.
+
+@Slf4j
+@Service("recommendationRequestDueScan")
+public class RecommendationRequestDueScanService {
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  @Value("${app.recommendationrequest.due.windowHours:48}")
+  long windowHours;
+
+  @Value("${app.recommendationrequest.due.maxEvents:1000}")
+  int maxEvents;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  private LocalDateTime scannedUntil;
+  private final Deque<DueSoonEvent> events = new ArrayDeque<>();
+  private long lastEventId = 0;
+  // requestId -> dateNeeded of the requests published while it is ahead
+  final Map<Long, LocalDateTime> flagged = new HashMap<>();
+
+  private long runs = 0;
+  private LocalDateTime lastRunAt;
+  private long lastRunNanos = 0;
+  private long maxRunNanos = 0;
+  private long lastRowsScanned = 0;
+  private long rowsScanned = 0;
+
+  @Scheduled(initialDelayString = "${app.recommendationrequest.due.scanMillis:60000}",
+      fixedDelayString = "${app.recommendationrequest.due.scanMillis:60000}")
+  public void scan() {
+    long start = System.nanoTime();
+    LocalDateTime now = LocalDateTime.now(clock);
+    LocalDateTime upTo = now.plusHours(windowHours);
+    LocalDateTime after;
+    synchronized (this) {
+      after = scannedUntil == null ? now : scannedUntil;
+      scannedUntil = upTo;
+    }
+    List<RecommendationRequest> crossed = after.isBefore(upTo)
+        ? recommendationRequestRepository.findOpenNeededBetween(after, upTo)
+        : List.of();
+
+    synchronized (this) {
+      flagged.values().removeIf(dateNeeded -> !dateNeeded.isAfter(now));
+      crossed.forEach(request -> publish(request, now));
+      runs++;
+      lastRunAt = now;
+      lastRunNanos = System.nanoTime() - start;
+      maxRunNanos = Math.max(maxRunNanos, lastRunNanos);
+      lastRowsScanned = crossed.size();
+      rowsScanned += crossed.size();
+    }
+    if (!crossed.isEmpty()) {
+      log.info("{} recommendation requests are now due within {} hours", crossed.size(), windowHours);
+    }
+  }
+
+  /** A request was created; flags it if it is already inside the scanned part of the window. */
+  public synchronized void created(RecommendationRequest request) {
+    LocalDateTime now = LocalDateTime.now(clock);
+    if (inScannedWindow(request.getDateNeeded(), request.getDone(), now)) {
+      publish(request, now);
+    }
+  }
+
+  /** A request was updated; flags it if it moved into the scanned part of the window. */
+  public synchronized void updated(LocalDateTime oldDateNeeded, boolean oldDone, RecommendationRequest request) {
+    LocalDateTime now = LocalDateTime.now(clock);
+    if (inScannedWindow(request.getDateNeeded(), request.getDone(), now) && !inScannedWindow(oldDateNeeded, oldDone, now)) {
+      flagged.remove(request.getId());
+      publish(request, now);
+    } else if (request.getDone()) {
+      withdraw(request);
+    }
+  }
+
+  /** A request was deleted or completed; it is no longer due. */
+  public synchronized void removed(RecommendationRequest request) {
+    withdraw(request);
+  }
+
+  private void withdraw(RecommendationRequest request) {
+    events.removeIf(event -> event.getRequestId() == request.getId());
+    if (request.getDateNeeded() != null) {
+      flagged.put(request.getId(), request.getDateNeeded());
+    }
+  }
+
+  private boolean inScannedWindow(LocalDateTime dateNeeded, boolean done, LocalDateTime now) {
+    return scannedUntil != null && !done && dateNeeded != null
+        && dateNeeded.isAfter(now) && !dateNeeded.isAfter(scannedUntil);
+  }
+
+  /** The events after the one with id after, oldest first. */
+  public synchronized List<DueSoonEvent> eventsAfter(long after) {
+    List<DueSoonEvent> newer = new ArrayList<>();
+    for (DueSoonEvent event : events) {
+      if (event.getId() > after) {
+        newer.add(event);
+      }
+    }
+    return newer;
+  }
+
+  public synchronized DueScanMetrics metrics() {
+    return DueScanMetrics.builder()
+        .runs(runs)
+        .lastRunAt(lastRunAt)
+        .lastRunMillis(lastRunNanos / 1e6)
+        .maxRunMillis(maxRunNanos / 1e6)
+        .lastRowsScanned(lastRowsScanned)
+        .rowsScanned(rowsScanned)
+        .eventsPublished(lastEventId)
+        .scannedUntil(scannedUntil)
+        .build();
+  }
+
+  private void publish(RecommendationRequest request, LocalDateTime now) {
+    if (flagged.putIfAbsent(request.getId(), request.getDateNeeded()) != null) {
+      return;
+    }
+    events.addLast(DueSoonEvent.builder()
+        .id(++lastEventId)
+        .requestId(request.getId())
+        .requesterEmail(request.getRequesterEmail())
+        .professorEmail(request.getProfessorEmail())
+        .dateNeeded(request.getDateNeeded())
+        .flaggedAt(now)
+        .build());
+    while (events.size() > maxEvents) {
+      events.removeFirst();
+    }
+  }
+}
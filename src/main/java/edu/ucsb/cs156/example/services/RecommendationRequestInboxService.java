@@ -0,0 +1,216 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.InboxSummary;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+// Open, overdue and completed RecommendationRequest counts per
+// professorEmail, kept in memory so the dashboard does not have to fetch
+// every request.
+//
+// Overdue depends on the time of the question, so instead of a counter
+// each professor has the number of open requests per dateNeeded; overdue
+// is the part of it before now. Open requests without a dateNeeded are
+// never overdue.
+//
+// It is loaded with a GROUP BY at startup and kept current by the
+// controller (and the claim service) calling add/remove/update with the
+// professorEmail, dateNeeded and done of each request they write. As with
+// the review stats, verify() can report a spurious mismatch for a request
+// written while it recounts, so run it again before repairing.
+
+@Slf4j
+@Service("recommendationRequestInbox")
+public class RecommendationRequestInboxService {
+
+  // key of open requests without a dateNeeded
+  static final LocalDateTime NO_DEADLINE = LocalDateTime.MAX;
+
+  @Autowired
+  RecommendationRequestRepository recommendationRequestRepository;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  @EqualsAndHashCode
+  private static class Inbox {
+    long completed;
+    final TreeMap<LocalDateTime, Long> open = new TreeMap<>();
+
+    boolean isEmpty() {
+      return completed == 0 && open.isEmpty();
+    }
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Inbox> inboxes = new HashMap<>();
+
+  @PostConstruct
+  public void init() {
+    Map<String, Inbox> recount = recount();
+    lock.writeLock().lock();
+    try {
+      inboxes.clear();
+      inboxes.putAll(recount);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("RecommendationRequest inbox counts loaded for {} professors", recount.size());
+  }
+
+  public void add(String professorEmail, LocalDateTime dateNeeded, boolean done) {
+    lock.writeLock().lock();
+    try {
+      adjust(inboxes, professorEmail, dateNeeded, done, 1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String professorEmail, LocalDateTime dateNeeded, boolean done) {
+    lock.writeLock().lock();
+    try {
+      adjust(inboxes, professorEmail, dateNeeded, done, -1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** A request changed from (oldProfessorEmail, oldDateNeeded, oldDone) to (professorEmail, dateNeeded, done). */
+  public void update(String oldProfessorEmail, LocalDateTime oldDateNeeded, boolean oldDone,
+      String professorEmail, LocalDateTime dateNeeded, boolean done) {
+    lock.writeLock().lock();
+    try {
+      adjust(inboxes, oldProfessorEmail, oldDateNeeded, oldDone, -1);
+      adjust(inboxes, professorEmail, dateNeeded, done, 1);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Counts for one professor; all zero if they have no requests. */
+  public InboxSummary get(String professorEmail) {
+    LocalDateTime now = LocalDateTime.now(clock);
+    lock.readLock().lock();
+    try {
+      return toSummary(professorEmail, inboxes.get(professorEmail), now);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Counts for every professor that has requests, ordered by professorEmail. */
+  public List<InboxSummary> getAll() {
+    LocalDateTime now = LocalDateTime.now(clock);
+    lock.readLock().lock();
+    try {
+      List<InboxSummary> all = new ArrayList<>();
+      new TreeMap<>(inboxes).forEach((professorEmail, inbox) -> all.add(toSummary(professorEmail, inbox, now)));
+      return all;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Compare with a fresh aggregate of the table, replacing the counts with it if repair is set. */
+  public ConsistencyReport verify(boolean repair) {
+    Map<String, Inbox> recount = recount();
+    LocalDateTime now = LocalDateTime.now(clock);
+    lock.writeLock().lock();
+    try {
+      TreeSet<String> professorEmails = new TreeSet<>(inboxes.keySet());
+      professorEmails.addAll(recount.keySet());
+      List<String> mismatches = new ArrayList<>();
+      for (String professorEmail : professorEmails) {
+        Inbox expected = recount.getOrDefault(professorEmail, new Inbox());
+        Inbox actual = inboxes.getOrDefault(professorEmail, new Inbox());
+        if (!expected.equals(actual)) {
+          mismatches.add("professorEmail %s: counters %s, recount %s".formatted(professorEmail,
+              counts(toSummary(professorEmail, actual, now)), counts(toSummary(professorEmail, expected, now))));
+        }
+      }
+      boolean repaired = repair && !mismatches.isEmpty();
+      if (repaired) {
+        inboxes.clear();
+        inboxes.putAll(recount);
+      }
+      if (!mismatches.isEmpty()) {
+        log.warn("RecommendationRequest inbox counts differ from recount for {} professors (repaired: {})", mismatches.size(), repaired);
+      }
+      return ConsistencyReport.builder()
+          .consistent(mismatches.isEmpty())
+          .checked(professorEmails.size())
+          .mismatches(mismatches)
+          .repaired(repaired)
+          .build();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private Map<String, Inbox> recount() {
+    Map<String, Inbox> counts = new HashMap<>();
+    for (Object[] row : recommendationRequestRepository.countByProfessorEmail()) {
+      adjust(counts, (String) row[0], (LocalDateTime) row[2], (Boolean) row[1], ((Number) row[3]).longValue());
+    }
+    return counts;
+  }
+
+  private static void adjust(Map<String, Inbox> inboxes, String professorEmail, LocalDateTime dateNeeded, boolean done, long delta) {
+    if (professorEmail == null) {
+      return;
+    }
+    Inbox inbox = inboxes.computeIfAbsent(professorEmail, email -> new Inbox());
+    if (done) {
+      inbox.completed += delta;
+    } else {
+      inbox.open.merge(dateNeeded == null ? NO_DEADLINE : dateNeeded, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+    if (inbox.isEmpty()) {
+      inboxes.remove(professorEmail);
+    }
+  }
+
+  private static InboxSummary toSummary(String professorEmail, Inbox inbox, LocalDateTime now) {
+    long open = 0;
+    long overdue = 0;
+    long completed = 0;
+    if (inbox != null) {
+      for (long count : inbox.open.values()) {
+        open += count;
+      }
+      for (long count : inbox.open.headMap(now).values()) {
+        overdue += count;
+      }
+      completed = inbox.completed;
+    }
+    return InboxSummary.builder()
+        .professorEmail(professorEmail)
+        .open(open)
+        .overdue(overdue)
+        .completed(completed)
+        .build();
+  }
+
+  private static String counts(InboxSummary summary) {
+    return "open %d overdue %d completed %d".formatted(summary.getOpen(), summary.getOverdue(), summary.getCompleted());
+  }
+}
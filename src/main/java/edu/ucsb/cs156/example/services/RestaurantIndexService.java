@@ -0,0 +1,255 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// In-memory inverted index over Restaurant name and description.
+//
+// Each token maps to the restaurants containing it along with a weight
+// (occurrences in the name count NAME_WEIGHT times as much as occurrences
+// in the description). Queries are scored as sum(weight * idf) over the
+// query tokens and the best `limit` results are selected with a bounded heap.
+//
+// Names are also kept in a sorted map for type-ahead: each restaurant has one
+// key per word start of its normalized name ("taco bell", "bell"), so a prefix
+// lookup is a subMap range scan that stops after `limit` restaurants.
+// The map is a ConcurrentSkipListMap so keystroke lookups never wait on the lock.
+//
+// The controller keeps the index current by calling put/remove after each write.
+
+@Slf4j
+@Service("restaurantIndex")
+public class RestaurantIndexService {
+
+  static final int NAME_WEIGHT = 3;
+
+  // separates the name from the id in prefix keys; sorts before any name character
+  private static final char KEY_SEPARATOR = '\u0000';
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<Long, Restaurant> byId = new HashMap<>();
+  private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+  private final ConcurrentSkipListMap<String, Restaurant> namePrefixes = new ConcurrentSkipListMap<>();
+
+  @PostConstruct
+  public void init() {
+    rebuild(restaurantRepository.findAll());
+  }
+
+  public void rebuild(Iterable<Restaurant> restaurants) {
+    lock.writeLock().lock();
+    try {
+      byId.clear();
+      postings.clear();
+      namePrefixes.clear();
+      for (Restaurant restaurant : restaurants) {
+        add(copyOf(restaurant));
+      }
+      log.info("Restaurant index rebuilt with {} restaurants and {} terms", byId.size(), postings.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void put(Restaurant restaurant) {
+    lock.writeLock().lock();
+    try {
+      Restaurant previous = byId.get(restaurant.getId());
+      if (previous != null) {
+        detach(previous);
+      }
+      add(copyOf(restaurant));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      Restaurant previous = byId.get(id);
+      if (previous != null) {
+        detach(previous);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Restaurants matching any token of the query, best match first. */
+  public List<Restaurant> search(String query, int limit) {
+    Set<String> terms = new LinkedHashSet<>(tokenize(query));
+    if (terms.isEmpty() || limit <= 0) {
+      return new ArrayList<>();
+    }
+
+    lock.readLock().lock();
+    try {
+      // scores are accumulated in place in one-element arrays to avoid
+      // boxing a new Double for every posting
+      Map<Long, double[]> scores = new HashMap<>();
+      int documents = byId.size();
+      for (String term : terms) {
+        Map<Long, Integer> docs = postings.get(term);
+        if (docs == null) {
+          continue;
+        }
+        double idf = Math.log(1.0 + (double) documents / docs.size());
+        for (Map.Entry<Long, Integer> doc : docs.entrySet()) {
+          scores.computeIfAbsent(doc.getKey(), id -> new double[1])[0] += doc.getValue() * idf;
+        }
+      }
+
+      // min-heap of the best `limit` so far; ties go to the lower id
+      Comparator<Map.Entry<Long, double[]>> byRank = Comparator
+          .<Map.Entry<Long, double[]>>comparingDouble(e -> e.getValue()[0])
+          .thenComparing(Map.Entry.<Long, double[]>comparingByKey().reversed());
+      PriorityQueue<Map.Entry<Long, double[]>> best = new PriorityQueue<>(limit + 1, byRank);
+      for (Map.Entry<Long, double[]> score : scores.entrySet()) {
+        best.offer(score);
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+
+      List<Restaurant> result = new ArrayList<>(best.size());
+      while (!best.isEmpty()) {
+        result.add(copyOf(byId.get(best.poll().getKey())));
+      }
+      Collections.reverse(result);
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Restaurants having a word in their name that starts with the prefix,
+   * in alphabetical order of the matching part of the name.
+   */
+  public List<Restaurant> autocomplete(String prefix, int limit) {
+    List<Restaurant> result = new ArrayList<>();
+    String normalized = normalizeName(prefix);
+    if (normalized.isEmpty() || limit <= 0) {
+      return result;
+    }
+
+    // a restaurant can match on more than one word, so dedupe by id
+    Map<Long, Restaurant> matches = new LinkedHashMap<>();
+    for (Restaurant restaurant : namePrefixes.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+      matches.putIfAbsent(restaurant.getId(), restaurant);
+      if (matches.size() == limit) {
+        break;
+      }
+    }
+    matches.values().forEach(restaurant -> result.add(copyOf(restaurant)));
+    return result;
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return byId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  // lower case, with every run of non letters/digits collapsed to one space
+  static String normalizeName(String name) {
+    return name == null ? "" : String.join(" ", tokenize(name));
+  }
+
+  static List<String> prefixKeys(Restaurant restaurant) {
+    List<String> keys = new ArrayList<>();
+    String name = normalizeName(restaurant.getName());
+    if (name.isEmpty()) {
+      return keys;
+    }
+    String suffix = KEY_SEPARATOR + Long.toString(restaurant.getId());
+    keys.add(name + suffix);
+    for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+      keys.add(name.substring(i + 1) + suffix);
+    }
+    return keys;
+  }
+
+  private static Map<String, Integer> weights(Restaurant restaurant) {
+    Map<String, Integer> weights = new HashMap<>();
+    for (String token : tokenize(restaurant.getName())) {
+      weights.merge(token, NAME_WEIGHT, Integer::sum);
+    }
+    for (String token : tokenize(restaurant.getDescription())) {
+      weights.merge(token, 1, Integer::sum);
+    }
+    return weights;
+  }
+
+  private void add(Restaurant restaurant) {
+    byId.put(restaurant.getId(), restaurant);
+    weights(restaurant).forEach((token, weight) ->
+        postings.computeIfAbsent(token, t -> new HashMap<>()).put(restaurant.getId(), weight));
+    prefixKeys(restaurant).forEach(key -> namePrefixes.put(key, restaurant));
+  }
+
+  private void detach(Restaurant restaurant) {
+    byId.remove(restaurant.getId());
+    for (String token : weights(restaurant).keySet()) {
+      Map<Long, Integer> docs = postings.get(token);
+      docs.remove(restaurant.getId());
+      if (docs.isEmpty()) {
+        postings.remove(token);
+      }
+    }
+    prefixKeys(restaurant).forEach(namePrefixes::remove);
+  }
+
+  // detach() recomputes the postings and prefix keys of the stored copy;
+  // had we kept the controller's entity, a rename would already show and
+  // the old name's tokens would never be removed
+  private static Restaurant copyOf(Restaurant restaurant) {
+    return Restaurant.builder()
+        .id(restaurant.getId())
+        .name(restaurant.getName())
+        .description(restaurant.getDescription())
+        .build();
+  }
+}
@@ -0,0 +1,232 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.BulkUpsertResult;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Idempotent bulk upsert of Restaurants.
+//
+// Rows with an id update that restaurant (an unknown id is rejected rather
+// than inserted, so replaying a request never creates rows). Rows without an
+// id are matched by name: an existing restaurant with that name is updated,
+// otherwise a new one is inserted. When the same key appears more than once
+// the last occurrence wins. A name keyed row that matches a restaurant also
+// keyed by id in the same request (say, under the name the id row renames it
+// from) is rejected, so each restaurant is written at most once. Rows
+// identical to what is stored are left alone, so sending the same payload
+// twice reports everything unchanged.
+//
+// Existing rows are loaded up front with one query covering both the ids and
+// the names (one per LOOKUP_CHUNK keys for very large requests), and the
+// changes are written with JDBC batch updates and inserts in one transaction.
+// The search index is refreshed once the transaction commits.
+
+@Slf4j
+@Service("restaurantUpsert")
+public class RestaurantUpsertService {
+
+  static final String UPDATE_SQL = "UPDATE restaurant SET name = ?, description = ? WHERE id = ?";
+  static final String INSERT_SQL = "INSERT INTO restaurant (name, description) VALUES (?, ?)";
+  static final int MAX_REPORTED_ERRORS = 100;
+  static final int LOOKUP_CHUNK = 1000;
+
+  @Autowired
+  RestaurantRepository restaurantRepository;
+
+  @Autowired
+  RestaurantIndexService restaurantIndexService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private record Row(long line, Restaurant restaurant) {
+  }
+
+  private static class Counts {
+    long rejected;
+    final List<ImportRowError> errors = new ArrayList<>();
+
+    void reject(long line, String message) {
+      rejected++;
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+        errors.add(new ImportRowError(line, message));
+      }
+    }
+  }
+
+  /** Upserts a JSON array; error line numbers are 1-based positions in the array. */
+  @Transactional
+  public BulkUpsertResult upsert(List<Restaurant> restaurants) {
+    List<Row> rows = new ArrayList<>(restaurants.size());
+    for (int i = 0; i < restaurants.size(); i++) {
+      rows.add(new Row(i + 1, restaurants.get(i)));
+    }
+    return apply(rows, new Counts());
+  }
+
+  /** Upserts newline delimited JSON, one restaurant per line; lines that do not parse are rejected. */
+  @Transactional
+  public BulkUpsertResult upsertNdjson(InputStream in) throws IOException {
+    List<Row> rows = new ArrayList<>();
+    Counts counts = new Counts();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    long lineNumber = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank()) {
+        continue;
+      }
+      try {
+        rows.add(new Row(lineNumber, mapper.readValue(line, Restaurant.class)));
+      } catch (JsonProcessingException e) {
+        counts.reject(lineNumber, "invalid JSON: " + e.getOriginalMessage());
+      }
+    }
+    return apply(rows, counts);
+  }
+
+  private BulkUpsertResult apply(List<Row> rows, Counts counts) {
+    // dedupe by key, last occurrence wins
+    Map<Long, Row> byId = new LinkedHashMap<>();
+    Map<String, Row> byName = new LinkedHashMap<>();
+    for (Row row : rows) {
+      Restaurant r = row.restaurant();
+      if (r == null || r.getName() == null || r.getName().isBlank()) {
+        counts.reject(row.line(), "name is empty");
+        continue;
+      }
+      Row previous = r.getId() > 0 ? byId.put(r.getId(), row) : byName.put(r.getName(), row);
+      if (previous != null) {
+        counts.reject(previous.line(), "superseded by line %d".formatted(row.line()));
+      }
+    }
+
+    Map<Long, Restaurant> existingById = new HashMap<>();
+    Map<String, Restaurant> existingByName = new HashMap<>();
+    for (Restaurant r : findExisting(byId.keySet(), byName.keySet())) {
+      existingById.put(r.getId(), r);
+      // names are not unique; a name keyed row updates the oldest restaurant with that name
+      existingByName.merge(r.getName(), r, (a, b) -> a.getId() < b.getId() ? a : b);
+    }
+
+    List<Object[]> updates = new ArrayList<>();
+    List<Object[]> inserts = new ArrayList<>();
+    List<Restaurant> updated = new ArrayList<>();
+    long unchanged = 0;
+    // id -> line of the id keyed row that updates it
+    Map<Long, Long> claimed = new HashMap<>();
+
+    for (Row row : byId.values()) {
+      Restaurant incoming = row.restaurant();
+      Restaurant current = existingById.get(incoming.getId());
+      if (current == null) {
+        counts.reject(row.line(), "no restaurant with id %d".formatted(incoming.getId()));
+        continue;
+      }
+      claimed.put(current.getId(), row.line());
+      if (sameContent(current, incoming)) {
+        unchanged++;
+      } else {
+        updates.add(new Object[] { incoming.getName(), incoming.getDescription(), incoming.getId() });
+        updated.add(incoming);
+      }
+    }
+    for (Row row : byName.values()) {
+      Restaurant incoming = row.restaurant();
+      Restaurant current = existingByName.get(incoming.getName());
+      if (current == null) {
+        inserts.add(new Object[] { incoming.getName(), incoming.getDescription() });
+      } else if (claimed.containsKey(current.getId())) {
+        counts.reject(row.line(), "restaurant %d is already updated by line %d".formatted(current.getId(), claimed.get(current.getId())));
+      } else if (sameContent(current, incoming)) {
+        unchanged++;
+      } else {
+        updates.add(new Object[] { incoming.getName(), incoming.getDescription(), current.getId() });
+        updated.add(Restaurant.builder().id(current.getId()).name(incoming.getName())
+            .description(incoming.getDescription()).build());
+      }
+    }
+
+    if (!updates.isEmpty()) {
+      jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+    }
+    List<Restaurant> changed = new ArrayList<>(updated);
+    if (!inserts.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+      // these names were not present before, so every match is a row inserted above
+      changed.addAll(findExisting(List.of(), insertedNames(inserts)));
+    }
+    TransactionHooks.afterCommit(() -> changed.forEach(restaurantIndexService::put));
+
+    log.info("bulk upsert of {} restaurants: {} inserted, {} updated, {} unchanged, {} rejected",
+        rows.size(), inserts.size(), updates.size(), unchanged, counts.rejected);
+
+    return BulkUpsertResult.builder()
+        .inserted(inserts.size())
+        .updated(updates.size())
+        .unchanged(unchanged)
+        .rejected(counts.rejected)
+        .errors(counts.errors)
+        .build();
+  }
+
+  // one query per LOOKUP_CHUNK ids and names (so a single query for most
+  // requests); very long IN lists are slow to plan and some databases cap them
+  private List<Restaurant> findExisting(Collection<Long> idKeys, Collection<String> nameKeys) {
+    List<Long> ids = new ArrayList<>(idKeys);
+    List<String> names = new ArrayList<>(nameKeys);
+    List<Restaurant> found = new ArrayList<>();
+    for (int from = 0; from < Math.max(ids.size(), names.size()); from += LOOKUP_CHUNK) {
+      List<Long> idChunk = chunk(ids, from);
+      List<String> nameChunk = chunk(names, from);
+      // an empty IN list is not valid SQL
+      if (nameChunk.isEmpty()) {
+        restaurantRepository.findAllById(idChunk).forEach(found::add);
+      } else if (idChunk.isEmpty()) {
+        found.addAll(restaurantRepository.findAllByNameIn(nameChunk));
+      } else {
+        found.addAll(restaurantRepository.findAllByIdInOrNameIn(idChunk, nameChunk));
+      }
+    }
+    return found;
+  }
+
+  private static <T> List<T> chunk(List<T> list, int from) {
+    return list.subList(Math.min(from, list.size()), Math.min(from + LOOKUP_CHUNK, list.size()));
+  }
+
+  private static List<String> insertedNames(List<Object[]> inserts) {
+    return inserts.stream().map(values -> (String) values[0]).toList();
+  }
+
+  private static boolean sameContent(Restaurant a, Restaurant b) {
+    return Objects.equals(a.getName(), b.getName()) && Objects.equals(a.getDescription(), b.getDescription());
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Callbacks for services that keep in-memory indexes and caches of rows
+// they write with JDBC: those must not show rows that end up rolled back.
+
+final class TransactionHooks {
+
+  private TransactionHooks() {
+  }
+
+  /** Run the action once the current transaction commits, or now if there is none. */
+  static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+// Writes the dates of a quarter as an iCalendar (RFC 5545) document.
+// Rows are streamed from the database and written one at a time, so
+// the whole quarter is never held in memory.
+
+@Service("ucsbDateCalendar")
+public class UCSBDateCalendarService {
+
+  private static final String CRLF = "\r\n";
+  private static final int MAX_LINE_OCTETS = 75;
+
+  private static final DateTimeFormatter LOCAL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+  private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+      .withZone(ZoneOffset.UTC);
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  /**
+   * Write a VCALENDAR with one VEVENT per date in the quarter.
+   * lastModified (epoch millis) is used as the DTSTAMP of every event so
+   * the output only changes when the underlying dates change.
+   */
+  @Transactional(readOnly = true)
+  public void writeQuarter(String quarterYYYYQ, long lastModified, Writer writer) throws IOException {
+    String dtstamp = UTC_FORMAT.format(Instant.ofEpochMilli(lastModified));
+
+    writeLine(writer, "BEGIN:VCALENDAR");
+    writeLine(writer, "VERSION:2.0");
+    writeLine(writer, "PRODID:-//UCSB CS156//UCSBDates//EN");
+    writeLine(writer, "CALSCALE:GREGORIAN");
+    writeLine(writer, "X-WR-CALNAME:" + escape("UCSB dates " + quarterYYYYQ));
+
+    try (Stream<UCSBDate> dates = ucsbDateRepository.streamAllByQuarterYYYYQOrderByLocalDateTimeAsc(quarterYYYYQ)) {
+      Iterator<UCSBDate> it = dates.iterator();
+      while (it.hasNext()) {
+        UCSBDate date = it.next();
+        writeEvent(writer, date, dtstamp);
+        // keep the persistence context from growing with the result set
+        entityManager.detach(date);
+      }
+    }
+
+    writeLine(writer, "END:VCALENDAR");
+    writer.flush();
+  }
+
+  private void writeEvent(Writer writer, UCSBDate date, String dtstamp) throws IOException {
+    if (date.getLocalDateTime() == null) {
+      return;
+    }
+    writeLine(writer, "BEGIN:VEVENT");
+    writeLine(writer, "UID:ucsbdate-%d@ucsb-cs156".formatted(date.getId()));
+    writeLine(writer, "DTSTAMP:" + dtstamp);
+    writeLine(writer, "DTSTART:" + LOCAL_FORMAT.format(date.getLocalDateTime()));
+    writeLine(writer, "SUMMARY:" + escape(date.getName()));
+    writeLine(writer, "END:VEVENT");
+  }
+
+  static String escape(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text
+        .replace("\\", "\\\\")
+        .replace(";", "\\;")
+        .replace(",", "\\,")
+        .replace("\r\n", "\\n")
+        .replace("\n", "\\n")
+        .replace("\r", "\\n");
+  }
+
+  // lines longer than 75 octets of UTF-8 are folded onto continuation
+  // lines that begin with a single space; a fold never splits a character
+  static void writeLine(Writer writer, String line) throws IOException {
+    int start = 0;
+    int width = MAX_LINE_OCTETS;
+    int octets = 0;
+    for (int i = 0; i < line.length(); i += Character.charCount(line.codePointAt(i))) {
+      int size = utf8Length(line.codePointAt(i));
+      if (octets + size > width) {
+        writer.write(line, start, i - start);
+        writer.write(CRLF);
+        writer.write(' ');
+        start = i;
+        octets = 0;
+        width = MAX_LINE_OCTETS - 1;
+      }
+      octets += size;
+    }
+    writer.write(line, start, line.length() - start);
+    writer.write(CRLF);
+  }
+
+  static int utf8Length(int codePoint) {
+    if (codePoint < 0x80) {
+      return 1;
+    } else if (codePoint < 0x800) {
+      return 2;
+    } else if (codePoint < 0x10000) {
+      return 3;
+    }
+    return 4;
+  }
+}
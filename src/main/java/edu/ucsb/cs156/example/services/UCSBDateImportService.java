@@ -0,0 +1,188 @@
+package edu.ucsb.cs156.example.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.models.UCSBDateImportResult;
+import lombok.extern.slf4j.Slf4j;
+
+// Bulk import of UCSBDates from CSV with columns quarterYYYYQ,name,localDateTime
+// (an optional header row is skipped).
+//
+// Rows are parsed one line at a time and written with JDBC batch inserts
+// inside a single transaction; with IDENTITY ids Hibernate cannot batch
+// inserts itself, so going through JPA would cost one round trip per row.
+// Invalid rows are skipped and reported; valid rows are still imported.
+
+@Slf4j
+@Service("ucsbDateImport")
+public class UCSBDateImportService {
+
+  static final String INSERT_SQL = "INSERT INTO ucsbdates (quarteryyyyq, name, local_date_time) VALUES (?, ?, ?)";
+  static final int MAX_REPORTED_ERRORS = 100;
+  static final int MAX_BATCH_SIZE = 10000;
+
+  private static final Pattern QUARTER = Pattern.compile("\\d{4}[1-4]");
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Value("${app.ucsbdates.import.batchSize:500}")
+  int defaultBatchSize;
+
+  @Transactional
+  public UCSBDateImportResult importCsv(InputStream in, Integer requestedBatchSize) throws IOException {
+    int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE,
+        requestedBatchSize == null ? defaultBatchSize : requestedBatchSize));
+    long start = System.nanoTime();
+
+    long lineNumber = 0;
+    long rowsRead = 0;
+    long rowsImported = 0;
+    long rowsRejected = 0;
+    long batches = 0;
+    List<ImportRowError> errors = new ArrayList<>();
+    Set<String> quarters = new TreeSet<>();
+    List<Object[]> batch = new ArrayList<>(batchSize);
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank() || (lineNumber == 1 && isHeader(line))) {
+        continue;
+      }
+      rowsRead++;
+      try {
+        Object[] row = parseRow(line);
+        batch.add(row);
+        quarters.add((String) row[0]);
+      } catch (IllegalArgumentException e) {
+        rowsRejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+          errors.add(new ImportRowError(lineNumber, e.getMessage()));
+        }
+        continue;
+      }
+      if (batch.size() == batchSize) {
+        rowsImported += flush(batch);
+        batches++;
+      }
+    }
+    if (!batch.isEmpty()) {
+      rowsImported += flush(batch);
+      batches++;
+    }
+
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+    long rowsPerSecond = rowsImported * 1000 / Math.max(1, elapsedMillis);
+    log.info("imported {} ucsbdates ({} rejected) in {} batches of {} in {} ms ({} rows/s)",
+        rowsImported, rowsRejected, batches, batchSize, elapsedMillis, rowsPerSecond);
+
+    return UCSBDateImportResult.builder()
+        .rowsRead(rowsRead)
+        .rowsImported(rowsImported)
+        .rowsRejected(rowsRejected)
+        .errors(errors)
+        .quarters(quarters)
+        .batchSize(batchSize)
+        .batches(batches)
+        .elapsedMillis(elapsedMillis)
+        .rowsPerSecond(rowsPerSecond)
+        .build();
+  }
+
+  private int flush(List<Object[]> batch) {
+    int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+    batch.clear();
+    return counts.length;
+  }
+
+  static boolean isHeader(String line) {
+    return line.trim().toLowerCase().startsWith("quarteryyyyq");
+  }
+
+  /** Returns {quarterYYYYQ, name, Timestamp}, or throws IllegalArgumentException describing the problem. */
+  static Object[] parseRow(String line) {
+    List<String> fields = splitCsvLine(line);
+    if (fields.size() != 3) {
+      throw new IllegalArgumentException("expected 3 columns (quarterYYYYQ,name,localDateTime) but found %d".formatted(fields.size()));
+    }
+    String quarter = fields.get(0).trim();
+    String name = fields.get(1).trim();
+    String when = fields.get(2).trim();
+
+    if (!QUARTER.matcher(quarter).matches()) {
+      throw new IllegalArgumentException("invalid quarterYYYYQ '%s'".formatted(quarter));
+    }
+    if (name.isEmpty()) {
+      throw new IllegalArgumentException("name is empty");
+    }
+    return new Object[] { quarter, name, Timestamp.valueOf(parseDateTime(when)) };
+  }
+
+  // accepts ISO date-times (2022-01-03T00:00:00) and plain ISO dates (2022-01-03)
+  static LocalDateTime parseDateTime(String text) {
+    try {
+      return LocalDateTime.parse(text);
+    } catch (DateTimeParseException e) {
+      try {
+        return LocalDate.parse(text).atStartOfDay();
+      } catch (DateTimeParseException e2) {
+        throw new IllegalArgumentException("invalid ISO date '%s'".formatted(text));
+      }
+    }
+  }
+
+  // RFC 4180 fields on a single line: commas separate, double quotes
+  // enclose, and "" inside quotes is a literal quote
+  static List<String> splitCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("unterminated quoted field");
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
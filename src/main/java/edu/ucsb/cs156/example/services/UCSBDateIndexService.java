@@ -0,0 +1,226 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// In-memory index of UCSBDates ordered by localDateTime, kept both for all
+// quarters and per quarter, so that range lookups are O(log n + k).
+// The controller keeps it current by calling put/remove after each write.
+//
+// Each quarter also has a modification counter that is bumped on every write
+// touching that quarter; it is used for ETag / Last-Modified on the
+// calendar export so that unchanged polls never reach the database.
+
+@Slf4j
+@Service("ucsbDateIndex")
+public class UCSBDateIndexService {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<Long, UCSBDate> byId = new HashMap<>();
+  private final NavigableMap<LocalDateTime, Map<Long, UCSBDate>> allQuarters = new TreeMap<>();
+  private final Map<String, NavigableMap<LocalDateTime, Map<Long, UCSBDate>>> byQuarter = new HashMap<>();
+
+  private final long startedAt = System.currentTimeMillis();
+  private final Map<String, Long> quarterVersions = new HashMap<>();
+  private final Map<String, Long> quarterLastModified = new HashMap<>();
+
+  @PostConstruct
+  public void init() {
+    rebuild(ucsbDateRepository.findAll());
+  }
+
+  public void rebuild(Iterable<UCSBDate> dates) {
+    lock.writeLock().lock();
+    try {
+      byId.clear();
+      allQuarters.clear();
+      byQuarter.clear();
+      for (UCSBDate date : dates) {
+        add(copyOf(date));
+      }
+      log.info("UCSBDate index rebuilt with {} entries", byId.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Replace everything indexed for one quarter, e.g. after a bulk import. */
+  public void reloadQuarter(String quarterYYYYQ, Iterable<UCSBDate> dates) {
+    lock.writeLock().lock();
+    try {
+      NavigableMap<LocalDateTime, Map<Long, UCSBDate>> tree = byQuarter.get(quarterYYYYQ);
+      if (tree != null) {
+        List<UCSBDate> previous = new ArrayList<>();
+        tree.values().forEach(bucket -> previous.addAll(bucket.values()));
+        previous.forEach(this::detach);
+      }
+      for (UCSBDate date : dates) {
+        add(copyOf(date));
+      }
+      touch(quarterYYYYQ);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void put(UCSBDate date) {
+    lock.writeLock().lock();
+    try {
+      UCSBDate previous = byId.get(date.getId());
+      if (previous != null) {
+        detach(previous);
+        touch(previous.getQuarterYYYYQ());
+      }
+      add(copyOf(date));
+      touch(date.getQuarterYYYYQ());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      UCSBDate previous = byId.get(id);
+      if (previous != null) {
+        detach(previous);
+        touch(previous.getQuarterYYYYQ());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Dates with from &lt;= localDateTime &lt;= to, ordered by localDateTime then id.
+   * If quarterYYYYQ is null, dates from every quarter are returned.
+   */
+  public List<UCSBDate> range(LocalDateTime from, LocalDateTime to, String quarterYYYYQ) {
+    List<UCSBDate> result = new ArrayList<>();
+    if (from.isAfter(to)) {
+      return result;
+    }
+    lock.readLock().lock();
+    try {
+      NavigableMap<LocalDateTime, Map<Long, UCSBDate>> tree =
+          (quarterYYYYQ == null) ? allQuarters : byQuarter.get(quarterYYYYQ);
+      if (tree == null) {
+        return result;
+      }
+      for (Map<Long, UCSBDate> bucket : tree.subMap(from, true, to, true).values()) {
+        for (UCSBDate date : bucket.values()) {
+          result.add(copyOf(date));
+        }
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Strong ETag for the dates of a quarter; it changes whenever a date in the
+   * quarter is written and whenever the application restarts.
+   */
+  public String etagForQuarter(String quarterYYYYQ) {
+    lock.readLock().lock();
+    try {
+      return "\"%d-%d\"".formatted(startedAt, quarterVersions.getOrDefault(quarterYYYYQ, 0L));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Epoch millis of the last write touching the quarter (or of startup). */
+  public long lastModifiedForQuarter(String quarterYYYYQ) {
+    lock.readLock().lock();
+    try {
+      return quarterLastModified.getOrDefault(quarterYYYYQ, startedAt);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return byId.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void touch(String quarterYYYYQ) {
+    if (quarterYYYYQ == null) {
+      return;
+    }
+    quarterVersions.merge(quarterYYYYQ, 1L, Long::sum);
+    quarterLastModified.put(quarterYYYYQ, System.currentTimeMillis());
+  }
+
+  private void add(UCSBDate date) {
+    if (date.getLocalDateTime() == null) {
+      return;
+    }
+    byId.put(date.getId(), date);
+    addTo(allQuarters, date);
+    if (date.getQuarterYYYYQ() != null) {
+      addTo(byQuarter.computeIfAbsent(date.getQuarterYYYYQ(), q -> new TreeMap<>()), date);
+    }
+  }
+
+  private void detach(UCSBDate date) {
+    byId.remove(date.getId());
+    removeFrom(allQuarters, date);
+    if (date.getQuarterYYYYQ() != null) {
+      NavigableMap<LocalDateTime, Map<Long, UCSBDate>> tree = byQuarter.get(date.getQuarterYYYYQ());
+      removeFrom(tree, date);
+      if (tree.isEmpty()) {
+        byQuarter.remove(date.getQuarterYYYYQ());
+      }
+    }
+  }
+
+  private static void addTo(NavigableMap<LocalDateTime, Map<Long, UCSBDate>> tree, UCSBDate date) {
+    tree.computeIfAbsent(date.getLocalDateTime(), ldt -> new TreeMap<>()).put(date.getId(), date);
+  }
+
+  private static void removeFrom(NavigableMap<LocalDateTime, Map<Long, UCSBDate>> tree, UCSBDate date) {
+    Map<Long, UCSBDate> bucket = tree.get(date.getLocalDateTime());
+    bucket.remove(date.getId());
+    if (bucket.isEmpty()) {
+      tree.remove(date.getLocalDateTime());
+    }
+  }
+
+  // entities handed to the controller are mutated in place on update,
+  // so the index only ever holds its own copies
+  private static UCSBDate copyOf(UCSBDate date) {
+    return UCSBDate.builder()
+        .id(date.getId())
+        .quarterYYYYQ(date.getQuarterYYYYQ())
+        .name(date.getName())
+        .localDateTime(date.getLocalDateTime())
+        .build();
+  }
+}
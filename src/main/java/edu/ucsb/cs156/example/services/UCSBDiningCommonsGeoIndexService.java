@@ -0,0 +1,186 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.DiningCommonsDistance;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// In-memory k-d tree over the coordinates of the dining commons, for
+// nearest neighbour queries that do not look at every commons.
+//
+// Each commons is stored as a point on the unit sphere (x, y, z). The
+// straight line distance between two such points grows with the great
+// circle distance, so the usual k-d tree search in three dimensions finds
+// the nearest commons on the globe without special cases for the poles or
+// the antimeridian. Reported distances are haversine distances in km.
+//
+// The tree is immutable and rebuilt after every put/remove, which the
+// controller calls after each write; queries read the current tree without
+// locking. Commons without a latitude or longitude are not indexed.
+
+@Slf4j
+@Service("ucsbDiningCommonsGeoIndex")
+public class UCSBDiningCommonsGeoIndexService {
+
+  static final double EARTH_RADIUS_KM = 6371.0088;
+
+  private record Node(UCSBDiningCommons commons, double[] point, int axis, Node left, Node right) {
+  }
+
+  private record Candidate(UCSBDiningCommons commons, double chordSquared) {
+  }
+
+  // worst candidate first, so it is the one dropped when the heap overflows
+  private static final Comparator<Candidate> WORST_FIRST = Comparator
+      .comparingDouble(Candidate::chordSquared)
+      .thenComparing(candidate -> candidate.commons().getCode())
+      .reversed();
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  private final Map<String, UCSBDiningCommons> byCode = new HashMap<>();
+  private volatile Node root;
+
+  @PostConstruct
+  public void init() {
+    rebuild(ucsbDiningCommonsRepository.findAll());
+  }
+
+  public synchronized void rebuild(Iterable<UCSBDiningCommons> commons) {
+    byCode.clear();
+    commons.forEach(c -> byCode.put(c.getCode(), copyOf(c)));
+    root = build();
+    log.info("dining commons geo index rebuilt with {} commons", byCode.size());
+  }
+
+  public synchronized void put(UCSBDiningCommons commons) {
+    byCode.put(commons.getCode(), copyOf(commons));
+    root = build();
+  }
+
+  public synchronized void remove(String code) {
+    if (byCode.remove(code) != null) {
+      root = build();
+    }
+  }
+
+  /**
+   * The k commons nearest to (latitude, longitude), nearest first; only those
+   * with a matching hasTakeOutMeal if it is not null.
+   */
+  public List<DiningCommonsDistance> nearest(double latitude, double longitude, int k, Boolean hasTakeOutMeal) {
+    double[] target = toPoint(latitude, longitude);
+    PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, WORST_FIRST);
+    if (k > 0) {
+      search(root, target, k, hasTakeOutMeal, best);
+    }
+    List<Candidate> found = new ArrayList<>(best);
+    found.sort(WORST_FIRST.reversed());
+    List<DiningCommonsDistance> result = new ArrayList<>(found.size());
+    for (Candidate candidate : found) {
+      UCSBDiningCommons commons = candidate.commons();
+      result.add(DiningCommonsDistance.builder()
+          .commons(copyOf(commons))
+          .distanceKm(haversineKm(latitude, longitude, commons.getLatitude(), commons.getLongitude()))
+          .build());
+    }
+    return result;
+  }
+
+  public synchronized int size() {
+    return byCode.size();
+  }
+
+  private static void search(Node node, double[] target, int k, Boolean hasTakeOutMeal, PriorityQueue<Candidate> best) {
+    if (node == null) {
+      return;
+    }
+    if (hasTakeOutMeal == null || node.commons().getHasTakeOutMeal() == hasTakeOutMeal) {
+      best.add(new Candidate(node.commons(), chordSquared(node.point(), target)));
+      if (best.size() > k) {
+        best.poll();
+      }
+    }
+    double offset = target[node.axis()] - node.point()[node.axis()];
+    search(offset < 0 ? node.left() : node.right(), target, k, hasTakeOutMeal, best);
+    // the other side can only hold something nearer (or as near, with a
+    // smaller code) if the splitting plane is no farther than the worst
+    // candidate so far
+    if (best.size() < k || offset * offset <= best.peek().chordSquared()) {
+      search(offset < 0 ? node.right() : node.left(), target, k, hasTakeOutMeal, best);
+    }
+  }
+
+  private Node build() {
+    List<Node> leaves = new ArrayList<>();
+    for (UCSBDiningCommons commons : byCode.values()) {
+      if (commons.getLatitude() != null && commons.getLongitude() != null) {
+        leaves.add(new Node(commons, toPoint(commons.getLatitude(), commons.getLongitude()), 0, null, null));
+      }
+    }
+    return build(leaves, 0);
+  }
+
+  private static Node build(List<Node> points, int depth) {
+    if (points.isEmpty()) {
+      return null;
+    }
+    int axis = depth % 3;
+    points.sort(Comparator.comparingDouble(node -> node.point()[axis]));
+    int median = points.size() / 2;
+    Node split = points.get(median);
+    return new Node(split.commons(), split.point(), axis,
+        build(new ArrayList<>(points.subList(0, median)), depth + 1),
+        build(new ArrayList<>(points.subList(median + 1, points.size())), depth + 1));
+  }
+
+  static double[] toPoint(double latitude, double longitude) {
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    return new double[] { Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat) };
+  }
+
+  private static double chordSquared(double[] a, double[] b) {
+    double dx = a[0] - b[0];
+    double dy = a[1] - b[1];
+    double dz = a[2] - b[2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+
+  static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.pow(Math.sin(dLat / 2), 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dLon / 2), 2);
+    return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  // the tree's nodes are placed by the coordinates they had when it was
+  // built; if a node shared the controller's entity, moving that commons
+  // would move the point without moving the node, and searches that prune
+  // on the splitting planes could miss it
+  private static UCSBDiningCommons copyOf(UCSBDiningCommons commons) {
+    return UCSBDiningCommons.builder()
+        .code(commons.getCode())
+        .name(commons.getName())
+        .hasSackMeal(commons.getHasSackMeal())
+        .hasTakeOutMeal(commons.getHasTakeOutMeal())
+        .hasDiningCam(commons.getHasDiningCam())
+        .latitude(commons.getLatitude())
+        .longitude(commons.getLongitude())
+        .build();
+  }
+}
@@ -0,0 +1,126 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.models.MenuReplaceResult;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import lombok.extern.slf4j.Slf4j;
+
+// Replaces the whole menu of one dining commons.
+//
+// The new menu is diffed against the current items by (name, station):
+// items on both keep their row (and id, so their reviews stay attached),
+// current items missing from the new menu are deleted together with their
+// reviews, and new ones are inserted. The current menu is read with one
+// query and the changes are written with JDBC batches of review deletes,
+// item deletes and inserts, all in one transaction. If the same (name, station) is listed twice the later one
+// is rejected; so are items without a name. The diningCommonsCode of the
+// items in the request is ignored.
+//
+// The snapshot of the commons and the top items cache, which names items
+// from the menu table, are dropped once the transaction commits, and so are
+// the rating stats of the deleted items.
+
+@Slf4j
+@Service("ucsbDiningCommonsMenu")
+public class UCSBDiningCommonsMenuService {
+
+  static final String DELETE_REVIEWS_SQL = "DELETE FROM menuitemreviews WHERE item_id = ?";
+  static final String DELETE_SQL = "DELETE FROM ucsbdiningcommonsmenuitem WHERE id = ?";
+  static final String INSERT_SQL = "INSERT INTO ucsbdiningcommonsmenuitem (dining_commons_code, name, station) VALUES (?, ?, ?)";
+  static final int MAX_REPORTED_ERRORS = 100;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
+  @Autowired
+  MenuItemReviewTopService menuItemReviewTopService;
+
+  @Autowired
+  MenuItemReviewStatsService menuItemReviewStatsService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  private record Key(String name, String station) {
+  }
+
+  @Transactional
+  public MenuReplaceResult replaceMenu(String diningCommonsCode, List<UCSBDiningCommonsMenuItem> menu) {
+    long rejected = 0;
+    List<ImportRowError> errors = new ArrayList<>();
+    Map<Key, Integer> wanted = new LinkedHashMap<>();
+    for (int i = 0; i < menu.size(); i++) {
+      UCSBDiningCommonsMenuItem item = menu.get(i);
+      String message = null;
+      if (item == null || item.getName() == null || item.getName().isBlank()) {
+        message = "name is empty";
+      } else {
+        Integer first = wanted.putIfAbsent(new Key(item.getName(), item.getStation()), i + 1);
+        if (first != null) {
+          message = "duplicate of item %d".formatted(first);
+        }
+      }
+      if (message != null) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+          errors.add(new ImportRowError(i + 1, message));
+        }
+      }
+    }
+
+    List<Object[]> deletes = new ArrayList<>();
+    long unchanged = 0;
+    for (UCSBDiningCommonsMenuItem current : ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(diningCommonsCode)) {
+      // an item found here is kept; a second current row with the same key is deleted
+      if (wanted.remove(new Key(current.getName(), current.getStation())) != null) {
+        unchanged++;
+      } else {
+        deletes.add(new Object[] { current.getId() });
+      }
+    }
+    List<Object[]> inserts = wanted.keySet().stream()
+        .map(key -> new Object[] { diningCommonsCode, key.name(), key.station() })
+        .toList();
+
+    long reviewsDeleted = 0;
+    if (!deletes.isEmpty()) {
+      reviewsDeleted = IntStream.of(jdbcTemplate.batchUpdate(DELETE_REVIEWS_SQL, deletes)).sum();
+      jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+    }
+    if (!inserts.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+    }
+    List<Long> deletedIds = deletes.stream().map(values -> (Long) values[0]).toList();
+    TransactionHooks.afterCommit(() -> {
+      ucsbDiningCommonsSnapshotService.invalidateCommons(diningCommonsCode);
+      menuItemReviewTopService.invalidate();
+      menuItemReviewStatsService.removeItems(deletedIds);
+    });
+
+    log.info("menu of {} replaced: {} inserted, {} deleted with {} reviews, {} unchanged, {} rejected",
+        diningCommonsCode, inserts.size(), deletes.size(), reviewsDeleted, unchanged, rejected);
+
+    return MenuReplaceResult.builder()
+        .inserted(inserts.size())
+        .deleted(deletes.size())
+        .unchanged(unchanged)
+        .rejected(rejected)
+        .errors(errors)
+        .build();
+  }
+}
@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DiningCommonsSnapshot;
+import edu.ucsb.cs156.example.models.MenuItemSnapshot;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+// Everything the page of one dining commons shows, as JSON: the commons,
+// its menu items grouped by station and the rating stats of each item.
+//
+// A snapshot takes two queries (the commons by code, its menu items by
+// diningCommonsCode); ratings come from MenuItemReviewStatsService, which
+// is already in memory. The serialized bytes are kept per commons code
+// until something they contain changes:
+//   - the commons itself: invalidateCommons(code)
+//   - a menu item of the commons: invalidateCommons(diningCommonsCode)
+//   - a review of one of its items: invalidateItem(itemId)
+//   - the rating stats being repaired: invalidateAll()
+// The controllers (and the review writer) call these after each write.
+// A snapshot built while an invalidation happened is returned but not kept.
+
+@Service("ucsbDiningCommonsSnapshot")
+public class UCSBDiningCommonsSnapshotService {
+
+  // menu items without a station are listed under this key
+  static final String NO_STATION = "";
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  MenuItemReviewStatsService menuItemReviewStatsService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private final Map<String, byte[]> snapshots = new HashMap<>();
+  // commons code of each menu item in a cached snapshot
+  private final Map<Long, String> itemCodes = new HashMap<>();
+  private long generation = 0;
+
+  /** The snapshot as JSON; throws EntityNotFoundException if there is no such commons. */
+  public byte[] snapshot(String code) throws JsonProcessingException {
+    long builtAt;
+    synchronized (this) {
+      byte[] cached = snapshots.get(code);
+      if (cached != null) {
+        return cached;
+      }
+      builtAt = generation;
+    }
+
+    UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
+        .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+    List<UCSBDiningCommonsMenuItem> items = ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode(code);
+    byte[] json = mapper.writeValueAsBytes(build(commons, items));
+
+    synchronized (this) {
+      if (generation == builtAt) {
+        snapshots.put(code, json);
+        items.forEach(item -> itemCodes.put(item.getId(), code));
+      }
+    }
+    return json;
+  }
+
+  public synchronized void invalidateCommons(String code) {
+    generation++;
+    if (snapshots.remove(code) != null) {
+      itemCodes.values().removeIf(code::equals);
+    }
+  }
+
+  public synchronized void invalidateItem(Long itemId) {
+    generation++;
+    String code = itemCodes.get(itemId);
+    if (code != null) {
+      invalidateCommons(code);
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    generation++;
+    snapshots.clear();
+    itemCodes.clear();
+  }
+
+  DiningCommonsSnapshot build(UCSBDiningCommons commons, List<UCSBDiningCommonsMenuItem> items) {
+    List<UCSBDiningCommonsMenuItem> sorted = new ArrayList<>(items);
+    sorted.sort(Comparator.comparing(UCSBDiningCommonsMenuItem::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparingLong(UCSBDiningCommonsMenuItem::getId));
+    Map<String, List<MenuItemSnapshot>> stations = new TreeMap<>();
+    for (UCSBDiningCommonsMenuItem item : sorted) {
+      String station = item.getStation() == null ? NO_STATION : item.getStation();
+      stations.computeIfAbsent(station, s -> new ArrayList<>()).add(MenuItemSnapshot.builder()
+          .id(item.getId())
+          .name(item.getName())
+          .rating(menuItemReviewStatsService.get(item.getId()))
+          .build());
+    }
+    return DiningCommonsSnapshot.builder().commons(commons).stations(stations).build();
+  }
+}
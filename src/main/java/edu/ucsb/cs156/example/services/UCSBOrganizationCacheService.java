@@ -0,0 +1,247 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.CacheStats;
+import edu.ucsb.cs156.example.models.OrganizationBatch;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+// Read-through cache in front of UCSBOrganizationRepository. Organizations
+// are small reference data that is read far more often than written.
+//
+// Single organizations are kept by orgCode in an LRU map of at most
+// maxEntries; /all is kept as the serialized JSON of every organization.
+// UCSBOrganizationController calls put/evict after each write, which
+// replaces or drops that one entry and the /all JSON.
+//
+// The active and the inactive organizations are also kept as two
+// partitions ordered by orgCode, each loaded with one query on the indexed
+// inactive column the first time it is asked for. Writes move the
+// organization between the partitions in memory, so after that a filtered
+// list never needs a query, only serializing again if it changed.
+//
+// getAll answers a list of codes with one pass over the cache and a single
+// findAllById for the codes that were not in it.
+//
+// Entities are copied on the way in and out so a caller changing the one
+// it was given cannot change the cached value. As in the dining commons
+// snapshot, a value loaded while a write happened is returned but not kept.
+
+@Service("ucsbOrganizationCache")
+public class UCSBOrganizationCacheService {
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.ucsborganization.cache.maxEntries:1000}")
+  int maxEntries;
+
+  private final Map<String, UCSBOrganization> organizations = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, UCSBOrganization> eldest) {
+      if (size() > maxEntries) {
+        evictions++;
+        return true;
+      }
+      return false;
+    }
+  };
+  private byte[] allJson;
+  // keyed by inactive
+  private final Map<Boolean, TreeMap<String, UCSBOrganization>> partitions = new HashMap<>();
+  private final Map<Boolean, byte[]> partitionJson = new HashMap<>();
+  private long generation = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long invalidations = 0;
+
+  public Optional<UCSBOrganization> get(String orgCode) {
+    long loadedAt;
+    synchronized (this) {
+      UCSBOrganization cached = organizations.get(orgCode);
+      if (cached != null) {
+        hits++;
+        return Optional.of(copy(cached));
+      }
+      misses++;
+      loadedAt = generation;
+    }
+
+    Optional<UCSBOrganization> loaded = ucsbOrganizationRepository.findById(orgCode);
+    synchronized (this) {
+      if (loaded.isPresent() && generation == loadedAt) {
+        organizations.put(orgCode, copy(loaded.get()));
+      }
+    }
+    return loaded;
+  }
+
+  /** The organizations with these codes keyed in request order, and the codes that have none. */
+  public OrganizationBatch getAll(List<String> orgCodes) {
+    Map<String, UCSBOrganization> found = new LinkedHashMap<>();
+    List<String> uncached = new ArrayList<>();
+    long loadedAt;
+    synchronized (this) {
+      for (String orgCode : orgCodes) {
+        if (found.containsKey(orgCode)) {
+          continue;
+        }
+        UCSBOrganization cached = organizations.get(orgCode);
+        if (cached != null) {
+          hits++;
+          found.put(orgCode, copy(cached));
+        } else {
+          misses++;
+          uncached.add(orgCode);
+          // keeps the place of the code in the request order
+          found.put(orgCode, null);
+        }
+      }
+      loadedAt = generation;
+    }
+
+    if (!uncached.isEmpty()) {
+      List<UCSBOrganization> loaded = new ArrayList<>();
+      ucsbOrganizationRepository.findAllById(uncached).forEach(loaded::add);
+      synchronized (this) {
+        for (UCSBOrganization organization : loaded) {
+          found.replace(organization.getOrgCode(), organization);
+          if (generation == loadedAt) {
+            organizations.put(organization.getOrgCode(), copy(organization));
+          }
+        }
+      }
+    }
+
+    List<String> missing = found.entrySet().stream()
+        .filter(entry -> entry.getValue() == null)
+        .map(Map.Entry::getKey)
+        .toList();
+    found.values().removeIf(Objects::isNull);
+    return OrganizationBatch.builder().organizations(found).missing(missing).build();
+  }
+
+  /** Every organization as a JSON array. */
+  public byte[] allJson() throws JsonProcessingException {
+    long loadedAt;
+    synchronized (this) {
+      if (allJson != null) {
+        hits++;
+        return allJson;
+      }
+      misses++;
+      loadedAt = generation;
+    }
+
+    byte[] json = mapper.writeValueAsBytes(ucsbOrganizationRepository.findAll());
+    synchronized (this) {
+      if (generation == loadedAt) {
+        allJson = json;
+      }
+    }
+    return json;
+  }
+
+  /** The active (inactive false) or the inactive organizations as a JSON array ordered by orgCode. */
+  public byte[] partitionJson(boolean inactive) throws JsonProcessingException {
+    long loadedAt;
+    synchronized (this) {
+      byte[] cached = partitionJson.get(inactive);
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      TreeMap<String, UCSBOrganization> partition = partitions.get(inactive);
+      if (partition != null) {
+        hits++;
+        byte[] json = mapper.writeValueAsBytes(partition.values());
+        partitionJson.put(inactive, json);
+        return json;
+      }
+      misses++;
+      loadedAt = generation;
+    }
+
+    TreeMap<String, UCSBOrganization> loaded = new TreeMap<>();
+    ucsbOrganizationRepository.findAllByInactive(inactive).forEach(organization -> loaded.put(organization.getOrgCode(), copy(organization)));
+    byte[] json = mapper.writeValueAsBytes(loaded.values());
+    synchronized (this) {
+      if (generation == loadedAt) {
+        partitions.put(inactive, loaded);
+        partitionJson.put(inactive, json);
+      }
+    }
+    return json;
+  }
+
+  /** The organization was created or changed. */
+  public synchronized void put(UCSBOrganization organization) {
+    generation++;
+    invalidations++;
+    String orgCode = organization.getOrgCode();
+    organizations.put(orgCode, copy(organization));
+    allJson = null;
+    removeFromPartitions(orgCode);
+    TreeMap<String, UCSBOrganization> partition = partitions.get(organization.getInactive());
+    if (partition != null) {
+      partition.put(orgCode, copy(organization));
+      partitionJson.remove(organization.getInactive());
+    }
+  }
+
+  /** The organization was deleted. */
+  public synchronized void evict(String orgCode) {
+    generation++;
+    invalidations++;
+    organizations.remove(orgCode);
+    allJson = null;
+    removeFromPartitions(orgCode);
+  }
+
+  private void removeFromPartitions(String orgCode) {
+    partitions.forEach((inactive, partition) -> {
+      if (partition.remove(orgCode) != null) {
+        partitionJson.remove(inactive);
+      }
+    });
+  }
+
+  public synchronized CacheStats stats() {
+    return CacheStats.builder()
+        .hits(hits)
+        .misses(misses)
+        .evictions(evictions)
+        .invalidations(invalidations)
+        .size(organizations.size())
+        .maxEntries(maxEntries)
+        .build();
+  }
+
+  static UCSBOrganization copy(UCSBOrganization organization) {
+    return UCSBOrganization.builder()
+        .orgCode(organization.getOrgCode())
+        .orgTranslationShort(organization.getOrgTranslationShort())
+        .orgTranslation(organization.getOrgTranslation())
+        .inactive(organization.getInactive())
+        .build();
+  }
+}
@@ -5,9 +5,14 @@ import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.models.ArticlesFeedPage;
+import edu.ucsb.cs156.example.services.ArticleUrlService;
+import edu.ucsb.cs156.example.services.ArticlesAtomFeedService;
+import edu.ucsb.cs156.example.services.ArticlesFeedService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 
@@ -28,8 +33,11 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,6 +49,15 @@ public class ArticlesControllerTests extends ControllerTestCase{
     @MockBean
     ArticlesRepository articlesRepository;
 
+    @MockBean
+    ArticleUrlService articleUrlService;
+
+    @MockBean
+    ArticlesFeedService articlesFeedService;
+
+    @MockBean
+    ArticlesAtomFeedService articlesAtomFeedService;
+
     @MockBean
     UserRepository userRepository;
 
@@ -195,6 +212,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
         .explanation("testexplanation1")
         .email("tesmail1@ucsb.edu")
         .dateAdded(ldt1)
+        .urlHash(ArticleUrlService.hash("url1.test"))
         .build();
 
         when(articlesRepository.save(any(Articles.class))).thenReturn(article1);
@@ -202,6 +220,8 @@ public class ArticlesControllerTests extends ControllerTestCase{
         MvcResult response = mockMvc.perform(post("/api/articles/post?title=testarticle1&url=url1.test&explanation=testexplanation1&email=tesmail1@ucsb.edu&dateAdded=2022-01-03T00:00:00").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(articlesRepository, times(1)).save(article1);
+        verify(articleUrlService, times(0)).findByUrl(any());
+        verify(articlesAtomFeedService, times(1)).invalidate();
         String expectedJSON = mapper.writeValueAsString(article1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -228,6 +248,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
         .explanation("test explanation 2")
         .email("tesmail2@ucsb.edu")
         .dateAdded(ldt2)
+        .urlHash(ArticleUrlService.hash("url2.test"))
         .build();
 
         String requestBody = mapper.writeValueAsString(articleEdited);
@@ -244,6 +265,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
         
         verify(articlesRepository, times(1)).findById(eq(1L));
         verify(articlesRepository, times(1)).save(articleEdited);
+        verify(articlesAtomFeedService, times(1)).invalidate();
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -300,6 +322,7 @@ public class ArticlesControllerTests extends ControllerTestCase{
 
         verify(articlesRepository, times(1)).findById(eq(1L));
         verify(articlesRepository, times(1)).delete(any());
+        verify(articlesAtomFeedService, times(1)).invalidate();
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("Article with id 1 deleted", json.get("message"));
@@ -320,4 +343,268 @@ public class ArticlesControllerTests extends ControllerTestCase{
         Map<String, Object> json = responseToJson(response);
         assertEquals("Articles with id 1 not found", json.get("message"));
     }
+
+    // Tests for /api/articles/byUrl and duplicate handling on post
+
+    @Test
+    public void logged_out_users_cannot_get_by_url() throws Exception {
+        mockMvc.perform(get("/api/articles/byUrl?url=url1.test"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_articles_by_url() throws Exception {
+        Articles article1 = Articles.builder()
+        .Id(7L)
+        .title("test article 1")
+        .url("https://Example.com/a/?utm_source=x")
+        .explanation("test explanation 1")
+        .email("tesmail1@ucsb.edu")
+        .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+
+        when(articleUrlService.findByUrl(eq("https://example.com/a"))).thenReturn(List.of(article1));
+
+        MvcResult response = mockMvc.perform(get("/api/articles/byUrl").param("url", "https://example.com/a"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        verify(articleUrlService, times(1)).findByUrl("https://example.com/a");
+        assertEquals(mapper.writeValueAsString(List.of(article1)), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_reject_fails_when_the_url_exists() throws Exception {
+        Articles existing = Articles.builder().Id(3L).title("old").url("https://example.com/a").build();
+        when(articleUrlService.findByUrl(eq("https://example.com/a/"))).thenReturn(List.of(existing));
+
+        MvcResult response = mockMvc.perform(post("/api/articles/post?title=t&url=https://example.com/a/&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=REJECT").with(csrf()))
+            .andExpect(status().isConflict()).andReturn();
+
+        verify(articlesRepository, times(0)).save(any());
+        verify(articlesAtomFeedService, times(0)).invalidate();
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("EntityConflictException", json.get("type"));
+        assertEquals("Article with url https://example.com/a/ already exists (id 3)", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_reject_saves_when_the_url_is_new() throws Exception {
+        Articles article1 = Articles.builder()
+        .title("t")
+        .url("https://example.com/new")
+        .explanation("e")
+        .email("m@ucsb.edu")
+        .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .urlHash(ArticleUrlService.hash("https://example.com/new"))
+        .build();
+        when(articleUrlService.findByUrl(eq("https://example.com/new"))).thenReturn(List.of());
+        when(articlesRepository.save(any(Articles.class))).thenReturn(article1);
+
+        mockMvc.perform(post("/api/articles/post?title=t&url=https://example.com/new&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=REJECT").with(csrf()))
+            .andExpect(status().isOk());
+
+        verify(articlesRepository, times(1)).save(article1);
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_merge_updates_the_existing_article() throws Exception {
+        LocalDateTime original = LocalDateTime.parse("2021-12-01T00:00:00");
+        Articles existing = Articles.builder().Id(3L).title("old").url("https://example.com/a")
+        .explanation("old e").email("old@ucsb.edu").dateAdded(original).build();
+        Articles merged = Articles.builder().Id(3L).title("t").url("https://example.com/a/")
+        .explanation("e").email("m@ucsb.edu").dateAdded(original)
+        .urlHash(ArticleUrlService.hash("https://example.com/a")).build();
+
+        when(articleUrlService.findByUrl(eq("https://example.com/a/"))).thenReturn(List.of(existing));
+        when(articlesRepository.save(any(Articles.class))).thenReturn(merged);
+
+        MvcResult response = mockMvc.perform(post("/api/articles/post?title=t&url=https://example.com/a/&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=MERGE").with(csrf()))
+            .andExpect(status().isOk()).andReturn();
+
+        verify(articlesRepository, times(1)).save(merged);
+        verify(articlesAtomFeedService, times(1)).invalidate();
+        assertEquals(mapper.writeValueAsString(merged), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_reject_checks_and_saves_under_the_url_lock() throws Exception {
+        Object lock = ArticleUrlService.lockFor("https://example.com/new");
+        when(articleUrlService.findByUrl(any())).thenAnswer(invocation -> {
+            assertTrue(Thread.holdsLock(lock));
+            return List.of();
+        });
+        when(articlesRepository.save(any(Articles.class))).thenAnswer(invocation -> {
+            assertTrue(Thread.holdsLock(lock));
+            return invocation.getArgument(0);
+        });
+
+        mockMvc.perform(post("/api/articles/post?title=t&url=https://example.com/new&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=REJECT").with(csrf()))
+            .andExpect(status().isOk());
+
+        verify(articlesRepository, times(1)).save(any());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_merge_saves_when_the_url_is_new() throws Exception {
+        when(articleUrlService.findByUrl(any())).thenReturn(List.of());
+
+        mockMvc.perform(post("/api/articles/post?title=t&url=u.test&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=MERGE").with(csrf()))
+            .andExpect(status().isOk());
+
+        verify(articlesRepository, times(1)).save(any());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void post_with_unknown_duplicate_mode_is_a_bad_request() throws Exception {
+        mockMvc.perform(post("/api/articles/post?title=t&url=u.test&explanation=e&email=m@ucsb.edu&dateAdded=2022-01-03T00:00:00&onDuplicate=IGNORE").with(csrf()))
+            .andExpect(status().isBadRequest());
+
+        verify(articlesRepository, times(0)).save(any());
+    }
+
+    // Tests for /api/articles/feed
+
+    @Test
+    public void logged_out_users_cannot_get_the_feed() throws Exception {
+        mockMvc.perform(get("/api/articles/feed"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_page_through_the_feed() throws Exception {
+        Articles article1 = Articles.builder()
+        .Id(2L)
+        .title("test article 1")
+        .url("url1.test")
+        .dateAdded(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+        ArticlesFeedService.Cursor after = new ArticlesFeedService.Cursor(LocalDateTime.parse("2022-01-04T00:00:00"), 5L);
+        ArticlesFeedPage page = ArticlesFeedPage.builder().articles(List.of(article1)).nextCursor("next").build();
+
+        when(articlesFeedService.page(eq(after), eq(1))).thenReturn(page);
+
+        MvcResult response = mockMvc.perform(get("/api/articles/feed")
+            .param("cursor", ArticlesFeedService.encodeCursor(after))
+            .param("limit", "1"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        verify(articlesFeedService, times(1)).page(after, 1);
+        assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void feed_starts_at_the_newest_article_and_clamps_the_limit() throws Exception {
+        ArticlesFeedService.Cursor start = ArticlesFeedService.decodeCursor(null);
+        when(articlesFeedService.page(any(), eq(20))).thenReturn(ArticlesFeedPage.builder().articles(List.of()).build());
+
+        mockMvc.perform(get("/api/articles/feed")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/articles/feed?limit=0")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/articles/feed?limit=1000")).andExpect(status().isOk());
+
+        verify(articlesFeedService, times(1)).page(start, 20);
+        verify(articlesFeedService, times(1)).page(start, 1);
+        verify(articlesFeedService, times(1)).page(start, 100);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void feed_with_a_bad_cursor_is_a_bad_request() throws Exception {
+        mockMvc.perform(get("/api/articles/feed?cursor=garbage"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/articles/feed?cursor=garbage").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(status().isBadRequest());
+
+        verify(articlesFeedService, times(0)).page(any(), eq(20));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void feed_streams_ndjson_when_asked_for() throws Exception {
+        ArticlesFeedService.Cursor start = ArticlesFeedService.decodeCursor(null);
+        doAnswer(invocation -> {
+            java.io.OutputStream out = invocation.getArgument(2);
+            out.write("{\"id\":1}\n{\"id\":2}\n".getBytes());
+            return null;
+        }).when(articlesFeedService).writeNdjson(eq(start), isNull(), any());
+
+        MvcResult response = mockMvc.perform(get("/api/articles/feed").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn();
+
+        assertEquals("{\"id\":1}\n{\"id\":2}\n", response.getResponse().getContentAsString());
+
+        mockMvc.perform(get("/api/articles/feed?limit=-5").accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(status().isOk());
+        verify(articlesFeedService, times(1)).writeNdjson(eq(start), eq(0), any());
+    }
+
+    // Tests for /api/articles/atom
+
+    private ArticlesAtomFeedService.Rendered atomFeed() {
+        byte[] xml = "<feed/>".getBytes();
+        return new ArticlesAtomFeedService.Rendered(xml, new byte[] { 31, -117, 8 }, "\"100-2\"", "\"100-2-gz\"", 1640995200000L);
+    }
+
+    @Test
+    public void anyone_can_get_the_atom_feed() throws Exception {
+        when(articlesAtomFeedService.current()).thenReturn(atomFeed());
+
+        MvcResult response = mockMvc.perform(get("/api/articles/atom"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"100-2\""))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andExpect(header().exists("Last-Modified"))
+            .andReturn();
+
+        verify(articlesRepository, times(0)).findAll();
+        assertEquals("application/atom+xml;charset=UTF-8", response.getResponse().getContentType());
+        assertEquals("<feed/>", response.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void atom_feed_is_gzipped_when_the_client_accepts_it() throws Exception {
+        when(articlesAtomFeedService.current()).thenReturn(atomFeed());
+
+        MvcResult response = mockMvc.perform(get("/api/articles/atom").header("Accept-Encoding", "deflate, gzip;q=0.8"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"100-2-gz\""))
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn();
+
+        assertEquals(3, response.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    public void unchanged_atom_feed_is_not_modified() throws Exception {
+        when(articlesAtomFeedService.current()).thenReturn(atomFeed());
+
+        mockMvc.perform(get("/api/articles/atom").header("If-None-Match", "\"100-2\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+        mockMvc.perform(get("/api/articles/atom").header("Accept-Encoding", "gzip").header("If-None-Match", "\"100-2-gz\""))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void accepts_gzip_parses_the_accept_encoding_header() {
+        assertEquals(false, ArticlesController.acceptsGzip(null));
+        assertEquals(false, ArticlesController.acceptsGzip("br, deflate"));
+        assertEquals(false, ArticlesController.acceptsGzip("gzip;q=0"));
+        assertEquals(false, ArticlesController.acceptsGzip("gzip ; q=0.0, br"));
+        assertEquals(true, ArticlesController.acceptsGzip("GZIP"));
+        assertEquals(true, ArticlesController.acceptsGzip("br, gzip;q=0.5"));
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestStreamService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
@@ -18,6 +19,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -30,6 +32,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -44,6 +47,9 @@ public class HelpRequestControllerTests extends ControllerTestCase{
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    HelpRequestStreamService helpRequestStreamService;
+
     @Test
     public void logged_out_users_cannot_get_all() throws Exception {
         mockMvc.perform(get("/api/helprequest/all"))
@@ -185,6 +191,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         MvcResult response = mockMvc.perform(post("/api/helprequest/post?title=testrequest1&requester=someuser&requestBody=testbody1&requestDateTime=2022-01-03T00:00:00").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(requestRepository, times(1)).save(request1);
+        verify(helpRequestStreamService, times(1)).publish("created", request1);
         String expectedJSON = mapper.writeValueAsString(request1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -215,6 +222,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         // assert
         verify(requestRepository, times(1)).findById(1L);
         verify(requestRepository, times(1)).delete(any());
+        verify(helpRequestStreamService, times(1)).publish("deleted", Map.of("id", 1L));
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 1 deleted", json.get("message"));
@@ -236,6 +244,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
         // assert
         verify(requestRepository, times(1)).findById(123L);
+        verify(helpRequestStreamService, never()).publish(any(), any());
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 123 not found", json.get("message"));
     }
@@ -275,6 +284,7 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         
         verify(requestRepository, times(1)).findById(eq(1L));
         verify(requestRepository, times(1)).save(requestEdited);
+        verify(helpRequestStreamService, times(1)).publish("updated", requestEdited);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -307,4 +317,36 @@ public class HelpRequestControllerTests extends ControllerTestCase{
         Map<String, Object> json = responseToJson(response);
         assertEquals("HelpRequest with id 1 not found", json.get("message"));
     }
+
+    // Tests for GET /api/helprequest/stream
+
+    @Test
+    public void logged_out_users_cannot_stream() throws Exception {
+        mockMvc.perform(get("/api/helprequest/stream"))
+            .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void logged_in_users_can_stream() throws Exception {
+        when(helpRequestStreamService.subscribe(null)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/helprequest/stream"))
+            .andExpect(status().isOk())
+            .andExpect(request().asyncStarted());
+
+        verify(helpRequestStreamService, times(1)).subscribe(null);
+    }
+
+    @WithMockUser(roles = {"USER"})
+    @Test
+    public void stream_passes_last_event_id_to_the_service() throws Exception {
+        when(helpRequestStreamService.subscribe("5-7")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/helprequest/stream").header("Last-Event-ID", "5-7"))
+            .andExpect(status().isOk())
+            .andExpect(request().asyncStarted());
+
+        verify(helpRequestStreamService, times(1)).subscribe("5-7");
+    }
 }
\ No newline at end of file
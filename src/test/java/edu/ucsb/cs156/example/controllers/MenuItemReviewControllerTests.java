@@ -7,14 +7,26 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 // import lombok.With;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.MenuItemRatingStats;
+import edu.ucsb.cs156.example.models.ReviewIngestMetrics;
+import edu.ucsb.cs156.example.models.ReviewIngestStatus;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.services.MenuItemReviewIngestService;
+import edu.ucsb.cs156.example.services.MenuItemReviewStatsService;
+import edu.ucsb.cs156.example.services.MenuItemReviewTopService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import java.util.ArrayList;
 // import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -31,8 +43,10 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 // import static org.mockito.ArgumentMatchers.refEq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,6 +57,18 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
     
         @MockBean
         MenuItemReviewRepository menuItemReviewRepository;
+
+        @MockBean
+        MenuItemReviewStatsService menuItemReviewStatsService;
+
+        @MockBean
+        MenuItemReviewTopService menuItemReviewTopService;
+
+        @MockBean
+        MenuItemReviewIngestService menuItemReviewIngestService;
+
+        @MockBean
+        UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
     
         @MockBean
         UserRepository userRepository;
@@ -133,6 +159,10 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
             // assert
             verify(menuItemReviewRepository, times(1)).save(menuItemReview);
+            verify(menuItemReviewStatsService, times(1)).add(1L, 5);
+            verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateItem(1L);
+            verify(menuItemReviewTopService, times(1)).invalidate();
+            verify(menuItemReviewIngestService, times(1)).recordSync(anyLong());
             String expectedJson = mapper.writeValueAsString(menuItemReview);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(expectedJson, responseString);
@@ -223,6 +253,10 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             // assert
             verify(menuItemReviewRepository, times(1)).findById(1L);
             verify(menuItemReviewRepository, times(1)).save(menuItemReview2);
+            verify(menuItemReviewStatsService, times(1)).update(1L, 5, 2L, 4);
+            verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateItem(1L);
+            verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateItem(2L);
+            verify(menuItemReviewTopService, times(1)).invalidate();
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
         }
@@ -280,6 +314,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             // assert
             verify(menuItemReviewRepository, times(1)).findById(1L);
             verify(menuItemReviewRepository, times(1)).delete(any());
+            verify(menuItemReviewStatsService, times(1)).remove(1L, 5);
+            verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateItem(1L);
+            verify(menuItemReviewTopService, times(1)).invalidate();
 
             Map<String, Object> json = responseToJson(response);
             assertEquals("MenuItemReview with id 1 deleted", json.get("message"));
@@ -302,4 +339,298 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             Map<String, Object> json = responseToJson(response);
             assertEquals("MenuItemReview with id 1 not found", json.get("message"));
         }
+
+        // Tests for /api/menuitemreview/stats
+
+        @Test
+        public void logged_out_users_cannot_get_stats() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/stats?itemId=1"))
+                .andExpect(status().isForbidden());
+            mockMvc.perform(get("/api/menuitemreview/stats/all"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_stats_for_an_item() throws Exception {
+            // arrange
+            MenuItemRatingStats stats = MenuItemRatingStats.builder()
+                .itemId(7L)
+                .count(2)
+                .sum(9)
+                .average(4.5)
+                .histogram(new long[] { 0, 0, 0, 0, 1, 1 })
+                .build();
+            when(menuItemReviewStatsService.get(7L)).thenReturn(stats);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats?itemId=7"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewRepository, times(0)).findAll();
+            assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_stats_for_all_items() throws Exception {
+            // arrange
+            MenuItemRatingStats stats = MenuItemRatingStats.builder()
+                .itemId(7L)
+                .count(1)
+                .sum(3)
+                .average(3)
+                .histogram(new long[] { 0, 0, 0, 1, 0, 0 })
+                .build();
+            when(menuItemReviewStatsService.getAll()).thenReturn(Map.of(7L, stats));
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats/all"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            assertEquals(mapper.writeValueAsString(Map.of(7L, stats)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void regular_users_cannot_verify_stats() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/stats/verify"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void admin_can_verify_and_repair_stats() throws Exception {
+            // arrange
+            ConsistencyReport report = ConsistencyReport.builder()
+                .consistent(false)
+                .checked(3)
+                .mismatches(List.of("itemId 7: histogram [0, 0, 0, 1, 0, 0], recount [0, 0, 0, 2, 0, 0]"))
+                .repaired(true)
+                .build();
+            when(menuItemReviewStatsService.verify(true)).thenReturn(report);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats/verify?repair=true"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewStatsService, times(1)).verify(true);
+            verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateAll();
+            assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void verify_without_repair_leaves_snapshots_alone() throws Exception {
+            // arrange
+            ConsistencyReport report = ConsistencyReport.builder()
+                .consistent(true)
+                .checked(3)
+                .mismatches(List.of())
+                .repaired(false)
+                .build();
+            when(menuItemReviewStatsService.verify(false)).thenReturn(report);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/stats/verify"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewStatsService, times(1)).verify(false);
+            verify(ucsbDiningCommonsSnapshotService, never()).invalidateAll();
+            assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/menuitemreview/top
+
+        @Test
+        public void logged_out_users_cannot_get_top_items() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/top"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_top_items_with_defaults() throws Exception {
+            // arrange
+            List<TopMenuItem> top = List.of(TopMenuItem.builder()
+                .itemId(7L)
+                .name("Tofu Banh Mi Sandwich")
+                .station("Entree Specials")
+                .diningCommonsCode("ortega")
+                .count(2)
+                .average(4.5)
+                .build());
+            when(menuItemReviewTopService.top(10, null, null)).thenReturn(top);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/top"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewTopService, times(1)).top(10, null, null);
+            assertEquals(mapper.writeValueAsString(top), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void top_items_passes_filters_and_clamps_k() throws Exception {
+            // arrange
+            LocalDateTime since = LocalDateTime.parse("2022-01-03T00:00:00");
+            when(menuItemReviewTopService.top(100, since, "ortega")).thenReturn(List.of());
+
+            // act
+            mockMvc.perform(get("/api/menuitemreview/top?k=5000&since=2022-01-03T00:00:00&diningCommonsCode=ortega"))
+                .andExpect(status().isOk());
+            mockMvc.perform(get("/api/menuitemreview/top?k=0"))
+                .andExpect(status().isOk());
+
+            // assert
+            verify(menuItemReviewTopService, times(1)).top(100, since, "ortega");
+            verify(menuItemReviewTopService, times(1)).top(1, null, null);
+        }
+
+        // Tests for /api/menuitemreview/post/async and /api/menuitemreview/ingest/metrics
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void regular_users_cannot_post_async_or_see_ingest_metrics() throws Exception {
+            mockMvc.perform(
+                post("/api/menuitemreview/post/async?itemId=1&reviewerEmail=test@ucsb.edu&stars=5&dateReviewed=2021-05-01T12:00:00&comments=ok")
+                    .with(csrf()))
+                .andExpect(status().isForbidden());
+            mockMvc.perform(get("/api/menuitemreview/ingest/metrics"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void an_admin_user_can_queue_a_review() throws Exception {
+            // arrange
+            MenuItemReview menuItemReview = MenuItemReview.builder()
+                .itemId(1L)
+                .reviewerEmail("test@ucsb.edu")
+                .stars(5)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("This is a test")
+                .build();
+            when(menuItemReviewIngestService.submit(eq(menuItemReview))).thenReturn(Optional.of("abc-123"));
+
+            // act
+            MvcResult response = mockMvc.perform(
+                post("/api/menuitemreview/post/async?itemId=1&reviewerEmail=test@ucsb.edu&stars=5&dateReviewed=2021-05-01T12:00:00&comments=This is a test")
+                    .with(csrf()))
+                .andExpect(status().isAccepted()).andReturn();
+
+            // assert
+            verify(menuItemReviewIngestService, times(1)).submit(menuItemReview);
+            verify(menuItemReviewRepository, times(0)).save(any());
+            assertEquals("{\"trackingId\":\"abc-123\"}", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_full_queue_is_answered_with_503() throws Exception {
+            // arrange
+            when(menuItemReviewIngestService.submit(any())).thenReturn(Optional.empty());
+
+            // act
+            mockMvc.perform(
+                post("/api/menuitemreview/post/async?itemId=1&reviewerEmail=test@ucsb.edu&stars=5&dateReviewed=2021-05-01T12:00:00&comments=ok")
+                    .with(csrf()))
+                .andExpect(status().isServiceUnavailable());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void an_admin_user_can_check_a_queued_review() throws Exception {
+            // arrange
+            ReviewIngestStatus status = ReviewIngestStatus.builder().trackingId("abc-123").status("WRITTEN").build();
+            when(menuItemReviewIngestService.status("abc-123")).thenReturn(status);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/post/async?trackingId=abc-123"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            assertEquals(mapper.writeValueAsString(status), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void an_admin_user_can_get_ingest_metrics() throws Exception {
+            // arrange
+            ReviewIngestMetrics metrics = ReviewIngestMetrics.builder()
+                .syncPosts(3)
+                .syncAverageMillis(4.5)
+                .asyncAccepted(1000)
+                .asyncWritten(998)
+                .batches(4)
+                .queueDepth(2)
+                .queueCapacity(10000)
+                .build();
+            when(menuItemReviewIngestService.metrics()).thenReturn(metrics);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/ingest/metrics"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            assertEquals(mapper.writeValueAsString(metrics), response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/menuitemreview/byItem and /api/menuitemreview/byReviewer
+
+        @Test
+        public void logged_out_users_cannot_get_reviews_by_item_or_reviewer() throws Exception {
+            mockMvc.perform(get("/api/menuitemreview/byItem?itemId=1"))
+                .andExpect(status().isForbidden());
+            mockMvc.perform(get("/api/menuitemreview/byReviewer?reviewerEmail=test@ucsb.edu"))
+                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void logged_in_user_can_get_a_page_of_reviews_of_an_item() throws Exception {
+            // arrange
+            MenuItemReview review = MenuItemReview.builder()
+                .Id(4L)
+                .itemId(1L)
+                .reviewerEmail("test@ucsb.edu")
+                .stars(5)
+                .dateReviewed(LocalDateTime.of(2021, 5, 1, 12, 0, 0))
+                .comments("This is a test")
+                .build();
+            PageImpl<MenuItemReview> page = new PageImpl<>(List.of(review), PageRequest.of(2, 1), 3);
+            when(menuItemReviewRepository.findPageByItemId(1L, PageRequest.of(2, 1))).thenReturn(page);
+
+            // act
+            MvcResult response = mockMvc.perform(get("/api/menuitemreview/byItem?itemId=1&page=2&size=1"))
+                .andExpect(status().isOk()).andReturn();
+
+            // assert
+            verify(menuItemReviewRepository, times(1)).findPageByItemId(1L, PageRequest.of(2, 1));
+            assertEquals(mapper.writeValueAsString(page), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void reviews_by_reviewer_defaults_and_clamps_the_page() throws Exception {
+            // arrange
+            when(menuItemReviewRepository.findPageByReviewerEmail(eq("test@ucsb.edu"), any()))
+                .thenReturn(new PageImpl<>(List.of()));
+
+            // act
+            mockMvc.perform(get("/api/menuitemreview/byReviewer?reviewerEmail=test@ucsb.edu"))
+                .andExpect(status().isOk());
+            mockMvc.perform(get("/api/menuitemreview/byReviewer?reviewerEmail=test@ucsb.edu&page=-1&size=1000"))
+                .andExpect(status().isOk());
+
+            // assert
+            verify(menuItemReviewRepository, times(1)).findPageByReviewerEmail("test@ucsb.edu", PageRequest.of(0, 20));
+            verify(menuItemReviewRepository, times(1)).findPageByReviewerEmail("test@ucsb.edu", PageRequest.of(0, 100));
+        }
 }
\ No newline at end of file
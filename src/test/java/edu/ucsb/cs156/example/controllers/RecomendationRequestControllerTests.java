@@ -4,14 +4,26 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.errors.EntityConflictException;
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.DueScanMetrics;
+import edu.ucsb.cs156.example.models.DueSoonEvent;
+import edu.ucsb.cs156.example.models.InboxSummary;
 import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+import edu.ucsb.cs156.example.services.RecommendationRequestClaimService;
+import edu.ucsb.cs156.example.services.RecommendationRequestDueScanService;
+import edu.ucsb.cs156.example.services.RecommendationRequestInboxService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.mockito.ArgumentCaptor;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -26,6 +38,7 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
@@ -39,6 +52,15 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
     @MockBean
     RecommendationRequestRepository recommendationRequestRepository;
 
+    @MockBean
+    RecommendationRequestClaimService recommendationRequestClaimService;
+
+    @MockBean
+    RecommendationRequestInboxService recommendationRequestInboxService;
+
+    @MockBean
+    RecommendationRequestDueScanService recommendationRequestDueScanService;
+
     @MockBean
     UserRepository userRepository;
 
@@ -194,6 +216,8 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
                         .andReturn();
 
         verify(recommendationRequestRepository, times(1)).save(req);
+        verify(recommendationRequestInboxService, times(1)).add("testp@ucsb.edu", ldt2, false);
+        verify(recommendationRequestDueScanService, times(1)).created(req);
         String expectedJson = mapper.writeValueAsString(req);
         String responseString = response.getResponse().getContentAsString();
 
@@ -230,6 +254,7 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
             String requestBody = mapper.writeValueAsString(Ereq);
 
             when(recommendationRequestRepository.findById(eq(57L))).thenReturn(Optional.of(Oreq));
+            when(recommendationRequestRepository.save(eq(Ereq))).thenReturn(Ereq);
 
             
             MvcResult response = mockMvc.perform(
@@ -243,6 +268,8 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
         
             verify(recommendationRequestRepository, times(1)).findById(57L);
             verify(recommendationRequestRepository, times(1)).save(Ereq); // should be saved with correct user
+            verify(recommendationRequestInboxService, times(1)).update("test2@", ldt2, false, "Etest2@", ldt1, true);
+            verify(recommendationRequestDueScanService, times(1)).updated(ldt2, false, Ereq);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
 
@@ -284,6 +311,133 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
     }
 
 
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_cannot_overwrite_a_request_changed_since_the_version_they_read() throws Exception {
+        // arrange
+        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+        RecommendationRequest current = RecommendationRequest.builder()
+                .Id(57L)
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("testexplanation")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(false)
+                .version(4L)
+                .build();
+        RecommendationRequest stale = RecommendationRequest.builder()
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("stale edit")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(true)
+                .version(3L)
+                .build();
+        when(recommendationRequestRepository.findById(eq(57L))).thenReturn(Optional.of(current));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequest?id=57")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(stale))
+                        .with(csrf()))
+                .andExpect(status().isConflict()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(0)).save(any());
+        verify(recommendationRequestInboxService, times(0)).update(any(), any(), any(Boolean.class), any(), any(), any(Boolean.class));
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 57 was changed since version 3 (now version 4)", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void edit_returns_the_version_after_the_save() throws Exception {
+        // arrange
+        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+        RecommendationRequest current = RecommendationRequest.builder()
+                .Id(57L)
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("testexplanation")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(false)
+                .version(4L)
+                .build();
+        RecommendationRequest edit = RecommendationRequest.builder()
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("edited")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(false)
+                .version(4L)
+                .build();
+        RecommendationRequest saved = RecommendationRequest.builder()
+                .Id(57L)
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("edited")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(false)
+                .version(5L)
+                .build();
+        when(recommendationRequestRepository.findById(eq(57L))).thenReturn(Optional.of(current));
+        when(recommendationRequestRepository.save(any())).thenReturn(saved);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequest?id=57")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(edit))
+                        .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestDueScanService, times(1)).updated(ldt1, false, saved);
+        Map<String, Object> json = responseToJson(response);
+        assertEquals(5, json.get("version"));
+        assertEquals("edited", json.get("explanation"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void concurrent_update_while_saving_is_a_conflict() throws Exception {
+        // arrange
+        LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
+        RecommendationRequest current = RecommendationRequest.builder()
+                .Id(57L)
+                .requesterEmail("test1@")
+                .professorEmail("test2@")
+                .explanation("testexplanation")
+                .dateRequested(ldt1)
+                .dateNeeded(ldt1)
+                .done(false)
+                .version(4L)
+                .build();
+        when(recommendationRequestRepository.findById(eq(57L))).thenReturn(Optional.of(current));
+        when(recommendationRequestRepository.save(any())).thenThrow(new OptimisticLockingFailureException("stale"));
+
+        // act
+        MvcResult response = mockMvc.perform(
+                put("/api/recommendationrequest?id=57")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(mapper.writeValueAsString(current))
+                        .with(csrf()))
+                .andExpect(status().isConflict()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("RecommendationRequest with id 57 was changed while it was being updated", json.get("message"));
+    }
+
     // Tests for DELETE
 
     @WithMockUser(roles = { "ADMIN", "USER" })
@@ -311,6 +465,8 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
 
         verify(recommendationRequestRepository, times(1)).findById(15L);
         verify(recommendationRequestRepository, times(1)).delete(any());
+        verify(recommendationRequestInboxService, times(1)).remove("test2@", ldt2, false);
+        verify(recommendationRequestDueScanService, times(1)).removed(req);
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("RecommendationRequest with id 15 deleted", json.get("message"));
@@ -339,4 +495,269 @@ public class RecomendationRequestControllerTests extends ControllerTestCase{
 
         }
 
+    // Tests for GET /api/recommendationrequest/queue
+
+    @Test
+    public void logged_out_users_cannot_get_the_queue() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequest/queue"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_queue_of_a_professor() throws Exception {
+        // arrange
+        RecommendationRequest req = RecommendationRequest.builder()
+                .Id(7L)
+                .requesterEmail("student@ucsb.edu")
+                .professorEmail("prof@ucsb.edu")
+                .explanation("grad school")
+                .dateRequested(LocalDateTime.parse("2022-01-03T00:00:00"))
+                .dateNeeded(LocalDateTime.parse("2022-02-03T00:00:00"))
+                .done(false)
+                .build();
+        when(recommendationRequestRepository.findOpenByProfessorEmail("prof@ucsb.edu", RecommendationRequestController.NO_DEADLINE, PageRequest.of(0, 50)))
+                .thenReturn(List.of(req));
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/queue?professorEmail=prof@ucsb.edu"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(0)).findAll();
+        assertEquals(mapper.writeValueAsString(List.of(req)), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void overdue_queue_of_all_professors_is_cut_off_now_and_limit_is_clamped() throws Exception {
+        // arrange
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        LocalDateTime start = LocalDateTime.now();
+
+        // act
+        mockMvc.perform(get("/api/recommendationrequest/queue?overdue=true&limit=100000"))
+                .andExpect(status().isOk());
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findOpen(before.capture(), eq(PageRequest.of(0, 500)));
+        assertTrue(!before.getValue().isBefore(start) && !before.getValue().isAfter(LocalDateTime.now()));
+        verify(recommendationRequestRepository, times(0)).findOpenByProfessorEmail(any(), any(), any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void blank_professor_email_means_every_professor() throws Exception {
+        // act
+        mockMvc.perform(get("/api/recommendationrequest/queue").param("professorEmail", " "))
+                .andExpect(status().isOk());
+
+        // assert
+        verify(recommendationRequestRepository, times(1)).findOpen(eq(RecommendationRequestController.NO_DEADLINE), eq(PageRequest.of(0, 50)));
+        verify(recommendationRequestRepository, times(0)).findOpenByProfessorEmail(any(), any(), any());
+    }
+
+    // Tests for POST /api/recommendationrequest/claim and /complete
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void regular_users_cannot_claim_or_complete() throws Exception {
+        mockMvc.perform(post("/api/recommendationrequest/claim?id=1&version=0").with(csrf()))
+                .andExpect(status().is(403));
+        mockMvc.perform(post("/api/recommendationrequest/complete?id=1&version=0").with(csrf()))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_claim_a_request_as_themselves() throws Exception {
+        // arrange
+        RecommendationRequest claimed = RecommendationRequest.builder()
+                .Id(7L)
+                .professorEmail("prof@ucsb.edu")
+                .claimedBy("user@example.org")
+                .version(1L)
+                .build();
+        when(recommendationRequestClaimService.claim(7L, 0L, "user@example.org")).thenReturn(claimed);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/recommendationrequest/claim?id=7&version=0").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestClaimService, times(1)).claim(7L, 0L, "user@example.org");
+        assertEquals(mapper.writeValueAsString(claimed), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void losing_a_claim_race_is_a_conflict() throws Exception {
+        // arrange
+        when(recommendationRequestClaimService.claim(7L, 0L, "user@example.org"))
+                .thenThrow(new EntityConflictException("RecommendationRequest with id 7 is claimed by other@ucsb.edu"));
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/recommendationrequest/claim?id=7&version=0").with(csrf()))
+                .andExpect(status().isConflict()).andReturn();
+
+        // assert
+        Map<String, Object> json = responseToJson(response);
+        assertEquals("EntityConflictException", json.get("type"));
+        assertEquals("RecommendationRequest with id 7 is claimed by other@ucsb.edu", json.get("message"));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_complete_a_request() throws Exception {
+        // arrange
+        RecommendationRequest done = RecommendationRequest.builder()
+                .Id(7L)
+                .done(true)
+                .claimedBy("user@example.org")
+                .version(2L)
+                .build();
+        when(recommendationRequestClaimService.complete(7L, 1L, "user@example.org")).thenReturn(done);
+
+        // act
+        MvcResult response = mockMvc.perform(post("/api/recommendationrequest/complete?id=7&version=1").with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestDueScanService, times(1)).removed(done);
+        assertEquals(mapper.writeValueAsString(done), response.getResponse().getContentAsString());
+    }
+
+    // Tests for GET /api/recommendationrequest/inbox-summary
+
+    @Test
+    public void logged_out_users_cannot_get_the_inbox_summary() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequest/inbox-summary"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_inbox_summary_of_every_professor() throws Exception {
+        // arrange
+        List<InboxSummary> summaries = List.of(
+                InboxSummary.builder().professorEmail("pconrad@ucsb.edu").open(3).overdue(2).completed(10).build(),
+                InboxSummary.builder().professorEmail("ziad@ucsb.edu").open(1).build());
+        when(recommendationRequestInboxService.getAll()).thenReturn(summaries);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/inbox-summary"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestRepository, times(0)).findAll();
+        assertEquals(mapper.writeValueAsString(summaries), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_inbox_summary_of_one_professor() throws Exception {
+        // arrange
+        InboxSummary summary = InboxSummary.builder().professorEmail("ziad@ucsb.edu").open(1).build();
+        when(recommendationRequestInboxService.get("ziad@ucsb.edu")).thenReturn(summary);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/inbox-summary?professorEmail=ziad@ucsb.edu"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(recommendationRequestInboxService, times(0)).getAll();
+        assertEquals(mapper.writeValueAsString(List.of(summary)), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void blank_professor_email_gets_the_inbox_summary_of_every_professor() throws Exception {
+        // act
+        mockMvc.perform(get("/api/recommendationrequest/inbox-summary").param("professorEmail", " "))
+                .andExpect(status().isOk());
+
+        // assert
+        verify(recommendationRequestInboxService, times(1)).getAll();
+        verify(recommendationRequestInboxService, times(0)).get(any());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void regular_users_cannot_verify_the_inbox_summary() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequest/inbox-summary/verify"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_verify_and_repair_the_inbox_summary() throws Exception {
+        // arrange
+        ConsistencyReport report = ConsistencyReport.builder()
+                .consistent(false)
+                .checked(2)
+                .mismatches(List.of("professorEmail ziad@ucsb.edu: counters open 0 overdue 0 completed 0, recount open 1 overdue 0 completed 0"))
+                .repaired(true)
+                .build();
+        when(recommendationRequestInboxService.verify(true)).thenReturn(report);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/inbox-summary/verify?repair=true"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(mapper.writeValueAsString(report), response.getResponse().getContentAsString());
+    }
+
+    // Tests for GET /api/recommendationrequest/due-soon
+
+    @Test
+    public void logged_out_users_cannot_get_due_soon_events() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequest/due-soon"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_due_soon_events_after_the_last_one_seen() throws Exception {
+        // arrange
+        List<DueSoonEvent> events = List.of(DueSoonEvent.builder()
+                .id(8L)
+                .requestId(7L)
+                .requesterEmail("student@ucsb.edu")
+                .professorEmail("prof@ucsb.edu")
+                .dateNeeded(LocalDateTime.parse("2023-06-02T12:00:00"))
+                .flaggedAt(LocalDateTime.parse("2023-06-01T12:00:00"))
+                .build());
+        when(recommendationRequestDueScanService.eventsAfter(7L)).thenReturn(events);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/due-soon?after=7"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(mapper.writeValueAsString(events), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void regular_users_cannot_get_due_scan_metrics() throws Exception {
+        mockMvc.perform(get("/api/recommendationrequest/due-soon/metrics"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_get_due_scan_metrics() throws Exception {
+        // arrange
+        DueScanMetrics metrics = DueScanMetrics.builder().runs(3).lastRunMillis(1.5).rowsScanned(4).eventsPublished(4).build();
+        when(recommendationRequestDueScanService.metrics()).thenReturn(metrics);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/recommendationrequest/due-soon/metrics"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(mapper.writeValueAsString(metrics), response.getResponse().getContentAsString());
+    }
+
 }
\ No newline at end of file
@@ -4,10 +4,15 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.BulkUpsertResult;
+import edu.ucsb.cs156.example.models.ImportRowError;
 import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+import edu.ucsb.cs156.example.services.RestaurantIndexService;
+import edu.ucsb.cs156.example.services.RestaurantUpsertService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -37,6 +42,12 @@ public class RestaurantsControllerTests extends ControllerTestCase {
         @MockBean
         RestaurantRepository restaurantRepository;
 
+        @MockBean
+        RestaurantIndexService restaurantIndexService;
+
+        @MockBean
+        RestaurantUpsertService restaurantUpsertService;
+
         @MockBean
         UserRepository userRepository;
 
@@ -157,6 +168,100 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        // Tests for /api/restaurants/search
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/restaurants/search?q=taco"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_search_restaurants() throws Exception {
+
+                // arrange
+                Restaurant restaurant1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Taco Bell")
+                                .description("Tacos")
+                                .build();
+
+                List<Restaurant> expected = List.of(restaurant1);
+                when(restaurantIndexService.search(eq("taco"), eq(5))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/search?q=taco&limit=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantIndexService, times(1)).search("taco", 5);
+                verify(restaurantRepository, times(0)).findAll();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_limit_defaults_to_20_and_is_clamped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/restaurants/search?q=taco")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/restaurants/search?q=taco&limit=1000")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/restaurants/search?q=taco&limit=0")).andExpect(status().isOk());
+
+                // assert
+                verify(restaurantIndexService, times(1)).search("taco", 20);
+                verify(restaurantIndexService, times(1)).search("taco", 100);
+                verify(restaurantIndexService, times(1)).search("taco", 1);
+        }
+
+        // Tests for /api/restaurants/autocomplete
+
+        @Test
+        public void logged_out_users_cannot_autocomplete() throws Exception {
+                mockMvc.perform(get("/api/restaurants/autocomplete?prefix=ta"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_autocomplete_restaurant_names() throws Exception {
+
+                // arrange
+                Restaurant restaurant1 = Restaurant.builder()
+                                .id(1L)
+                                .name("Taco Bell")
+                                .description("Tacos")
+                                .build();
+
+                List<Restaurant> expected = List.of(restaurant1);
+                when(restaurantIndexService.autocomplete(eq("ta"), eq(5))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/restaurants/autocomplete?prefix=ta&limit=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantIndexService, times(1)).autocomplete("ta", 5);
+                verify(restaurantRepository, times(0)).findAll();
+                assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void autocomplete_limit_defaults_to_10_and_is_clamped() throws Exception {
+
+                // act
+                mockMvc.perform(get("/api/restaurants/autocomplete?prefix=ta")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/restaurants/autocomplete?prefix=ta&limit=1000")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/restaurants/autocomplete?prefix=ta&limit=-1")).andExpect(status().isOk());
+
+                // assert
+                verify(restaurantIndexService, times(1)).autocomplete("ta", 10);
+                verify(restaurantIndexService, times(1)).autocomplete("ta", 50);
+                verify(restaurantIndexService, times(1)).autocomplete("ta", 1);
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_restaurant() throws Exception {
@@ -177,6 +282,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(restaurantRepository, times(1)).save(restaurant1);
+                verify(restaurantIndexService, times(1)).put(restaurant1);
                 String expectedJson = mapper.writeValueAsString(restaurant1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -203,6 +309,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 // assert
                 verify(restaurantRepository, times(1)).findById(15L);
                 verify(restaurantRepository, times(1)).delete(any());
+                verify(restaurantIndexService, times(1)).remove(0L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Restaurant with id 15 deleted", json.get("message"));
@@ -259,6 +366,7 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 // assert
                 verify(restaurantRepository, times(1)).findById(67L);
                 verify(restaurantRepository, times(1)).save(restaurantEdited); // should be saved with correct user
+                verify(restaurantIndexService, times(1)).put(restaurantEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -294,4 +402,84 @@ public class RestaurantsControllerTests extends ControllerTestCase {
                 assertEquals("Restaurant with id 67 not found", json.get("message"));
 
         }
-}
+
+        // Tests for /api/restaurants/bulk
+
+        @Test
+        public void logged_out_users_cannot_bulk_upsert() throws Exception {
+                mockMvc.perform(put("/api/restaurants/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_bulk_upsert() throws Exception {
+                mockMvc.perform(put("/api/restaurants/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_upsert_a_json_array() throws Exception {
+                // arrange
+
+                List<Restaurant> restaurants = List.of(
+                                Restaurant.builder().id(1L).name("Taco Bell").description("Mexican").build(),
+                                Restaurant.builder().name("Habit").description("Burgers").build());
+
+                BulkUpsertResult result = BulkUpsertResult.builder()
+                                .inserted(1)
+                                .updated(1)
+                                .errors(List.of())
+                                .build();
+
+                when(restaurantUpsertService.upsert(eq(restaurants))).thenReturn(result);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/bulk")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(restaurants))
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantUpsertService, times(1)).upsert(restaurants);
+                assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_bulk_upsert_ndjson() throws Exception {
+                // arrange
+
+                String ndjson = "{\"name\":\"Habit\",\"description\":\"Burgers\"}\nnot json\n";
+
+                BulkUpsertResult result = BulkUpsertResult.builder()
+                                .inserted(1)
+                                .rejected(1)
+                                .errors(List.of(new ImportRowError(2, "invalid JSON")))
+                                .build();
+
+                when(restaurantUpsertService.upsertNdjson(any())).thenReturn(result);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/restaurants/bulk")
+                                                .contentType(MediaType.APPLICATION_NDJSON)
+                                                .content(ndjson)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(restaurantUpsertService, times(1)).upsertNdjson(any());
+                assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+        }
+}
\ No newline at end of file
@@ -5,15 +5,22 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.UCSBDateCalendarService;
+import edu.ucsb.cs156.example.models.UCSBDateImportResult;
+import edu.ucsb.cs156.example.services.UCSBDateImportService;
+import edu.ucsb.cs156.example.services.UCSBDateIndexService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -26,8 +33,11 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,6 +49,15 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UCSBDateRepository ucsbDateRepository;
 
+        @MockBean
+        UCSBDateIndexService ucsbDateIndexService;
+
+        @MockBean
+        UCSBDateCalendarService ucsbDateCalendarService;
+
+        @MockBean
+        UCSBDateImportService ucsbDateImportService;
+
         @MockBean
         UserRepository userRepository;
 
@@ -166,6 +185,104 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        // Tests for /api/ucsbdates/range
+
+        @Test
+        public void logged_out_users_cannot_get_range() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/range?from=2022-01-01T00:00:00&to=2022-12-31T00:00:00"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_range_of_ucsbdates_for_a_quarter() throws Exception {
+
+                // arrange
+                LocalDateTime from = LocalDateTime.parse("2022-01-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-02-01T00:00:00");
+
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .id(1L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                List<UCSBDate> expectedDates = List.of(ucsbDate1);
+
+                when(ucsbDateIndexService.range(eq(from), eq(to), eq("20222"))).thenReturn(expectedDates);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                get("/api/ucsbdates/range?from=2022-01-01T00:00:00&to=2022-02-01T00:00:00&quarter=20222"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateIndexService, times(1)).range(from, to, "20222");
+                verify(ucsbDateRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(expectedDates);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void range_without_quarter_searches_all_quarters() throws Exception {
+
+                // arrange
+                LocalDateTime from = LocalDateTime.parse("2022-01-01T00:00:00");
+                LocalDateTime to = LocalDateTime.parse("2022-12-31T00:00:00");
+
+                when(ucsbDateIndexService.range(eq(from), eq(to), eq(null))).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                get("/api/ucsbdates/range?from=2022-01-01T00:00:00&to=2022-12-31T00:00:00"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateIndexService, times(1)).range(from, to, null);
+                assertEquals("[]", response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/ucsbdates/ics
+
+        @Test
+        public void anyone_can_get_the_ics_feed_for_a_quarter() throws Exception {
+
+                // arrange
+                when(ucsbDateIndexService.etagForQuarter(eq("20222"))).thenReturn("\"100-3\"");
+                when(ucsbDateIndexService.lastModifiedForQuarter(eq("20222"))).thenReturn(1640995200000L);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/ics?quarter=20222"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"100-3\""))
+                                .andExpect(header().exists("Last-Modified"))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateCalendarService, times(1)).writeQuarter(eq("20222"), eq(1640995200000L), any());
+                verify(ucsbDateRepository, times(0)).findAll();
+                assertTrue(response.getResponse().getContentType().startsWith("text/calendar"));
+                assertEquals("inline; filename=\"ucsbdates-20222.ics\"", response.getResponse().getHeader("Content-Disposition"));
+        }
+
+        @Test
+        public void unchanged_ics_feed_is_not_modified() throws Exception {
+
+                // arrange
+                when(ucsbDateIndexService.etagForQuarter(eq("20222"))).thenReturn("\"100-3\"");
+                when(ucsbDateIndexService.lastModifiedForQuarter(eq("20222"))).thenReturn(1640995200000L);
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates/ics?quarter=20222").header("If-None-Match", "\"100-3\""))
+                                .andExpect(status().isNotModified());
+
+                // assert
+                verify(ucsbDateCalendarService, times(0)).writeQuarter(any(), anyLong(), any());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_ucsbdate() throws Exception {
@@ -189,11 +306,90 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDateRepository, times(1)).save(ucsbDate1);
+                verify(ucsbDateIndexService, times(1)).put(ucsbDate1);
                 String expectedJson = mapper.writeValueAsString(ucsbDate1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        // Tests for /api/ucsbdates/import
+
+        @Test
+        public void logged_out_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv", "".getBytes());
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv", "".getBytes());
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void an_admin_user_can_import_a_csv_file() throws Exception {
+                // arrange
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv",
+                                "20222,firstDayOfClasses,2022-01-03T00:00:00\n".getBytes());
+
+                UCSBDateImportResult result = UCSBDateImportResult.builder()
+                                .rowsRead(1)
+                                .rowsImported(1)
+                                .errors(List.of())
+                                .quarters(Set.of("20222"))
+                                .batchSize(100)
+                                .batches(1)
+                                .build();
+
+                UCSBDate imported = UCSBDate.builder()
+                                .id(12L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateImportService.importCsv(any(), eq(100))).thenReturn(result);
+                when(ucsbDateRepository.findAllByQuarterYYYYQ(eq("20222"))).thenReturn(List.of(imported));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                multipart("/api/ucsbdates/import?batchSize=100").file(file).with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateImportService, times(1)).importCsv(any(), eq(100));
+                verify(ucsbDateIndexService, times(1)).reloadQuarter("20222", List.of(imported));
+                assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void import_uses_default_batch_size_when_none_given() throws Exception {
+                // arrange
+                MockMultipartFile file = new MockMultipartFile("file", "dates.csv", "text/csv", "bad\n".getBytes());
+
+                UCSBDateImportResult result = UCSBDateImportResult.builder()
+                                .rowsRead(1)
+                                .rowsRejected(1)
+                                .errors(List.of())
+                                .quarters(Set.of())
+                                .build();
+
+                when(ucsbDateImportService.importCsv(any(), isNull())).thenReturn(result);
+
+                // act
+                mockMvc.perform(multipart("/api/ucsbdates/import").file(file).with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbDateImportService, times(1)).importCsv(any(), isNull());
+                verify(ucsbDateIndexService, times(0)).reloadQuarter(any(), any());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_delete_a_date() throws Exception {
@@ -218,6 +414,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDateRepository, times(1)).findById(15L);
                 verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateIndexService, times(1)).remove(0L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -279,6 +476,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDateRepository, times(1)).findById(67L);
                 verify(ucsbDateRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(ucsbDateIndexService, times(1)).put(ucsbDateEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -4,10 +4,15 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.DiningCommonsDistance;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsGeoIndexService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -37,6 +42,12 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+        @MockBean
+        UCSBDiningCommonsGeoIndexService ucsbDiningCommonsGeoIndexService;
+
+        @MockBean
+        UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
         @MockBean
         UserRepository userRepository;
 
@@ -197,6 +208,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).put(ortega);
+                verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("ortega");
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -228,6 +241,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
                 verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).remove("portola");
+                verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("portola");
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -294,6 +309,8 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
                 verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).put(carrilloEdited);
+                verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("carrillo");
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -332,4 +349,111 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
-}
+
+        // Tests for /api/ucsbdiningcommons/nearest
+
+        @Test
+        public void logged_out_users_cannot_get_nearest() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_nearest_commons() throws Exception {
+                // arrange
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder()
+                                .name("Ortega")
+                                .code("ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+                List<DiningCommonsDistance> nearest = List.of(
+                                DiningCommonsDistance.builder().commons(ortega).distanceKm(0.31).build());
+                when(ucsbDiningCommonsGeoIndexService.nearest(34.41, -119.85, 1, true)).thenReturn(nearest);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85&k=1&hasTakeOutMeal=true"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).nearest(34.41, -119.85, 1, true);
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                assertEquals(mapper.writeValueAsString(nearest), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_defaults_and_clamps_k() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsGeoIndexService.nearest(eq(34.41), eq(-119.85), any(Integer.class), eq(null))).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85"))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=34.41&lon=-119.85&k=500"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).nearest(34.41, -119.85, 3, null);
+                verify(ucsbDiningCommonsGeoIndexService, times(1)).nearest(34.41, -119.85, 50, null);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_rejects_coordinates_off_the_globe() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=91&lon=0"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=-91&lon=0"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=-181"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?lat=0&lon=181"))
+                                .andExpect(status().isBadRequest());
+                verify(ucsbDiningCommonsGeoIndexService, times(0)).nearest(any(Double.class), any(Double.class), any(Integer.class), any());
+        }
+
+        // Tests for /api/ucsbdiningcommons/{code}/snapshot
+
+        @Test
+        public void logged_out_users_cannot_get_a_snapshot() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/ortega/snapshot"))
+                                .andExpect(status().isForbidden());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_the_cached_snapshot_bytes() throws Exception {
+                // arrange
+                String json = "{\"commons\":{\"code\":\"ortega\"},\"stations\":{}}";
+                when(ucsbDiningCommonsSnapshotService.snapshot("ortega")).thenReturn(json.getBytes());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/ortega/snapshot"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsSnapshotService, times(1)).snapshot("ortega");
+                assertEquals("application/json", response.getResponse().getContentType());
+                assertEquals(json, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void snapshot_of_a_missing_commons_is_not_found() throws Exception {
+                // arrange
+                when(ucsbDiningCommonsSnapshotService.snapshot("munger-hall"))
+                                .thenThrow(new EntityNotFoundException(UCSBDiningCommons.class, "munger-hall"));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/munger-hall/snapshot"))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
+        }
+}
\ No newline at end of file
@@ -5,9 +5,16 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.models.MenuItemName;
+import edu.ucsb.cs156.example.models.MenuReplaceResult;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsMenuService;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsSnapshotService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 
@@ -40,6 +47,12 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
     @MockBean
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @MockBean
+    UCSBDiningCommonsSnapshotService ucsbDiningCommonsSnapshotService;
+
+    @MockBean
+    UCSBDiningCommonsMenuService ucsbDiningCommonsMenuService;
+
     @MockBean
     UserRepository UserRepository;
 
@@ -183,6 +196,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         MvcResult response = mockMvc.perform(post("/api/ucsbdiningcommonsmenuitem/post?diningCommonsCode=Carrillo&name=Pizza&station=PizzaStation").with(csrf())).andExpect(status().isOk()).andReturn();
 
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(uCSBDiningCommonsMenuItem1);
+        verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("Carrillo");
         String expectedJSON = mapper.writeValueAsString(uCSBDiningCommonsMenuItem1);
         String responseJSON = response.getResponse().getContentAsString();
         assertEquals(expectedJSON, responseJSON);
@@ -217,6 +231,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(1L));
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(uCSBDiningCommonsMenuItem2);
+        verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("Carrillo");
+        verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("Ortega");
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -265,6 +281,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(1L));
         verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+        verify(ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("Carrillo");
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBDiningCommonsMenuItem with id 1 deleted", json.get("message"));
@@ -285,4 +302,129 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
     }
+
+    // Tests for PUT /api/ucsbdiningcommonsmenuitem/menu
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_regular_users_cannot_replace_a_menu() throws Exception {
+        mockMvc.perform(put("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[]")
+            .with(csrf()))
+            .andExpect(status().isForbidden());
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_replace_a_menu() throws Exception {
+        List<UCSBDiningCommonsMenuItem> menu = List.of(
+            UCSBDiningCommonsMenuItem.builder().name("Pizza").station("PizzaStation").build(),
+            UCSBDiningCommonsMenuItem.builder().name("Lasagna").station("PastaStation").build());
+        MenuReplaceResult result = MenuReplaceResult.builder()
+            .inserted(1)
+            .deleted(3)
+            .unchanged(1)
+            .rejected(0)
+            .errors(List.<ImportRowError>of())
+            .build();
+        when(ucsbDiningCommonsMenuService.replaceMenu("ortega", menu)).thenReturn(result);
+
+        MvcResult response = mockMvc.perform(
+            put("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega")
+            .contentType(MediaType.APPLICATION_JSON)
+            .characterEncoding("utf-8")
+            .content(mapper.writeValueAsString(menu))
+            .with(csrf()))
+            .andExpect(status().isOk()).andReturn();
+
+        verify(ucsbDiningCommonsMenuService, times(1)).replaceMenu("ortega", menu);
+        verify(ucsbDiningCommonsMenuItemRepository, times(0)).save(any());
+        assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+    }
+
+    // Tests for GET /api/ucsbdiningcommonsmenuitem/menu
+
+    @Test
+    public void logged_out_users_cannot_get_a_menu() throws Exception {
+        mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega"))
+            .andExpect(status().isForbidden());
+    }
+
+    private static UCSBDiningCommonsMenuItemRepository.NameRow nameRow(long id, String name, String station) {
+        return new UCSBDiningCommonsMenuItemRepository.NameRow() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public String getStation() {
+                return station;
+            }
+        };
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_menu_grouped_by_station() throws Exception {
+        UCSBDiningCommonsMenuItem soup = UCSBDiningCommonsMenuItem.builder().Id(3L).diningCommonsCode("ortega").name("Soup").station(null).build();
+        UCSBDiningCommonsMenuItem pizza = UCSBDiningCommonsMenuItem.builder().Id(1L).diningCommonsCode("ortega").name("Pizza").station("PizzaStation").build();
+        UCSBDiningCommonsMenuItem calzone = UCSBDiningCommonsMenuItem.builder().Id(2L).diningCommonsCode("ortega").name("Calzone").station("PizzaStation").build();
+        when(ucsbDiningCommonsMenuItemRepository.findMenu("ortega")).thenReturn(List.of(soup, calzone, pizza));
+
+        MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega&namesOnly=false"))
+            .andExpect(status().isOk()).andReturn();
+
+        Map<String, List<UCSBDiningCommonsMenuItem>> expected = new LinkedHashMap<>();
+        expected.put("", List.of(soup));
+        expected.put("PizzaStation", List.of(calzone, pizza));
+        verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAll();
+        verify(ucsbDiningCommonsMenuItemRepository, times(0)).findMenuNames(any());
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_the_menu_of_one_station() throws Exception {
+        UCSBDiningCommonsMenuItem pizza = UCSBDiningCommonsMenuItem.builder().Id(1L).diningCommonsCode("ortega").name("Pizza").station("PizzaStation").build();
+        when(ucsbDiningCommonsMenuItemRepository.findMenuAtStation("ortega", "PizzaStation")).thenReturn(List.of(pizza));
+
+        MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega&station=PizzaStation"))
+            .andExpect(status().isOk()).andReturn();
+
+        verify(ucsbDiningCommonsMenuItemRepository, times(0)).findMenu(any());
+        assertEquals(mapper.writeValueAsString(Map.of("PizzaStation", List.of(pizza))), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_names_of_one_station() throws Exception {
+        when(ucsbDiningCommonsMenuItemRepository.findMenuNamesAtStation("ortega", "PizzaStation"))
+            .thenReturn(List.of(nameRow(2L, "Calzone", "PizzaStation"), nameRow(1L, "Pizza", "PizzaStation")));
+
+        MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega&station=PizzaStation&namesOnly=true"))
+            .andExpect(status().isOk()).andReturn();
+
+        Map<String, List<MenuItemName>> expected = Map.of("PizzaStation", List.of(new MenuItemName(2L, "Calzone"), new MenuItemName(1L, "Pizza")));
+        verify(ucsbDiningCommonsMenuItemRepository, times(0)).findMenuAtStation(any(), any());
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_names_of_every_station() throws Exception {
+        when(ucsbDiningCommonsMenuItemRepository.findMenuNames("ortega"))
+            .thenReturn(List.of(nameRow(3L, "Soup", null), nameRow(1L, "Pizza", "PizzaStation")));
+
+        MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenuitem/menu?diningCommonsCode=ortega&namesOnly=true"))
+            .andExpect(status().isOk()).andReturn();
+
+        Map<String, List<MenuItemName>> expected = new LinkedHashMap<>();
+        expected.put("", List.of(new MenuItemName(3L, "Soup")));
+        expected.put("PizzaStation", List.of(new MenuItemName(1L, "Pizza")));
+        assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+    }
 }
\ No newline at end of file
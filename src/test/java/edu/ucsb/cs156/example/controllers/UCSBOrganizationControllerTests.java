@@ -8,10 +8,16 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.CacheStats;
+import edu.ucsb.cs156.example.models.OrganizationBatch;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.UCSBOrganizationCacheService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -44,6 +50,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
     @MockBean
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @MockBean
+    UCSBOrganizationCacheService ucsbOrganizationCacheService;
+
     @MockBean
     UserRepository userRepository;
 
@@ -125,7 +134,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
                 .inactive(true)
                 .build();
 
-        when(ucsbOrganizationRepository.findById(eq("1"))).thenReturn(Optional.of(obj));
+        when(ucsbOrganizationCacheService.get(eq("1"))).thenReturn(Optional.of(obj));
 
         // act
         MvcResult response = mockMvc.perform(get("/api/UCSBOrganization?orgCode=1"))
@@ -133,7 +142,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
 
-        verify(ucsbOrganizationRepository, times(1)).findById(eq("1"));
+        verify(ucsbOrganizationCacheService, times(1)).get(eq("1"));
         String expectedJson = mapper.writeValueAsString(obj);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedJson, responseString);
@@ -149,7 +158,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
     public void test_that_logged_in_user_can_get_by_id_when_the_id_does_not_exist() throws Exception {
 
         // arrange
-        when(ucsbOrganizationRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+        when(ucsbOrganizationCacheService.get(eq("munger-hall"))).thenReturn(Optional.empty());
 
         // act
         MvcResult response = mockMvc.perform(get("/api/UCSBOrganization?orgCode=munger-hall"))
@@ -157,7 +166,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
 
-        verify(ucsbOrganizationRepository, times(1)).findById(eq("munger-hall"));
+        verify(ucsbOrganizationCacheService, times(1)).get(eq("munger-hall"));
         Map<String, Object> json = responseToJson(response);
         assertEquals("EntityNotFoundException", json.get("type"));
         assertEquals("UCSBOrganization with id munger-hall not found", json.get("message"));
@@ -189,7 +198,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
         ArrayList<UCSBOrganization> expectedOrg = new ArrayList<>();
         expectedOrg.addAll(Arrays.asList(obj1, obj2));
 
-        when(ucsbOrganizationRepository.findAll()).thenReturn(expectedOrg);
+        when(ucsbOrganizationCacheService.allJson()).thenReturn(mapper.writeValueAsBytes(expectedOrg));
 
         // act
         MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/all"))
@@ -197,7 +206,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
 
-        verify(ucsbOrganizationRepository, times(1)).findAll();
+        verify(ucsbOrganizationCacheService, times(1)).allJson();
+        verify(ucsbOrganizationRepository, times(0)).findAll();
         String expectedJson = mapper.writeValueAsString(expectedOrg);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedJson, responseString);
@@ -227,6 +237,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
         verify(ucsbOrganizationRepository, times(1)).save(obj3);
+        verify(ucsbOrganizationCacheService, times(1)).put(obj3);
         String expectedJson = mapper.writeValueAsString(obj3);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(expectedJson, responseString);
@@ -258,6 +269,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
         // assert
         verify(ucsbOrganizationRepository, times(1)).findById("1");
         verify(ucsbOrganizationRepository, times(1)).delete(any());
+        verify(ucsbOrganizationCacheService, times(1)).evict("1");
 
         Map<String, Object> json = responseToJson(response);
         assertEquals("record 1 deleted", json.get("message"));
@@ -283,6 +295,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
         verify(ucsbOrganizationRepository, times(1)).findById("munger-hall");
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBOrganization with id munger-hall not found", json.get("message"));
+        verify(ucsbOrganizationCacheService, times(0)).evict(any());
     }
 
 
@@ -322,6 +335,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
         // assert
         verify(ucsbOrganizationRepository, times(1)).findById("1");
         verify(ucsbOrganizationRepository, times(1)).save(obj2); // should be saved with updated info
+        verify(ucsbOrganizationCacheService, times(1)).put(obj2);
         String responseString = response.getResponse().getContentAsString();
         assertEquals(requestBody, responseString);
     }
@@ -357,9 +371,119 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase{
 
         // assert
         verify(ucsbOrganizationRepository, times(1)).findById("5");
+        verify(ucsbOrganizationCacheService, times(0)).put(any());
         Map<String, Object> json = responseToJson(response);
         assertEquals("UCSBOrganization with id 5 not found", json.get("message"));
 
     }
 
+    // Tests for /api/UCSBOrganization/cache/stats
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void regular_users_cannot_get_cache_stats() throws Exception {
+        mockMvc.perform(get("/api/UCSBOrganization/cache/stats"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "ADMIN", "USER" })
+    @Test
+    public void admin_can_get_cache_stats() throws Exception {
+        // arrange
+        CacheStats stats = CacheStats.builder().hits(5).misses(2).evictions(1).invalidations(3).size(4).maxEntries(1000).build();
+        when(ucsbOrganizationCacheService.stats()).thenReturn(stats);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/cache/stats"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_only_active_or_inactive_organizations() throws Exception {
+        // arrange
+        when(ucsbOrganizationCacheService.partitionJson(false)).thenReturn("[{\"orgCode\":\"ZPR\"}]".getBytes());
+        when(ucsbOrganizationCacheService.partitionJson(true)).thenReturn("[{\"orgCode\":\"SKY\"}]".getBytes());
+
+        // act
+        MvcResult active = mockMvc.perform(get("/api/UCSBOrganization/all?active=true"))
+                .andExpect(status().isOk()).andReturn();
+        MvcResult inactive = mockMvc.perform(get("/api/UCSBOrganization/all?active=false"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals("[{\"orgCode\":\"ZPR\"}]", active.getResponse().getContentAsString());
+        assertEquals("[{\"orgCode\":\"SKY\"}]", inactive.getResponse().getContentAsString());
+        verify(ucsbOrganizationCacheService, times(0)).allJson();
+    }
+
+    // Tests for /api/UCSBOrganization/batch
+
+    @Test
+    public void logged_out_users_cannot_get_a_batch() throws Exception {
+        mockMvc.perform(get("/api/UCSBOrganization/batch?orgCodes=ZPR"))
+                .andExpect(status().is(403));
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_get_a_batch_by_query_string() throws Exception {
+        // arrange
+        UCSBOrganization zpr = UCSBOrganization.builder()
+                .orgCode("ZPR")
+                .orgTranslationShort("Zeta Phi Rho")
+                .orgTranslation("Zeta Phi Rho")
+                .inactive(false)
+                .build();
+        LinkedHashMap<String, UCSBOrganization> found = new LinkedHashMap<>();
+        found.put("ZPR", zpr);
+        OrganizationBatch batch = OrganizationBatch.builder().organizations(found).missing(List.of("NONE")).build();
+        when(ucsbOrganizationCacheService.getAll(List.of("NONE", "ZPR"))).thenReturn(batch);
+
+        // act
+        MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/batch?orgCodes=NONE, ZPR,"))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        verify(ucsbOrganizationCacheService, times(1)).getAll(List.of("NONE", "ZPR"));
+        assertEquals(mapper.writeValueAsString(batch), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void logged_in_user_can_post_a_batch_of_codes() throws Exception {
+        // arrange
+        OrganizationBatch batch = OrganizationBatch.builder().organizations(new LinkedHashMap<>()).missing(List.of("A", "B")).build();
+        when(ucsbOrganizationCacheService.getAll(List.of("A", "B"))).thenReturn(batch);
+
+        // act
+        MvcResult response = mockMvc.perform(
+                        post("/api/UCSBOrganization/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[\"A\", null, \" \", \" B \"]")
+                                .with(csrf()))
+                .andExpect(status().isOk()).andReturn();
+
+        // assert
+        assertEquals(mapper.writeValueAsString(batch), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void batches_over_the_limit_are_rejected() throws Exception {
+        String tooMany = mapper.writeValueAsString(Collections.nCopies(UCSBOrganizationController.MAX_BATCH + 1, "ZPR"));
+
+        mockMvc.perform(
+                        post("/api/UCSBOrganization/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(tooMany)
+                                .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+        verify(ucsbOrganizationCacheService, times(0)).getAll(any());
+    }
+
 }
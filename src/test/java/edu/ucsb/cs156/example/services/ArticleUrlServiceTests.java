@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+class ArticleUrlServiceTests {
+
+  ArticleUrlService urlService;
+
+  @BeforeEach
+  void setup() {
+    urlService = new ArticleUrlService();
+    urlService.articlesRepository = mock(ArticlesRepository.class);
+  }
+
+  @Test
+  void canonicalize_removes_differences_that_do_not_change_the_page() {
+    String canonical = "https://example.com/news/story?a=1&b=2";
+    assertEquals(canonical, ArticleUrlService.canonicalize("  HTTPS://Example.COM:443/news/story/?b=2&utm_source=x&a=1#comments "));
+    assertEquals(canonical, ArticleUrlService.canonicalize("https://example.com/news/story?a=1&fbclid=abc&&b=2"));
+    assertEquals("http://example.com", ArticleUrlService.canonicalize("example.com/"));
+    assertEquals("http://example.com", ArticleUrlService.canonicalize("http://example.com:80"));
+    assertEquals("http://example.com/a", ArticleUrlService.canonicalize("http://example.com/a?utm_medium=email&gclid"));
+  }
+
+  @Test
+  void canonicalize_keeps_what_matters() {
+    assertEquals("http://user@example.com:8080/Path", ArticleUrlService.canonicalize("http://user@example.com:8080/Path"));
+    assertEquals("https://example.com:80", ArticleUrlService.canonicalize("https://example.com:80"));
+    assertEquals("http://example.com:443", ArticleUrlService.canonicalize("http://example.com:443"));
+    assertNotEquals(ArticleUrlService.hash("http://example.com/a"), ArticleUrlService.hash("https://example.com/a"));
+  }
+
+  @Test
+  void canonicalize_leaves_unparseable_urls_trimmed() {
+    assertEquals("", ArticleUrlService.canonicalize(null));
+    assertEquals("not a url", ArticleUrlService.canonicalize(" not a url "));
+    assertEquals("file:///tmp/x", ArticleUrlService.canonicalize("file:///tmp/x"));
+    // registry based authority: the underscore means there is no host
+    assertEquals("http://exa_mple.com/a/", ArticleUrlService.canonicalize("http://exa_mple.com/a/"));
+  }
+
+  @Test
+  void hash_is_hex_sha256_of_the_canonical_url() {
+    assertEquals(ArticleUrlService.hash("https://example.com"), ArticleUrlService.hash("HTTPS://EXAMPLE.COM/"));
+    // sha256("http://example.com")
+    assertEquals("f0e6a6a97042a4f1f1c87f5f7d44315b2d852c2df5c7991cc66241bf7072d1c4",
+        ArticleUrlService.hash("example.com"));
+  }
+
+  @Test
+  void lockFor_is_shared_by_urls_with_the_same_canonical_form() {
+    assertSame(ArticleUrlService.lockFor("https://example.com/a?utm_source=x"), ArticleUrlService.lockFor("HTTPS://example.com/a/"));
+  }
+
+  @Test
+  void hexDigest_of_an_unknown_algorithm_throws() {
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+        () -> ArticleUrlService.hexDigest("NO-SUCH-DIGEST", "x"));
+    assertEquals("NO-SUCH-DIGEST is not available", e.getMessage());
+  }
+
+  @Test
+  void findByUrl_probes_the_hash_and_filters_collisions() {
+    Articles newer = Articles.builder().Id(5L).url("https://example.com/a/").build();
+    Articles older = Articles.builder().Id(2L).url("https://EXAMPLE.com/a").build();
+    Articles collision = Articles.builder().Id(1L).url("https://example.com/b").build();
+    when(urlService.articlesRepository.findAllByUrlHash(ArticleUrlService.hash("https://example.com/a")))
+        .thenReturn(List.of(newer, collision, older));
+
+    assertEquals(List.of(older, newer), urlService.findByUrl("https://example.com/a#top"));
+  }
+
+  @Test
+  void backfill_hashes_articles_saved_without_a_hash() {
+    Articles article = Articles.builder().Id(1L).url("example.com/a/").build();
+    when(urlService.articlesRepository.findAllByUrlHashIsNull()).thenReturn(List.of(article));
+
+    urlService.backfill();
+
+    assertEquals(ArticleUrlService.hash("http://example.com/a"), article.getUrlHash());
+    verify(urlService.articlesRepository, times(1)).saveAll(List.of(article));
+  }
+
+  @Test
+  void backfill_with_nothing_to_do_saves_nothing() {
+    when(urlService.articlesRepository.findAllByUrlHashIsNull()).thenReturn(List.of());
+
+    urlService.backfill();
+
+    verify(urlService.articlesRepository, times(0)).saveAll(List.of());
+  }
+}
@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+class ArticlesAtomFeedServiceTests {
+
+  ArticlesAtomFeedService atomFeedService;
+
+  Articles article = Articles.builder()
+      .Id(7L)
+      .title("Tom & Jerry <3")
+      .url("https://example.com/a?x=1&y=2")
+      .explanation("why")
+      .email("cgaucho@ucsb.edu")
+      .dateAdded(LocalDateTime.parse("2022-01-03T08:30:00"))
+      .build();
+
+  @BeforeEach
+  void setup() {
+    atomFeedService = new ArticlesAtomFeedService();
+    atomFeedService.articlesRepository = mock(ArticlesRepository.class);
+    atomFeedService.size = 2;
+    ArticlesFeedService.Cursor start = ArticlesFeedService.START;
+    when(atomFeedService.articlesRepository.findFeedAfter(start.dateAdded(), start.id(), PageRequest.of(0, 2)))
+        .thenReturn(List.of(article));
+  }
+
+  @Test
+  void feed_is_rendered_once_and_served_from_memory() throws Exception {
+    ArticlesAtomFeedService.Rendered first = atomFeedService.current();
+    ArticlesAtomFeedService.Rendered second = atomFeedService.current();
+
+    assertSame(first, second);
+    verify(atomFeedService.articlesRepository, times(1)).findFeedAfter(any(), anyLong(), any());
+
+    String xml = new String(first.xml(), StandardCharsets.UTF_8);
+    assertTrue(xml.contains("<feed xmlns=\"http://www.w3.org/2005/Atom\">"));
+    assertTrue(xml.contains("<updated>2022-01-03T08:30:00Z</updated><entry><id>urn:ucsb-cs156:articles:7</id>"));
+    assertTrue(xml.contains("<title>Tom &amp; Jerry &lt;3</title>"));
+    assertTrue(xml.contains("<link href=\"https://example.com/a?x=1&amp;y=2\"/>"));
+    assertTrue(xml.contains("<author><email>cgaucho@ucsb.edu</email><name>cgaucho@ucsb.edu</name></author><summary>why</summary></entry>"));
+
+    byte[] gunzipped = new GZIPInputStream(new ByteArrayInputStream(first.gzipped())).readAllBytes();
+    assertArrayEquals(first.xml(), gunzipped);
+    assertEquals(first.etag().substring(0, first.etag().length() - 1) + "-gz\"", first.gzipEtag());
+  }
+
+  @Test
+  void invalidate_causes_a_new_render_with_a_new_etag() {
+    ArticlesAtomFeedService.Rendered before = atomFeedService.current();
+
+    atomFeedService.invalidate();
+    ArticlesAtomFeedService.Rendered after = atomFeedService.current();
+
+    verify(atomFeedService.articlesRepository, times(2)).findFeedAfter(any(), anyLong(), any());
+    assertNotEquals(before.etag(), after.etag());
+    assertTrue(after.lastModified() > before.lastModified());
+  }
+
+  @Test
+  void empty_feed_and_missing_fields_still_render() {
+    String empty = new String(ArticlesAtomFeedService.toAtom(List.of()), StandardCharsets.UTF_8);
+    assertTrue(empty.contains("<title>Articles</title><updated>1970-01-01T00:00:00Z</updated></feed>"));
+
+    Articles bare = Articles.builder().Id(1L).build();
+    String xml = new String(ArticlesAtomFeedService.toAtom(List.of(bare)), StandardCharsets.UTF_8);
+    assertTrue(xml.contains("<entry><id>urn:ucsb-cs156:articles:1</id><title></title><updated>1970-01-01T00:00:00Z</updated><summary></summary></entry>"));
+  }
+
+  @Test
+  void concurrent_first_requests_render_once() throws Exception {
+    List<ArticlesAtomFeedService.Rendered> results = new CopyOnWriteArrayList<>();
+    Thread first = new Thread(() -> results.add(atomFeedService.current()));
+    Thread second = new Thread(() -> results.add(atomFeedService.current()));
+
+    // both find no feed and wait for the lock; whichever gets it second
+    // must use the feed the other one rendered
+    synchronized (atomFeedService) {
+      first.start();
+      second.start();
+      while (first.getState() != Thread.State.BLOCKED || second.getState() != Thread.State.BLOCKED) {
+        Thread.onSpinWait();
+      }
+    }
+    first.join();
+    second.join();
+
+    assertEquals(2, results.size());
+    assertSame(results.get(0), results.get(1));
+    verify(atomFeedService.articlesRepository, times(1)).findFeedAfter(any(), anyLong(), any());
+  }
+
+  @Test
+  void write_failures_are_reported() {
+    OutputStream broken = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("disk full");
+      }
+    };
+
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+        () -> ArticlesAtomFeedService.writeAtom(List.of(article), broken));
+    assertEquals("could not render atom feed", e.getMessage());
+
+    UncheckedIOException gzipFailure = assertThrows(UncheckedIOException.class,
+        () -> ArticlesAtomFeedService.gzip(new byte[] { 1, 2, 3 }, broken));
+    assertEquals("disk full", gzipFailure.getCause().getMessage());
+  }
+}
@@ -0,0 +1,119 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.models.ArticlesFeedPage;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+
+class ArticlesFeedServiceTests {
+
+  ArticlesFeedService feedService;
+
+  LocalDateTime jan3 = LocalDateTime.parse("2022-01-03T00:00:00");
+  Articles a3 = article(3L, jan3);
+  Articles a2 = article(2L, jan3);
+  Articles a1 = article(1L, LocalDateTime.parse("2022-01-02T00:00:00"));
+
+  private static Articles article(long id, LocalDateTime dateAdded) {
+    return Articles.builder().Id(id).title("t" + id).dateAdded(dateAdded).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    feedService = new ArticlesFeedService();
+    feedService.articlesRepository = mock(ArticlesRepository.class);
+    feedService.mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    feedService.entityManager = mock(EntityManager.class);
+  }
+
+  @Test
+  void page_fetches_one_extra_row_to_find_the_next_cursor() {
+    ArticlesFeedService.Cursor start = ArticlesFeedService.START;
+    when(feedService.articlesRepository.findFeedAfter(start.dateAdded(), start.id(), PageRequest.of(0, 3)))
+        .thenReturn(List.of(a3, a2, a1));
+
+    ArticlesFeedPage page = feedService.page(start, 2);
+
+    assertEquals(List.of(a3, a2), page.getArticles());
+    assertEquals(new ArticlesFeedService.Cursor(jan3, 2L), ArticlesFeedService.decodeCursor(page.getNextCursor()));
+  }
+
+  @Test
+  void last_page_has_no_next_cursor() {
+    ArticlesFeedService.Cursor after = new ArticlesFeedService.Cursor(jan3, 2L);
+    when(feedService.articlesRepository.findFeedAfter(jan3, 2L, PageRequest.of(0, 3)))
+        .thenReturn(List.of(a1));
+
+    ArticlesFeedPage page = feedService.page(after, 2);
+
+    assertEquals(List.of(a1), page.getArticles());
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  void writeNdjson_writes_one_line_per_article_and_detaches_it() throws Exception {
+    when(feedService.articlesRepository.streamFeedAfter(jan3, 3L)).thenReturn(Stream.of(a2, a1));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    feedService.writeNdjson(new ArticlesFeedService.Cursor(jan3, 3L), null, out);
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(2, lines.length);
+    assertEquals(a2, feedService.mapper.readValue(lines[0], Articles.class));
+    assertEquals(a1, feedService.mapper.readValue(lines[1], Articles.class));
+    verify(feedService.entityManager, times(1)).detach(a2);
+    verify(feedService.entityManager, times(1)).detach(a1);
+  }
+
+  @Test
+  void writeNdjson_stops_at_the_limit() throws Exception {
+    ArticlesFeedService.Cursor start = ArticlesFeedService.START;
+    when(feedService.articlesRepository.streamFeedAfter(start.dateAdded(), start.id())).thenReturn(Stream.of(a3, a2, a1));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    feedService.writeNdjson(start, 1, out);
+
+    assertEquals(1, out.toString(StandardCharsets.UTF_8).split("\n").length);
+  }
+
+  @Test
+  void cursors_round_trip_and_are_url_safe() {
+    ArticlesFeedService.Cursor cursor = new ArticlesFeedService.Cursor(LocalDateTime.parse("2022-01-03T04:05:06.789"), 42L);
+    String token = ArticlesFeedService.encodeCursor(cursor);
+
+    assertEquals(true, token.matches("[A-Za-z0-9_-]+"));
+    assertEquals(cursor, ArticlesFeedService.decodeCursor(token));
+    assertEquals(ArticlesFeedService.START, ArticlesFeedService.decodeCursor(null));
+    assertEquals(ArticlesFeedService.START, ArticlesFeedService.decodeCursor(""));
+  }
+
+  @Test
+  void malformed_cursors_are_rejected() {
+    for (String token : List.of("!!!", "bm8tYmFy", "MjAyMi0wMS0wM3x4", "eHwx")) {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ArticlesFeedService.decodeCursor(token));
+      assertEquals("invalid cursor '%s'".formatted(token), e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,327 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+
+class HelpRequestStreamServiceTests {
+
+  // records what would have been written to the connection
+  static class RecordingEmitter extends SseEmitter {
+    final List<String> events = new ArrayList<>();
+    boolean completed;
+    Runnable completionCallback;
+    Runnable timeoutCallback;
+    Consumer<Throwable> errorCallback;
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (completed) {
+        throw new IllegalStateException("already completed");
+      }
+      events.add(builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining()).trim());
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+
+    @Override
+    public void onCompletion(Runnable callback) {
+      completionCallback = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+      timeoutCallback = callback;
+    }
+
+    @Override
+    public void onError(Consumer<Throwable> callback) {
+      errorCallback = callback;
+    }
+  }
+
+  HelpRequestStreamService streamService;
+  List<Runnable> pending = new ArrayList<>();
+
+  HelpRequest request = HelpRequest.builder()
+      .id(1L)
+      .title("help")
+      .requester("someuser")
+      .requestBody("body")
+      .requestDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+      .build();
+
+  @BeforeEach
+  void setup() {
+    streamService = new HelpRequestStreamService();
+    streamService.mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    streamService.bufferSize = 3;
+    streamService.replaySize = 4;
+    streamService.executor = Runnable::run;
+  }
+
+  private String event(long sequence, String name, String json) {
+    return "id:%s\nevent:%s\ndata:%s".formatted(streamService.eventId(sequence), name, json);
+  }
+
+  @Test
+  void events_are_sent_to_every_subscriber() throws Exception {
+    RecordingEmitter first = new RecordingEmitter();
+    RecordingEmitter second = new RecordingEmitter();
+    streamService.subscribe(null, first);
+    streamService.subscribe(null, second);
+
+    streamService.publish("created", request);
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+
+    List<String> expected = List.of(
+        event(1, "created", streamService.mapper.writeValueAsString(request)),
+        event(2, "deleted", "{\"id\":1}"));
+    assertEquals(expected, first.events);
+    assertEquals(expected, second.events);
+    assertEquals(2, streamService.subscriberCount());
+  }
+
+  @Test
+  void slow_subscriber_is_dropped_with_a_resync_and_others_keep_going() {
+    Executor queued = pending::add;
+    streamService.executor = queued;
+    RecordingEmitter slow = new RecordingEmitter();
+    streamService.subscribe(null, slow);
+
+    for (int i = 0; i < 4; i++) {
+      streamService.publish("deleted", HelpRequestStreamService.deleted(i));
+    }
+    assertEquals(0, streamService.subscriberCount());
+
+    streamService.executor = Runnable::run;
+    RecordingEmitter fast = new RecordingEmitter();
+    streamService.subscribe(null, fast);
+    streamService.publish("deleted", HelpRequestStreamService.deleted(9L));
+    pending.forEach(Runnable::run);
+
+    assertEquals(List.of(event(4, "resync", "{\"reason\":\"more than 3 events behind\"}")), slow.events);
+    assertTrue(slow.completed);
+    assertEquals(List.of(event(5, "deleted", "{\"id\":9}")), fast.events);
+  }
+
+  @Test
+  void reconnecting_with_last_event_id_replays_missed_events() {
+    for (int i = 1; i <= 3; i++) {
+      streamService.publish("deleted", HelpRequestStreamService.deleted(i));
+    }
+
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(1), emitter);
+    streamService.publish("deleted", HelpRequestStreamService.deleted(4L));
+
+    assertEquals(List.of(
+        event(2, "deleted", "{\"id\":2}"),
+        event(3, "deleted", "{\"id\":3}"),
+        event(4, "deleted", "{\"id\":4}")), emitter.events);
+  }
+
+  @Test
+  void last_event_id_of_the_newest_event_replays_nothing() {
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(1), emitter);
+
+    assertEquals(List.of(), emitter.events);
+    assertEquals(1, streamService.subscriberCount());
+  }
+
+  @Test
+  void last_event_id_older_than_the_ring_or_from_another_start_gets_a_resync() {
+    for (int i = 1; i <= 6; i++) {
+      streamService.publish("deleted", HelpRequestStreamService.deleted(i));
+    }
+
+    RecordingEmitter old = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(1), old);
+    RecordingEmitter restarted = new RecordingEmitter();
+    streamService.subscribe("12-3", restarted);
+
+    String reason = " is not in the last 4 events";
+    assertEquals(List.of(event(6, "resync", "{\"reason\":\"%s%s\"}".formatted(streamService.eventId(1), reason))), old.events);
+    assertEquals(List.of(event(6, "resync", "{\"reason\":\"12-3%s\"}".formatted(reason))), restarted.events);
+    // a resync is not a drop: they stay subscribed
+    assertEquals(2, streamService.subscriberCount());
+  }
+
+  @Test
+  void subscriber_is_removed_when_its_connection_fails() {
+    RecordingEmitter closed = new RecordingEmitter();
+    closed.completed = true;
+    streamService.subscribe(null, closed);
+
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+
+    assertEquals(0, streamService.subscriberCount());
+  }
+
+  @Test
+  void subscriber_is_removed_when_its_connection_closes_times_out_or_fails() {
+    RecordingEmitter closed = new RecordingEmitter();
+    RecordingEmitter timedOut = new RecordingEmitter();
+    RecordingEmitter failed = new RecordingEmitter();
+    streamService.subscribe(null, closed);
+    streamService.subscribe(null, timedOut);
+    streamService.subscribe(null, failed);
+    assertEquals(3, streamService.subscriberCount());
+
+    closed.completionCallback.run();
+    timedOut.timeoutCallback.run();
+    failed.errorCallback.accept(new IOException("connection reset"));
+
+    assertEquals(0, streamService.subscriberCount());
+  }
+
+  @Test
+  void subscriber_whose_replay_fails_is_not_registered() {
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+    RecordingEmitter closed = new RecordingEmitter();
+    closed.completed = true;
+
+    streamService.subscribe(streamService.eventId(0), closed);
+
+    assertEquals(0, streamService.subscriberCount());
+  }
+
+  @Test
+  void last_event_id_further_back_than_the_buffer_gets_a_resync_instead_of_a_replay() {
+    for (int i = 1; i <= 4; i++) {
+      streamService.publish("deleted", HelpRequestStreamService.deleted(i));
+    }
+
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(0), emitter);
+    streamService.publish("deleted", HelpRequestStreamService.deleted(5L));
+
+    assertEquals(List.of(
+        event(4, "resync", "{\"reason\":\"%s is more than 3 events behind\"}".formatted(streamService.eventId(0))),
+        event(5, "deleted", "{\"id\":5}")), emitter.events);
+    assertEquals(1, streamService.subscriberCount());
+  }
+
+  @Test
+  void last_event_id_that_is_not_a_number_or_not_sent_yet_gets_a_resync() {
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+
+    RecordingEmitter garbled = new RecordingEmitter();
+    String garbledId = streamService.eventId(1) + "x";
+    streamService.subscribe(garbledId, garbled);
+    RecordingEmitter ahead = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(2), ahead);
+
+    assertEquals(List.of(event(1, "resync", "{\"reason\":\"%s is not in the last 4 events\"}".formatted(garbledId))), garbled.events);
+    assertEquals(List.of(event(1, "resync", "{\"reason\":\"%s is not in the last 4 events\"}".formatted(streamService.eventId(2)))), ahead.events);
+  }
+
+  @Test
+  void last_event_id_before_any_event_replays_nothing() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(streamService.eventId(0), emitter);
+
+    assertEquals(List.of(), emitter.events);
+    assertEquals(1, streamService.subscriberCount());
+  }
+
+  @Test
+  void event_published_while_sending_is_sent_by_the_same_drain() {
+    RecordingEmitter emitter = new RecordingEmitter() {
+      @Override
+      public void send(SseEventBuilder builder) throws IOException {
+        super.send(builder);
+        if (events.size() == 1) {
+          streamService.publish("deleted", HelpRequestStreamService.deleted(2L));
+        }
+      }
+    };
+    streamService.subscribe(null, emitter);
+
+    streamService.publish("deleted", HelpRequestStreamService.deleted(1L));
+
+    assertEquals(List.of(
+        event(1, "deleted", "{\"id\":1}"),
+        event(2, "deleted", "{\"id\":2}")), emitter.events);
+  }
+
+  @Test
+  void payload_that_can_not_be_serialized_is_not_published() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(null, emitter);
+
+    IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> streamService.publish("created", new Object()));
+
+    assertEquals("could not serialize created event", thrown.getMessage());
+    assertEquals(List.of(), emitter.events);
+  }
+
+  @Test
+  void subscribe_uses_the_configured_timeout() {
+    streamService.timeoutMillis = 1234;
+
+    SseEmitter emitter = streamService.subscribe(" ");
+
+    assertEquals(1234L, emitter.getTimeout());
+    assertEquals(1, streamService.subscriberCount());
+  }
+
+  @Test
+  void init_sends_on_daemon_threads_and_shutdown_closes_every_subscriber() throws Exception {
+    streamService.senderThreads = 2;
+    streamService.init();
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(null, emitter);
+
+    CompletableFuture<Thread> sender = new CompletableFuture<>();
+    streamService.executor.execute(() -> sender.complete(Thread.currentThread()));
+    Thread thread = sender.get(5, TimeUnit.SECONDS);
+    assertTrue(thread.isDaemon());
+    assertEquals("helprequest-stream", thread.getName());
+
+    streamService.shutdown();
+
+    assertTrue(emitter.completed);
+    assertEquals(0, streamService.subscriberCount());
+    assertTrue(((ExecutorService) streamService.executor).isShutdown());
+  }
+
+  @Test
+  void shutdown_without_a_sender_pool_closes_every_subscriber() {
+    RecordingEmitter emitter = new RecordingEmitter();
+    streamService.subscribe(null, emitter);
+
+    streamService.shutdown();
+
+    assertTrue(emitter.completed);
+    assertEquals(0, streamService.subscriberCount());
+  }
+}
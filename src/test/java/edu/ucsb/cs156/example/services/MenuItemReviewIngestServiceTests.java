@@ -0,0 +1,225 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewIngestMetrics;
+
+class MenuItemReviewIngestServiceTests {
+
+  MenuItemReviewIngestService ingestService;
+  List<List<Object[]>> inserts = new ArrayList<>();
+
+  private static MenuItemReview review(long itemId, int stars) {
+    return MenuItemReview.builder()
+        .itemId(itemId)
+        .reviewerEmail("cgaucho@ucsb.edu")
+        .stars(stars)
+        .dateReviewed(LocalDateTime.parse("2022-01-03T12:00:00"))
+        .comments("ok")
+        .build();
+  }
+
+  @BeforeEach
+  void setup() {
+    ingestService = new MenuItemReviewIngestService();
+    ingestService.jdbcTemplate = mock(JdbcTemplate.class);
+    ingestService.transactionManager = mock(PlatformTransactionManager.class);
+    ingestService.menuItemReviewStatsService = mock(MenuItemReviewStatsService.class);
+    ingestService.menuItemReviewTopService = mock(MenuItemReviewTopService.class);
+    ingestService.ucsbDiningCommonsSnapshotService = mock(UCSBDiningCommonsSnapshotService.class);
+    ingestService.capacity = 3;
+    ingestService.batchSize = 2;
+    ingestService.open();
+    when(ingestService.jdbcTemplate.batchUpdate(eq(MenuItemReviewIngestService.INSERT_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          inserts.add(rows);
+          return new int[rows.size()];
+        });
+  }
+
+  @Test
+  void queued_reviews_are_written_in_batches() {
+    String first = ingestService.submit(review(1, 5)).get();
+    ingestService.submit(review(2, 4));
+    ingestService.submit(review(3, 3));
+    assertEquals(MenuItemReviewIngestService.QUEUED, ingestService.status(first).getStatus());
+
+    assertEquals(2, ingestService.flush());
+    assertEquals(1, ingestService.flush());
+    assertEquals(0, ingestService.flush());
+
+    assertEquals(2, inserts.size());
+    assertEquals(List.of(1L, "cgaucho@ucsb.edu", 5, Timestamp.valueOf("2022-01-03 12:00:00"), "ok"),
+        List.of(inserts.get(0).get(0)));
+    assertEquals(MenuItemReviewIngestService.WRITTEN, ingestService.status(first).getStatus());
+    verify(ingestService.menuItemReviewStatsService, times(1)).add(1L, 5);
+    verify(ingestService.menuItemReviewStatsService, times(1)).add(3L, 3);
+    verify(ingestService.menuItemReviewTopService, times(2)).invalidate();
+    verify(ingestService.ucsbDiningCommonsSnapshotService, times(1)).invalidateItem(2L);
+  }
+
+  @Test
+  void a_full_queue_rejects_reviews() {
+    for (int i = 0; i < 3; i++) {
+      assertEquals(true, ingestService.submit(review(i, 1)).isPresent());
+    }
+
+    assertEquals(Optional.empty(), ingestService.submit(review(4, 1)));
+
+    ReviewIngestMetrics metrics = ingestService.metrics();
+    assertEquals(3, metrics.getAsyncAccepted());
+    assertEquals(1, metrics.getAsyncRejected());
+    assertEquals(3, metrics.getQueueDepth());
+  }
+
+  @Test
+  void a_failed_batch_is_retried_row_by_row() {
+    String good = ingestService.submit(review(1, 5)).get();
+    String bad = ingestService.submit(review(2, 9)).get();
+    when(ingestService.jdbcTemplate.batchUpdate(eq(MenuItemReviewIngestService.INSERT_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          if (rows.stream().anyMatch(row -> row[0].equals(2L))) {
+            throw new IllegalStateException("constraint violated");
+          }
+          inserts.add(rows);
+          return new int[rows.size()];
+        });
+
+    ingestService.flush();
+
+    assertEquals(MenuItemReviewIngestService.WRITTEN, ingestService.status(good).getStatus());
+    assertEquals(MenuItemReviewIngestService.FAILED, ingestService.status(bad).getStatus());
+    verify(ingestService.menuItemReviewStatsService, times(1)).add(1L, 5);
+    verify(ingestService.menuItemReviewStatsService, never()).add(2L, 9);
+    assertEquals(1, ingestService.metrics().getAsyncWritten());
+    assertEquals(1, ingestService.metrics().getAsyncFailed());
+  }
+
+  @Test
+  void shutdown_flushes_the_queue_and_stops_accepting() throws Exception {
+    ingestService.submit(review(1, 5));
+    ingestService.submit(review(2, 4));
+    ingestService.submit(review(3, 3));
+
+    ingestService.shutdown();
+
+    assertEquals(2, inserts.size());
+    assertEquals(0, ingestService.metrics().getQueueDepth());
+    assertEquals(Optional.empty(), ingestService.submit(review(4, 1)));
+  }
+
+  @Test
+  void unknown_tracking_ids() {
+    assertEquals(MenuItemReviewIngestService.UNKNOWN, ingestService.status("nope").getStatus());
+  }
+
+  @Test
+  void metrics_compare_both_paths() {
+    ingestService.recordSync(2_000_000);
+    ingestService.recordSync(4_000_000);
+    ingestService.submit(review(1, 5));
+    ingestService.flush();
+
+    ReviewIngestMetrics metrics = ingestService.metrics();
+    assertEquals(2, metrics.getSyncPosts());
+    assertEquals(3.0, metrics.getSyncAverageMillis());
+    assertEquals(4.0, metrics.getSyncMaxMillis());
+    assertEquals(2 / 0.006, metrics.getSyncRowsPerSecond(), 1e-6);
+    assertEquals(1, metrics.getAsyncWritten());
+    assertEquals(1, metrics.getBatches());
+    assertEquals(true, metrics.getAsyncRowsPerSecond() > 0);
+  }
+
+  @Test
+  void a_batch_where_every_row_fails_does_not_invalidate() {
+    String bad = ingestService.submit(review(2, 9)).get();
+    when(ingestService.jdbcTemplate.batchUpdate(eq(MenuItemReviewIngestService.INSERT_SQL), anyList()))
+        .thenThrow(new IllegalStateException("constraint violated"));
+
+    ingestService.flush();
+
+    assertEquals(MenuItemReviewIngestService.FAILED, ingestService.status(bad).getStatus());
+    verify(ingestService.menuItemReviewTopService, never()).invalidate();
+  }
+
+  @Test
+  void only_the_newest_statuses_are_kept() {
+    ingestService.capacity = MenuItemReviewIngestService.STATUS_RETAINED + 1;
+    ingestService.batchSize = 1000;
+    ingestService.open();
+    String oldest = ingestService.submit(review(1, 5)).get();
+    String newest = null;
+    for (int i = 0; i < MenuItemReviewIngestService.STATUS_RETAINED; i++) {
+      newest = ingestService.submit(review(1, 5)).get();
+    }
+    assertEquals(MenuItemReviewIngestService.UNKNOWN, ingestService.status(oldest).getStatus());
+
+    int written = 0;
+    for (int n = ingestService.flush(); n > 0; n = ingestService.flush()) {
+      written += n;
+    }
+    assertEquals(MenuItemReviewIngestService.STATUS_RETAINED + 1, written);
+
+    assertEquals(MenuItemReviewIngestService.UNKNOWN, ingestService.status(oldest).getStatus());
+    assertEquals(MenuItemReviewIngestService.WRITTEN, ingestService.status(newest).getStatus());
+  }
+
+  @Test
+  void the_writer_thread_persists_queued_reviews() throws Exception {
+    ingestService.flushMillis = 10;
+    ingestService.init();
+    MenuItemReview undated = MenuItemReview.builder().itemId(4L).reviewerEmail("cgaucho@ucsb.edu").stars(2).build();
+
+    String trackingId = ingestService.submit(undated).get();
+
+    verify(ingestService.menuItemReviewTopService, timeout(5000)).invalidate();
+    assertEquals(MenuItemReviewIngestService.WRITTEN, ingestService.status(trackingId).getStatus());
+    assertEquals(Arrays.asList(4L, "cgaucho@ucsb.edu", 2, null, null), Arrays.asList(inserts.get(0).get(0)));
+
+    ingestService.shutdown();
+    assertFalse(ingestService.writer.isAlive());
+  }
+
+  @Test
+  void the_writer_survives_a_failed_batch_and_stops_when_interrupted() throws Exception {
+    ingestService.flushMillis = 10;
+    doThrow(new IllegalStateException("stats unavailable")).doNothing()
+        .when(ingestService.menuItemReviewStatsService).add(1L, 5);
+    ingestService.init();
+
+    ingestService.submit(review(1, 5));
+    verify(ingestService.menuItemReviewStatsService, timeout(5000)).add(1L, 5);
+    String second = ingestService.submit(review(1, 5)).get();
+    verify(ingestService.menuItemReviewTopService, timeout(5000)).invalidate();
+    assertEquals(MenuItemReviewIngestService.WRITTEN, ingestService.status(second).getStatus());
+
+    ingestService.writer.interrupt();
+    ingestService.writer.join(5000);
+    assertFalse(ingestService.writer.isAlive());
+  }
+}
@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.MenuItemRatingStats;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+
+class MenuItemReviewStatsServiceTests {
+
+  MenuItemReviewStatsService stats;
+  List<Object[]> groupBy = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    stats = new MenuItemReviewStatsService();
+    stats.menuItemReviewRepository = mock(MenuItemReviewRepository.class);
+    when(stats.menuItemReviewRepository.countByItemIdAndStars()).thenReturn(groupBy);
+    groupBy.add(new Object[] { 1L, 5, 2L });
+    groupBy.add(new Object[] { 1L, 3, 1L });
+    groupBy.add(new Object[] { 2L, 0, 1L });
+    // out of range stars are clamped
+    groupBy.add(new Object[] { 2L, 9, 1L });
+    stats.init();
+  }
+
+  @Test
+  void init_loads_histograms_from_a_group_by() {
+    MenuItemRatingStats item1 = stats.get(1L);
+    assertEquals(3, item1.getCount());
+    assertEquals(13, item1.getSum());
+    assertEquals(13.0 / 3, item1.getAverage());
+    assertArrayEquals(new long[] { 0, 0, 0, 1, 0, 2 }, item1.getHistogram());
+
+    assertArrayEquals(new long[] { 1, 0, 0, 0, 0, 1 }, stats.get(2L).getHistogram());
+  }
+
+  @Test
+  void unknown_items_have_empty_stats() {
+    MenuItemRatingStats none = stats.get(99L);
+    assertEquals(MenuItemRatingStats.builder().itemId(99L).histogram(new long[6]).build(), none);
+  }
+
+  @Test
+  void add_remove_and_update_adjust_the_histograms() {
+    stats.add(1L, 4);
+    stats.remove(2L, 0);
+    stats.update(2L, 5, 3L, 1);
+    stats.add(null, 5);
+
+    assertArrayEquals(new long[] { 0, 0, 0, 1, 1, 2 }, stats.get(1L).getHistogram());
+    assertEquals(0, stats.get(2L).getCount());
+    assertArrayEquals(new long[] { 0, 1, 0, 0, 0, 0 }, stats.get(3L).getHistogram());
+    // items whose last review is gone are dropped
+    assertEquals(List.of(1L, 3L), new ArrayList<>(stats.getAll().keySet()));
+  }
+
+  @Test
+  void removed_items_lose_their_stats() {
+    stats.removeItems(List.of(2L, 99L));
+
+    assertEquals(List.of(1L), new ArrayList<>(stats.getAll().keySet()));
+  }
+
+  @Test
+  void returned_stats_are_snapshots() {
+    MenuItemRatingStats before = stats.get(1L);
+    stats.add(1L, 1);
+
+    assertEquals(3, before.getCount());
+    assertEquals(0, before.getHistogram()[1]);
+  }
+
+  @Test
+  void getAll_is_ordered_by_item() {
+    Map<Long, MenuItemRatingStats> all = stats.getAll();
+
+    assertEquals(List.of(1L, 2L), new ArrayList<>(all.keySet()));
+    assertEquals(stats.get(2L), all.get(2L));
+  }
+
+  @Test
+  void verify_reports_agreement_with_the_recount() {
+    ConsistencyReport report = stats.verify(false);
+
+    assertEquals(ConsistencyReport.builder().consistent(true).checked(2).mismatches(List.of()).build(), report);
+  }
+
+  @Test
+  void verify_reports_and_optionally_repairs_drift() {
+    // a review that never reached the stats, and one the stats still count
+    groupBy.add(new Object[] { 4L, 2, 1L });
+    stats.add(1L, 1);
+
+    ConsistencyReport report = stats.verify(false);
+    assertEquals(false, report.getConsistent());
+    assertEquals(false, report.getRepaired());
+    assertEquals(3, report.getChecked());
+    assertEquals(List.of(
+        "itemId 1: histogram [0, 1, 0, 1, 0, 2], recount [0, 0, 0, 1, 0, 2]",
+        "itemId 4: histogram [0, 0, 0, 0, 0, 0], recount [0, 0, 1, 0, 0, 0]"),
+        report.getMismatches());
+    assertEquals(4, stats.get(1L).getCount());
+
+    report = stats.verify(true);
+    assertEquals(true, report.getRepaired());
+    assertEquals(3, stats.get(1L).getCount());
+    assertEquals(1, stats.get(4L).getCount());
+    assertEquals(true, stats.verify(true).getConsistent());
+    assertEquals(false, stats.verify(true).getRepaired());
+  }
+}
@@ -0,0 +1,170 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.TopMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+class MenuItemReviewTopServiceTests {
+
+  MenuItemReviewTopService topService;
+  List<String> queries = new ArrayList<>();
+  List<List<Object>> queryArgs = new ArrayList<>();
+  // rows of {itemId, count, sum of stars} returned by the GROUP BY
+  List<long[]> totals = new ArrayList<>();
+  Instant now = Instant.parse("2022-01-03T00:00:00Z");
+
+  @BeforeEach
+  void setup() throws Exception {
+    topService = new MenuItemReviewTopService();
+    topService.jdbcTemplate = mock(JdbcTemplate.class);
+    topService.ucsbDiningCommonsMenuItemRepository = mock(UCSBDiningCommonsMenuItemRepository.class);
+    topService.ttlSeconds = 60;
+    topService.clock = Clock.fixed(now, ZoneOffset.UTC);
+    when(topService.ucsbDiningCommonsMenuItemRepository.findAllById(any())).thenReturn(List.of());
+    Answer<Void> runQuery = invocation -> {
+      Object[] arguments = invocation.getArguments();
+      queries.add((String) arguments[0]);
+      queryArgs.add(Arrays.asList(arguments).subList(2, arguments.length));
+      RowCallbackHandler handler = invocation.getArgument(1);
+      for (long[] row : totals) {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(row[0]);
+        when(rs.getLong(2)).thenReturn(row[1]);
+        when(rs.getLong(3)).thenReturn(row[2]);
+        handler.processRow(rs);
+      }
+      return null;
+    };
+    // one argument (since) without a dining commons, two with one
+    doAnswer(runQuery).when(topService.jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any());
+    doAnswer(runQuery).when(topService.jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+  }
+
+  private static List<Long> itemIds(List<TopMenuItem> items) {
+    return items.stream().map(TopMenuItem::getItemId).toList();
+  }
+
+  @Test
+  void keeps_the_best_k_by_average_then_count_then_itemId() {
+    totals.add(new long[] { 1, 2, 6 });   // 3.0
+    totals.add(new long[] { 2, 1, 5 });   // 5.0
+    totals.add(new long[] { 3, 4, 12 });  // 3.0, more reviews than item 1
+    totals.add(new long[] { 4, 2, 2 });   // 1.0
+    totals.add(new long[] { 5, 1, 5 });   // 5.0, same as item 2
+
+    List<TopMenuItem> top = topService.top(3, null, null);
+
+    assertEquals(List.of(2L, 5L, 3L), itemIds(top));
+    assertEquals(5.0, top.get(0).getAverage());
+    assertEquals(4, top.get(2).getCount());
+  }
+
+  @Test
+  void items_are_named_from_the_menu_table() {
+    totals.add(new long[] { 7, 1, 4 });
+    totals.add(new long[] { 8, 1, 3 });
+    UCSBDiningCommonsMenuItem menuItem = UCSBDiningCommonsMenuItem.builder()
+        .Id(7L).diningCommonsCode("ortega").name("Tofu Banh Mi Sandwich").station("Entree Specials").build();
+    when(topService.ucsbDiningCommonsMenuItemRepository.findAllById(List.of(7L, 8L))).thenReturn(List.of(menuItem));
+
+    List<TopMenuItem> top = topService.top(2, null, null);
+
+    assertEquals(TopMenuItem.builder().itemId(7L).name("Tofu Banh Mi Sandwich").station("Entree Specials")
+        .diningCommonsCode("ortega").count(1).average(4.0).build(), top.get(0));
+    assertEquals(null, top.get(1).getName());
+  }
+
+  @Test
+  void filters_become_query_arguments() {
+    LocalDateTime since = LocalDateTime.parse("2022-01-01T00:00:00");
+
+    topService.top(5, null, null);
+    topService.top(5, since, "ortega");
+
+    assertEquals(MenuItemReviewTopService.TOTALS_SQL + MenuItemReviewTopService.GROUP_SQL, queries.get(0));
+    assertEquals(List.of(MenuItemReviewTopService.BEGINNING), queryArgs.get(0));
+    assertEquals(MenuItemReviewTopService.TOTALS_SQL + MenuItemReviewTopService.IN_COMMONS_SQL
+        + MenuItemReviewTopService.GROUP_SQL, queries.get(1));
+    assertEquals(List.of(since, "ortega"), queryArgs.get(1));
+
+    topService.top(5, since, null);
+    topService.top(5, null, "ortega");
+
+    assertEquals(List.of(since), queryArgs.get(2));
+    assertEquals(List.of(MenuItemReviewTopService.BEGINNING, "ortega"), queryArgs.get(3));
+  }
+
+  @Test
+  void results_are_cached_per_parameters_until_they_expire() {
+    totals.add(new long[] { 1, 1, 4 });
+
+    topService.top(5, null, null);
+    topService.top(5, null, null);
+    topService.top(6, null, null);
+    assertEquals(2, queries.size());
+
+    topService.clock = Clock.fixed(now.plusSeconds(61), ZoneOffset.UTC);
+    topService.top(5, null, null);
+    assertEquals(3, queries.size());
+  }
+
+  @Test
+  void invalidate_empties_the_cache() {
+    totals.add(new long[] { 1, 1, 4 });
+    topService.top(5, null, null);
+
+    topService.invalidate();
+    totals.add(new long[] { 2, 1, 5 });
+
+    assertEquals(List.of(2L, 1L), itemIds(topService.top(5, null, null)));
+    assertEquals(2, queries.size());
+  }
+
+  @Test
+  void results_computed_across_an_invalidate_are_not_cached() {
+    doAnswer(invocation -> {
+      queries.add(invocation.getArgument(0));
+      topService.invalidate();
+      return null;
+    }).when(topService.jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any());
+
+    topService.top(5, null, null);
+    topService.top(5, null, null);
+
+    assertEquals(2, queries.size());
+  }
+
+  @Test
+  void the_cache_is_bounded() {
+    for (int k = 1; k <= MenuItemReviewTopService.MAX_CACHED + 1; k++) {
+      topService.top(k, null, null);
+    }
+    // k = 1 was the least recently used and has been dropped
+    topService.top(MenuItemReviewTopService.MAX_CACHED + 1, null, null);
+    topService.top(1, null, null);
+
+    assertEquals(MenuItemReviewTopService.MAX_CACHED + 2, queries.size());
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.errors.EntityConflictException;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+
+class RecommendationRequestClaimServiceTests {
+
+  RecommendationRequestClaimService claimService;
+
+  private static RecommendationRequest request(long version, boolean done, String claimedBy) {
+    return RecommendationRequest.builder().Id(7L).professorEmail("prof@ucsb.edu").done(done).claimedBy(claimedBy).version(version).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    claimService = new RecommendationRequestClaimService();
+    claimService.recommendationRequestRepository = mock(RecommendationRequestRepository.class);
+    claimService.recommendationRequestInboxService = mock(RecommendationRequestInboxService.class);
+    claimService.jdbcTemplate = mock(JdbcTemplate.class);
+  }
+
+  @Test
+  void versions_of_old_rows_are_initialized_at_startup() {
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.INITIALIZE_VERSIONS_SQL)).thenReturn(3);
+
+    claimService.initializeVersions();
+
+    verify(claimService.jdbcTemplate, times(1)).update(RecommendationRequestClaimService.INITIALIZE_VERSIONS_SQL);
+  }
+
+  @Test
+  void startup_with_no_old_rows_changes_nothing() {
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.INITIALIZE_VERSIONS_SQL)).thenReturn(0);
+
+    claimService.initializeVersions();
+
+    verify(claimService.jdbcTemplate, times(1)).update(RecommendationRequestClaimService.INITIALIZE_VERSIONS_SQL);
+  }
+
+  @Test
+  void claim_is_one_conditional_update() {
+    RecommendationRequest claimed = request(1L, false, "me@ucsb.edu");
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.CLAIM_SQL, "me@ucsb.edu", 7L, 0L)).thenReturn(1);
+    when(claimService.recommendationRequestRepository.findById(7L)).thenReturn(Optional.of(claimed));
+
+    assertEquals(claimed, claimService.claim(7L, 0L, "me@ucsb.edu"));
+    verifyNoInteractions(claimService.recommendationRequestInboxService);
+  }
+
+  @Test
+  void complete_is_one_conditional_update() {
+    RecommendationRequest done = request(2L, true, "me@ucsb.edu");
+    when(claimService.jdbcTemplate.query(eq(RecommendationRequestClaimService.OPEN_AT_VERSION_SQL), ArgumentMatchers.<RowMapper<RecommendationRequest>>any(), eq(7L), eq(1L)))
+        .thenReturn(List.of(RecommendationRequest.builder().professorEmail("prof@ucsb.edu").build()));
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.COMPLETE_SQL, 7L, 1L, "me@ucsb.edu")).thenReturn(1);
+    when(claimService.recommendationRequestRepository.findById(7L)).thenReturn(Optional.of(done));
+
+    assertEquals(done, claimService.complete(7L, 1L, "me@ucsb.edu"));
+    verify(claimService.recommendationRequestInboxService, times(1)).update("prof@ucsb.edu", null, false, "prof@ucsb.edu", null, true);
+  }
+
+  @Test
+  void complete_moves_the_counts_of_the_version_it_completed() throws Exception {
+    LocalDateTime needed = LocalDateTime.parse("2023-06-01T12:00:00");
+    ResultSet row = mock(ResultSet.class);
+    when(row.getString(1)).thenReturn("prof@ucsb.edu");
+    when(row.getObject(2, LocalDateTime.class)).thenReturn(needed);
+    when(claimService.jdbcTemplate.query(eq(RecommendationRequestClaimService.OPEN_AT_VERSION_SQL), ArgumentMatchers.<RowMapper<RecommendationRequest>>any(), eq(7L), eq(1L)))
+        .thenAnswer(invocation -> List.of(invocation.<RowMapper<RecommendationRequest>>getArgument(1).mapRow(row, 0)));
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.COMPLETE_SQL, 7L, 1L, "me@ucsb.edu")).thenReturn(1);
+    // moved to another professor by the time it is reloaded
+    RecommendationRequest moved = request(3L, true, "me@ucsb.edu");
+    moved.setProfessorEmail("other@ucsb.edu");
+    when(claimService.recommendationRequestRepository.findById(7L)).thenReturn(Optional.of(moved));
+
+    assertEquals(moved, claimService.complete(7L, 1L, "me@ucsb.edu"));
+    verify(claimService.recommendationRequestInboxService, times(1)).update("prof@ucsb.edu", needed, false, "prof@ucsb.edu", needed, true);
+  }
+
+  @Test
+  void complete_of_a_version_that_lost_the_race_changes_no_counts() {
+    when(claimService.jdbcTemplate.query(eq(RecommendationRequestClaimService.OPEN_AT_VERSION_SQL), ArgumentMatchers.<RowMapper<RecommendationRequest>>any(), eq(7L), eq(1L)))
+        .thenReturn(List.of(RecommendationRequest.builder().professorEmail("prof@ucsb.edu").build()));
+    when(claimService.jdbcTemplate.update(RecommendationRequestClaimService.COMPLETE_SQL, 7L, 1L, "me@ucsb.edu")).thenReturn(0);
+    when(claimService.recommendationRequestRepository.findById(7L)).thenReturn(Optional.of(request(2L, true, null)));
+
+    assertThrows(EntityConflictException.class, () -> claimService.complete(7L, 1L, "me@ucsb.edu"));
+    verifyNoInteractions(claimService.recommendationRequestInboxService);
+  }
+
+  @Test
+  void losing_updates_say_why() {
+    when(claimService.recommendationRequestRepository.findById(7L))
+        .thenReturn(Optional.of(request(1L, false, "other@ucsb.edu")))
+        .thenReturn(Optional.of(request(5L, true, null)))
+        .thenReturn(Optional.of(request(5L, false, null)))
+        .thenReturn(Optional.of(request(1L, false, "me@ucsb.edu")));
+
+    assertEquals("RecommendationRequest with id 7 is claimed by other@ucsb.edu",
+        assertThrows(EntityConflictException.class, () -> claimService.claim(7L, 0L, "me@ucsb.edu")).getMessage());
+    assertEquals("RecommendationRequest with id 7 is already done",
+        assertThrows(EntityConflictException.class, () -> claimService.complete(7L, 4L, "me@ucsb.edu")).getMessage());
+    assertEquals("RecommendationRequest with id 7 was changed since version 4 (now version 5)",
+        assertThrows(EntityConflictException.class, () -> claimService.claim(7L, 4L, "me@ucsb.edu")).getMessage());
+    assertEquals("RecommendationRequest with id 7 is already claimed by you",
+        assertThrows(EntityConflictException.class, () -> claimService.claim(7L, 1L, "me@ucsb.edu")).getMessage());
+  }
+
+  @Test
+  void own_claim_at_another_version_is_a_change() {
+    RecommendationRequest unversioned = request(0L, false, "me@ucsb.edu");
+    unversioned.setVersion(null);
+    when(claimService.recommendationRequestRepository.findById(7L))
+        .thenReturn(Optional.of(request(3L, false, "me@ucsb.edu")))
+        .thenReturn(Optional.of(unversioned));
+
+    assertEquals("RecommendationRequest with id 7 was changed since version 1 (now version 3)",
+        assertThrows(EntityConflictException.class, () -> claimService.complete(7L, 1L, "me@ucsb.edu")).getMessage());
+    assertEquals("RecommendationRequest with id 7 was changed since version 1 (now version null)",
+        assertThrows(EntityConflictException.class, () -> claimService.complete(7L, 1L, "me@ucsb.edu")).getMessage());
+  }
+
+  @Test
+  void missing_request_is_not_found() {
+    when(claimService.recommendationRequestRepository.findById(7L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> claimService.claim(7L, 0L, "me@ucsb.edu"));
+  }
+}
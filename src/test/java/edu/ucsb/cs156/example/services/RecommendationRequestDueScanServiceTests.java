@@ -0,0 +1,185 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.RecommendationRequest;
+import edu.ucsb.cs156.example.models.DueScanMetrics;
+import edu.ucsb.cs156.example.models.DueSoonEvent;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+
+class RecommendationRequestDueScanServiceTests {
+
+  RecommendationRequestDueScanService scanner;
+
+  LocalDateTime now = LocalDateTime.parse("2023-06-01T12:00:00");
+
+  private static RecommendationRequest request(long id, LocalDateTime dateNeeded, boolean done) {
+    return RecommendationRequest.builder().Id(id).requesterEmail("student@ucsb.edu").professorEmail("prof@ucsb.edu")
+        .dateNeeded(dateNeeded).done(done).build();
+  }
+
+  private void setTime(LocalDateTime time) {
+    scanner.clock = Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+  }
+
+  @BeforeEach
+  void setup() {
+    scanner = new RecommendationRequestDueScanService();
+    scanner.recommendationRequestRepository = mock(RecommendationRequestRepository.class);
+    scanner.windowHours = 48;
+    scanner.maxEvents = 3;
+    setTime(now);
+  }
+
+  @Test
+  void each_run_reads_only_the_range_since_the_last_one() {
+    RecommendationRequest soon = request(1L, now.plusHours(10), false);
+    RecommendationRequest later = request(2L, now.plusHours(49), false);
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now, now.plusHours(48))).thenReturn(List.of(soon));
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now.plusHours(48), now.plusHours(50))).thenReturn(List.of(later));
+
+    scanner.scan();
+    setTime(now.plusHours(2));
+    scanner.scan();
+
+    List<DueSoonEvent> events = scanner.eventsAfter(0);
+    assertEquals(2, events.size());
+    assertEquals(1L, events.get(0).getRequestId());
+    assertEquals(now, events.get(0).getFlaggedAt());
+    assertEquals(2L, events.get(1).getRequestId());
+    assertEquals(now.plusHours(49), events.get(1).getDateNeeded());
+    assertEquals(List.of(events.get(1)), scanner.eventsAfter(events.get(0).getId()));
+
+    DueScanMetrics metrics = scanner.metrics();
+    assertEquals(2, metrics.getRuns());
+    assertEquals(1, metrics.getLastRowsScanned());
+    assertEquals(2, metrics.getRowsScanned());
+    assertEquals(2, metrics.getEventsPublished());
+    assertEquals(now.plusHours(50), metrics.getScannedUntil());
+  }
+
+  @Test
+  void clock_going_back_does_not_rescan() {
+    scanner.scan();
+    setTime(now.minusHours(1));
+    scanner.scan();
+
+    verify(scanner.recommendationRequestRepository, times(1)).findOpenNeededBetween(any(), any());
+  }
+
+  @Test
+  void writes_below_the_mark_are_flagged_once() {
+    scanner.created(request(1L, now.plusHours(1), false));
+    assertEquals(0, scanner.eventsAfter(0).size());
+
+    scanner.scan();
+    scanner.created(request(2L, now.plusHours(1), false));
+    scanner.created(request(3L, now.plusHours(49), false));
+    scanner.created(request(4L, now.plusHours(1), true));
+    scanner.created(request(5L, now.minusHours(1), false));
+    scanner.created(request(9L, null, false));
+    // moved into the window
+    scanner.updated(now.plusHours(72), false, request(6L, now.plusHours(5), false));
+    // already in the window before
+    scanner.updated(now.plusHours(6), false, request(7L, now.plusHours(5), false));
+    // reopened
+    scanner.updated(now.plusHours(5), true, request(8L, now.plusHours(5), false));
+
+    assertEquals(List.of(2L, 6L, 8L), scanner.eventsAfter(0).stream().map(DueSoonEvent::getRequestId).toList());
+  }
+
+  @Test
+  void a_write_during_a_run_is_not_blocked_and_is_published_once() {
+    RecommendationRequest written = request(1L, now.plusHours(1), false);
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now, now.plusHours(48))).thenAnswer(invocation -> {
+      Thread writer = new Thread(() -> scanner.created(written));
+      writer.start();
+      writer.join(5000);
+      assertFalse(writer.isAlive());
+      return List.of(written);
+    });
+
+    scanner.scan();
+
+    assertEquals(List.of(1L), scanner.eventsAfter(0).stream().map(DueSoonEvent::getRequestId).toList());
+    assertEquals(1, scanner.metrics().getRowsScanned());
+  }
+
+  @Test
+  void published_ids_are_forgotten_once_their_date_has_passed() {
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now, now.plusHours(48)))
+        .thenReturn(List.of(request(1L, now.plusHours(1), false), request(2L, now.plusHours(3), false)));
+    scanner.scan();
+    assertEquals(2, scanner.flagged.size());
+
+    setTime(now.plusHours(2));
+    scanner.scan();
+
+    assertEquals(List.of(2L), List.copyOf(scanner.flagged.keySet()));
+  }
+
+  @Test
+  void deleted_or_completed_requests_are_withdrawn_and_not_flagged_again() {
+    RecommendationRequest deleted = request(1L, now.plusHours(1), false);
+    RecommendationRequest completed = request(2L, now.plusHours(2), false);
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now, now.plusHours(48)))
+        .thenReturn(List.of(deleted, completed));
+    scanner.scan();
+
+    scanner.removed(deleted);
+    scanner.updated(now.plusHours(2), false, request(2L, now.plusHours(2), true));
+    // a run that read them before they were written
+    setTime(now.plusMinutes(1));
+    when(scanner.recommendationRequestRepository.findOpenNeededBetween(now.plusHours(48), now.plusMinutes(1).plusHours(48)))
+        .thenReturn(List.of(deleted, completed));
+    scanner.scan();
+    scanner.removed(request(3L, null, true));
+
+    assertEquals(List.of(), scanner.eventsAfter(0));
+  }
+
+  @Test
+  void completed_request_reopened_into_the_window_is_flagged_again() {
+    scanner.scan();
+    scanner.created(request(1L, now.plusHours(1), false));
+    scanner.updated(now.plusHours(1), false, request(1L, now.plusHours(1), true));
+
+    scanner.updated(now.plusHours(1), true, request(1L, now.plusHours(1), false));
+
+    assertEquals(List.of(1L), scanner.eventsAfter(0).stream().map(DueSoonEvent::getRequestId).toList());
+  }
+
+  @Test
+  void only_the_newest_events_are_kept() {
+    scanner.scan();
+    for (long id = 1; id <= 5; id++) {
+      scanner.created(request(id, now.plusHours(1), false));
+    }
+
+    assertEquals(List.of(3L, 4L, 5L), scanner.eventsAfter(0).stream().map(DueSoonEvent::getRequestId).toList());
+    assertEquals(5, scanner.metrics().getEventsPublished());
+  }
+
+  @Test
+  void nothing_is_published_before_the_first_run() {
+    scanner.updated(null, false, request(1L, now.plusHours(1), false));
+
+    assertEquals(0, scanner.eventsAfter(0).size());
+    verify(scanner.recommendationRequestRepository, never()).findOpenNeededBetween(any(), any());
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.models.ConsistencyReport;
+import edu.ucsb.cs156.example.models.InboxSummary;
+import edu.ucsb.cs156.example.repositories.RecommendationRequestRepository;
+
+class RecommendationRequestInboxServiceTests {
+
+  RecommendationRequestInboxService inbox;
+  List<Object[]> groupBy = new ArrayList<>();
+
+  LocalDateTime now = LocalDateTime.parse("2023-06-01T12:00:00");
+  LocalDateTime lastWeek = now.minusDays(7);
+  LocalDateTime nextWeek = now.plusDays(7);
+
+  private static InboxSummary summary(String professorEmail, long open, long overdue, long completed) {
+    return InboxSummary.builder().professorEmail(professorEmail).open(open).overdue(overdue).completed(completed).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    inbox = new RecommendationRequestInboxService();
+    inbox.recommendationRequestRepository = mock(RecommendationRequestRepository.class);
+    inbox.clock = Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    when(inbox.recommendationRequestRepository.countByProfessorEmail()).thenReturn(groupBy);
+    groupBy.add(new Object[] { "pconrad@ucsb.edu", false, lastWeek, 2L });
+    groupBy.add(new Object[] { "pconrad@ucsb.edu", false, nextWeek, 1L });
+    groupBy.add(new Object[] { "pconrad@ucsb.edu", true, null, 10L });
+    groupBy.add(new Object[] { "ziad@ucsb.edu", false, null, 1L });
+    inbox.init();
+  }
+
+  @Test
+  void init_loads_counts_from_a_group_by() {
+    assertEquals(List.of(
+        summary("pconrad@ucsb.edu", 3, 2, 10),
+        summary("ziad@ucsb.edu", 1, 0, 0)),
+        inbox.getAll());
+    assertEquals(summary("nobody@ucsb.edu", 0, 0, 0), inbox.get("nobody@ucsb.edu"));
+  }
+
+  @Test
+  void open_requests_become_overdue_as_time_passes() {
+    inbox.clock = Clock.fixed(nextWeek.plusSeconds(1).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+    assertEquals(summary("pconrad@ucsb.edu", 3, 3, 10), inbox.get("pconrad@ucsb.edu"));
+  }
+
+  @Test
+  void add_remove_and_update_adjust_the_counts() {
+    inbox.add("ziad@ucsb.edu", lastWeek, false);
+    inbox.remove("pconrad@ucsb.edu", nextWeek, false);
+    // completed
+    inbox.update("pconrad@ucsb.edu", lastWeek, false, "pconrad@ucsb.edu", lastWeek, true);
+    // moved to another professor
+    inbox.update("ziad@ucsb.edu", null, false, "new@ucsb.edu", nextWeek, false);
+    inbox.add(null, nextWeek, false);
+
+    assertEquals(List.of(
+        summary("new@ucsb.edu", 1, 0, 0),
+        summary("pconrad@ucsb.edu", 1, 1, 11),
+        summary("ziad@ucsb.edu", 1, 1, 0)),
+        inbox.getAll());
+  }
+
+  @Test
+  void professors_without_requests_are_dropped() {
+    inbox.remove("ziad@ucsb.edu", null, false);
+
+    assertEquals(1, inbox.getAll().size());
+  }
+
+  @Test
+  void verify_reports_and_repairs_drift() {
+    assertEquals(true, inbox.verify(false).getConsistent());
+    assertEquals(false, inbox.verify(true).getRepaired());
+
+    inbox.add("pconrad@ucsb.edu", nextWeek, false);
+    inbox.remove("ziad@ucsb.edu", null, false);
+
+    ConsistencyReport report = inbox.verify(false);
+    assertEquals(false, report.getConsistent());
+    assertEquals(2, report.getChecked());
+    assertEquals(List.of(
+        "professorEmail pconrad@ucsb.edu: counters open 4 overdue 2 completed 10, recount open 3 overdue 2 completed 10",
+        "professorEmail ziad@ucsb.edu: counters open 0 overdue 0 completed 0, recount open 1 overdue 0 completed 0"),
+        report.getMismatches());
+    assertEquals(false, report.getRepaired());
+
+    assertEquals(true, inbox.verify(true).getRepaired());
+    assertEquals(true, inbox.verify(false).getConsistent());
+    assertEquals(summary("pconrad@ucsb.edu", 3, 2, 10), inbox.get("pconrad@ucsb.edu"));
+  }
+}
@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+class RestaurantIndexServiceTests {
+
+  RestaurantIndexService index;
+
+  Restaurant tacoBell = restaurant(1L, "Taco Bell", "Fast food tacos and burritos");
+  Restaurant freebirds = restaurant(2L, "Freebirds", "Burritos, burritos, burritos");
+  Restaurant panda = restaurant(3L, "Panda Express", "Chinese food");
+  Restaurant lilys = restaurant(4L, "Lilly's Tacos", "Tacos de cabeza");
+
+  private static Restaurant restaurant(long id, String name, String description) {
+    return Restaurant.builder().id(id).name(name).description(description).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    index = new RestaurantIndexService();
+    index.rebuild(List.of(tacoBell, freebirds, panda, lilys));
+  }
+
+  @Test
+  void init_loads_from_repository() {
+    RestaurantIndexService fresh = new RestaurantIndexService();
+    fresh.restaurantRepository = mock(RestaurantRepository.class);
+    when(fresh.restaurantRepository.findAll()).thenReturn(List.of(panda));
+
+    fresh.init();
+
+    assertEquals(1, fresh.size());
+    assertEquals(List.of(panda), fresh.search("chinese", 10));
+  }
+
+  @Test
+  void name_matches_outrank_description_matches() {
+    // "tacos" is in Lilly's name and description, and only in Taco Bell's description
+    assertEquals(List.of(lilys, tacoBell), index.search("Tacos", 10));
+  }
+
+  @Test
+  void repeated_terms_and_multiple_terms_add_up() {
+    assertEquals(List.of(freebirds, tacoBell), index.search("burritos", 10));
+    assertEquals(List.of(tacoBell, freebirds, panda), index.search("fast-food burritos", 10));
+  }
+
+  @Test
+  void results_are_limited_with_ties_broken_by_id() {
+    assertEquals(List.of(tacoBell), index.search("food", 1));
+    assertEquals(List.of(tacoBell, panda), index.search("food", 2));
+  }
+
+  @Test
+  void empty_and_unknown_queries_return_nothing() {
+    assertEquals(List.of(), index.search("", 10));
+    assertEquals(List.of(), index.search(null, 10));
+    assertEquals(List.of(), index.search("sushi", 10));
+    assertEquals(List.of(), index.search("tacos", 0));
+  }
+
+  @Test
+  void put_reindexes_an_updated_restaurant() {
+    Restaurant renamed = restaurant(3L, "Panda Sushi", "Japanese");
+
+    index.put(renamed);
+
+    assertEquals(4, index.size());
+    assertEquals(List.of(), index.search("chinese", 10));
+    assertEquals(List.of(renamed), index.search("sushi", 10));
+  }
+
+  @Test
+  void remove_drops_a_restaurant() {
+    index.remove(2L);
+    index.remove(99L);
+
+    assertEquals(3, index.size());
+    assertEquals(List.of(tacoBell), index.search("burritos", 10));
+  }
+
+  @Test
+  void index_is_not_affected_by_later_mutation_of_callers_objects() {
+    Restaurant mutable = restaurant(5L, "Habit", "Burgers");
+    index.put(mutable);
+    mutable.setName("Changed");
+
+    assertEquals("Habit", index.search("burgers", 10).get(0).getName());
+  }
+
+  @Test
+  void tokenize_lowercases_and_splits_on_punctuation() {
+    assertEquals(List.of("lilly", "s", "tacos", "2go"), RestaurantIndexService.tokenize("  Lilly's TACOS, 2go!"));
+    assertEquals(List.of(), RestaurantIndexService.tokenize(null));
+  }
+
+  @Test
+  void autocomplete_matches_the_start_of_any_word_in_the_name() {
+    assertEquals(List.of(freebirds), index.autocomplete("Free", 10));
+    assertEquals(List.of(tacoBell), index.autocomplete("bel", 10));
+    assertEquals(List.of(tacoBell, lilys), index.autocomplete("ta", 10));
+    assertEquals(List.of(lilys), index.autocomplete("LILLY'S t", 10));
+  }
+
+  @Test
+  void autocomplete_orders_alphabetically_and_respects_limit() {
+    Restaurant taco = restaurant(5L, "Taco", "Just tacos");
+    index.put(taco);
+
+    assertEquals(List.of(taco, tacoBell, lilys), index.autocomplete("taco", 10));
+    assertEquals(List.of(taco), index.autocomplete("taco", 1));
+  }
+
+  @Test
+  void autocomplete_returns_each_restaurant_once() {
+    Restaurant tacoTaco = restaurant(6L, "Taco Taco", "Double");
+    index.rebuild(List.of(tacoTaco, tacoBell));
+
+    assertEquals(List.of(tacoTaco, tacoBell), index.autocomplete("taco", 10));
+    assertEquals(List.of(tacoTaco, tacoBell), index.autocomplete("taco", 2));
+  }
+
+  @Test
+  void autocomplete_follows_updates_and_deletes() {
+    index.put(restaurant(1L, "Bell Tower Cafe", "Coffee"));
+    index.remove(4L);
+
+    assertEquals(List.of(), index.autocomplete("ta", 10));
+    assertEquals("Bell Tower Cafe", index.autocomplete("tow", 10).get(0).getName());
+  }
+
+  @Test
+  void autocomplete_with_nothing_to_match_is_empty() {
+    index.put(restaurant(7L, null, "No name"));
+
+    assertEquals(List.of(), index.autocomplete("", 10));
+    assertEquals(List.of(), index.autocomplete("  '' ", 10));
+    assertEquals(List.of(), index.autocomplete(null, 10));
+    assertEquals(List.of(), index.autocomplete("ta", 0));
+    assertEquals(5, index.size());
+  }
+
+  @Test
+  void normalizeName_collapses_punctuation() {
+    assertEquals("lilly s tacos", RestaurantIndexService.normalizeName(" Lilly's  TACOS!"));
+    assertEquals("", RestaurantIndexService.normalizeName(null));
+  }
+}
@@ -0,0 +1,260 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Restaurant;
+import edu.ucsb.cs156.example.models.BulkUpsertResult;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.repositories.RestaurantRepository;
+
+class RestaurantUpsertServiceTests {
+
+  RestaurantUpsertService upsertService;
+  List<List<Object[]>> updates = new ArrayList<>();
+  List<List<Object[]>> inserts = new ArrayList<>();
+
+  Restaurant tacoBell = restaurant(1L, "Taco Bell", "Mexican");
+  Restaurant freebirds = restaurant(2L, "Freebirds", "Burritos");
+
+  private static Restaurant restaurant(long id, String name, String description) {
+    return Restaurant.builder().id(id).name(name).description(description).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    upsertService = new RestaurantUpsertService();
+    upsertService.restaurantRepository = mock(RestaurantRepository.class);
+    upsertService.restaurantIndexService = mock(RestaurantIndexService.class);
+    upsertService.jdbcTemplate = mock(JdbcTemplate.class);
+    upsertService.mapper = new ObjectMapper();
+    when(upsertService.jdbcTemplate.batchUpdate(eq(RestaurantUpsertService.UPDATE_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          updates.add(rows);
+          return new int[rows.size()];
+        });
+    when(upsertService.jdbcTemplate.batchUpdate(eq(RestaurantUpsertService.INSERT_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          inserts.add(rows);
+          return new int[rows.size()];
+        });
+  }
+
+  @Test
+  void rows_are_diffed_against_existing_restaurants_in_one_query() {
+    // arrange
+    Restaurant panda = restaurant(3L, "Panda Express", "Chinese");
+    when(upsertService.restaurantRepository.findAllByIdInOrNameIn(List.of(1L, 2L, 99L), List.of("Panda Express", "Habit")))
+        .thenReturn(List.of(tacoBell, freebirds, panda));
+    Restaurant habit = restaurant(4L, "Habit", "Burgers");
+    when(upsertService.restaurantRepository.findAllByNameIn(List.of("Habit"))).thenReturn(List.of(habit));
+
+    // act
+    BulkUpsertResult result = upsertService.upsert(List.of(
+        restaurant(1L, "Taco Bell", "Mexican"),
+        restaurant(2L, "Freebirds World Burrito", "Burritos"),
+        restaurant(99L, "Ghost", "Gone"),
+        restaurant(0L, "Panda Express", "Chinese"),
+        restaurant(0L, "Habit", "Burgers"),
+        restaurant(0L, " ", "No name")));
+
+    // assert
+    assertEquals(1, result.getInserted());
+    assertEquals(1, result.getUpdated());
+    assertEquals(2, result.getUnchanged());
+    assertEquals(2, result.getRejected());
+    assertEquals(List.of(
+        new ImportRowError(6, "name is empty"),
+        new ImportRowError(3, "no restaurant with id 99")),
+        result.getErrors());
+
+    assertEquals(1, updates.size());
+    assertArrayEquals(new Object[] { "Freebirds World Burrito", "Burritos", 2L }, updates.get(0).get(0));
+    assertEquals(1, inserts.size());
+    assertArrayEquals(new Object[] { "Habit", "Burgers" }, inserts.get(0).get(0));
+
+    verify(upsertService.restaurantIndexService, times(1)).put(restaurant(2L, "Freebirds World Burrito", "Burritos"));
+    verify(upsertService.restaurantIndexService, times(1)).put(habit);
+    verify(upsertService.restaurantIndexService, times(2)).put(any());
+  }
+
+  @Test
+  void name_matches_update_the_oldest_restaurant_and_last_duplicate_wins() {
+    // arrange
+    Restaurant newerTwin = restaurant(5L, "Taco Bell", "Old");
+    when(upsertService.restaurantRepository.findAllByNameIn(List.of("Taco Bell")))
+        .thenReturn(List.of(tacoBell, newerTwin));
+
+    // act
+    BulkUpsertResult result = upsertService.upsert(List.of(
+        restaurant(0L, "Taco Bell", "first"),
+        restaurant(0L, "Taco Bell", "second")));
+
+    // assert
+    assertEquals(1, result.getUpdated());
+    assertEquals(1, result.getRejected());
+    assertEquals(List.of(new ImportRowError(1, "superseded by line 2")), result.getErrors());
+    assertArrayEquals(new Object[] { "Taco Bell", "second", 1L }, updates.get(0).get(0));
+    verify(upsertService.restaurantIndexService, times(1)).put(restaurant(1L, "Taco Bell", "second"));
+  }
+
+  @Test
+  void oldest_name_match_wins_whatever_order_the_rows_come_back_in() {
+    Restaurant newerTwin = restaurant(5L, "Taco Bell", "Old");
+    when(upsertService.restaurantRepository.findAllByNameIn(List.of("Taco Bell")))
+        .thenReturn(List.of(newerTwin, tacoBell));
+
+    upsertService.upsert(List.of(restaurant(0L, "Taco Bell", "first")));
+
+    assertArrayEquals(new Object[] { "Taco Bell", "first", 1L }, updates.get(0).get(0));
+  }
+
+  @Test
+  void name_row_for_a_restaurant_also_keyed_by_id_is_rejected() {
+    // arrange
+    when(upsertService.restaurantRepository.findAllByIdInOrNameIn(List.of(1L), List.of("Taco Bell")))
+        .thenReturn(List.of(tacoBell));
+
+    // act
+    BulkUpsertResult result = upsertService.upsert(List.of(
+        restaurant(1L, "Taco Bell Cantina", "Mexican"),
+        restaurant(0L, "Taco Bell", "Tacos")));
+
+    // assert
+    assertEquals(1, result.getUpdated());
+    assertEquals(0, result.getInserted());
+    assertEquals(1, result.getRejected());
+    assertEquals(List.of(new ImportRowError(2, "restaurant 1 is already updated by line 1")), result.getErrors());
+    assertEquals(1, updates.get(0).size());
+    assertArrayEquals(new Object[] { "Taco Bell Cantina", "Mexican", 1L }, updates.get(0).get(0));
+    verify(upsertService.restaurantIndexService, times(1)).put(any());
+  }
+
+  @Test
+  void ndjson_null_rows_are_rejected() throws Exception {
+    BulkUpsertResult result = upsertService.upsertNdjson(
+        new ByteArrayInputStream("null\n".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(1, result.getRejected());
+    assertEquals(List.of(new ImportRowError(1, "name is empty")), result.getErrors());
+  }
+
+  @Test
+  void id_only_requests_use_findAllById_and_replays_are_unchanged() {
+    // arrange
+    when(upsertService.restaurantRepository.findAllById(List.of(1L))).thenReturn(List.of(tacoBell));
+
+    // act
+    BulkUpsertResult result = upsertService.upsert(List.of(restaurant(1L, "Taco Bell", "Mexican")));
+
+    // assert
+    assertEquals(1, result.getUnchanged());
+    assertEquals(0, result.getInserted() + result.getUpdated() + result.getRejected());
+    verify(upsertService.jdbcTemplate, never()).batchUpdate(any(String.class), anyList());
+    verify(upsertService.restaurantIndexService, never()).put(any());
+  }
+
+  @Test
+  void empty_request_does_nothing() {
+    BulkUpsertResult result = upsertService.upsert(List.of());
+
+    assertEquals(BulkUpsertResult.builder().errors(List.of()).build(), result);
+    verify(upsertService.jdbcTemplate, never()).batchUpdate(any(String.class), anyList());
+  }
+
+  @Test
+  void large_requests_are_looked_up_in_chunks() {
+    List<Restaurant> rows = new ArrayList<>();
+    List<String> firstNames = new ArrayList<>();
+    for (int i = 0; i < RestaurantUpsertService.LOOKUP_CHUNK + 1; i++) {
+      rows.add(restaurant(0L, "r" + i, "d"));
+      if (i < RestaurantUpsertService.LOOKUP_CHUNK) {
+        firstNames.add("r" + i);
+      }
+    }
+    rows.add(restaurant(7L, "Seven", "d"));
+
+    upsertService.upsert(rows);
+
+    verify(upsertService.restaurantRepository, times(1)).findAllByIdInOrNameIn(List.of(7L), firstNames);
+    verify(upsertService.restaurantRepository, times(2)).findAllByNameIn(List.of("r1000"));
+    verify(upsertService.restaurantRepository, times(1)).findAllByNameIn(firstNames);
+  }
+
+  @Test
+  void ndjson_lines_are_parsed_individually() throws Exception {
+    // arrange
+    String ndjson = String.join("\n",
+        "{\"name\":\"Habit\",\"description\":\"Burgers\"}",
+        "",
+        "not json",
+        "{\"id\":1,\"name\":\"Taco Bell\",\"description\":\"Fast food\"}");
+    when(upsertService.restaurantRepository.findAllByIdInOrNameIn(List.of(1L), List.of("Habit")))
+        .thenReturn(List.of(tacoBell));
+
+    // act
+    BulkUpsertResult result = upsertService.upsertNdjson(
+        new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+    // assert
+    assertEquals(1, result.getInserted());
+    assertEquals(1, result.getUpdated());
+    assertEquals(1, result.getRejected());
+    assertEquals(3, result.getErrors().get(0).getLine());
+    assertEquals(true, result.getErrors().get(0).getMessage().startsWith("invalid JSON: Unrecognized token 'not'"));
+  }
+
+  @Test
+  void only_the_first_errors_are_reported() {
+    List<Restaurant> rows = new ArrayList<>();
+    for (int i = 0; i < RestaurantUpsertService.MAX_REPORTED_ERRORS + 5; i++) {
+      rows.add(restaurant(0L, null, "nameless"));
+    }
+
+    BulkUpsertResult result = upsertService.upsert(rows);
+
+    assertEquals(RestaurantUpsertService.MAX_REPORTED_ERRORS + 5, result.getRejected());
+    assertEquals(RestaurantUpsertService.MAX_REPORTED_ERRORS, result.getErrors().size());
+  }
+
+  @Test
+  void index_is_updated_only_after_commit() {
+    when(upsertService.restaurantRepository.findAllByNameIn(List.of("Habit")))
+        .thenReturn(List.of())
+        .thenReturn(List.of(restaurant(4L, "Habit", "Burgers")));
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      upsertService.upsert(List.of(restaurant(0L, "Habit", "Burgers")));
+      verify(upsertService.restaurantIndexService, never()).put(any());
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    verify(upsertService.restaurantIndexService, times(1)).put(restaurant(4L, "Habit", "Burgers"));
+  }
+}
@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class TransactionHooksTests {
+
+  List<String> ran = new ArrayList<>();
+
+  @Test
+  void without_a_transaction_the_action_runs_now() {
+    TransactionHooks.afterCommit(() -> ran.add("now"));
+
+    assertEquals(List.of("now"), ran);
+  }
+
+  @Test
+  void in_a_transaction_the_action_runs_after_commit_only() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      TransactionHooks.afterCommit(() -> ran.add("committed"));
+      assertEquals(List.of(), ran);
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+      assertEquals(List.of(), ran);
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertEquals(List.of("committed"), ran);
+  }
+}
@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+class UCSBDateCalendarServiceTests {
+
+  UCSBDateCalendarService calendarService;
+
+  @BeforeEach
+  void setup() {
+    calendarService = new UCSBDateCalendarService();
+    calendarService.ucsbDateRepository = mock(UCSBDateRepository.class);
+    calendarService.entityManager = mock(EntityManager.class);
+  }
+
+  @Test
+  void writeQuarter_streams_one_event_per_date() throws Exception {
+    // arrange
+    UCSBDate first = UCSBDate.builder()
+        .id(1L)
+        .quarterYYYYQ("20222")
+        .name("First day; of classes, winter")
+        .localDateTime(LocalDateTime.parse("2022-01-03T08:00:00"))
+        .build();
+    UCSBDate noTime = UCSBDate.builder().id(2L).quarterYYYYQ("20222").name("tbd").build();
+
+    when(calendarService.ucsbDateRepository.streamAllByQuarterYYYYQOrderByLocalDateTimeAsc("20222"))
+        .thenReturn(Stream.of(first, noTime));
+
+    StringWriter out = new StringWriter();
+
+    // act
+    calendarService.writeQuarter("20222", 1640995200000L, out);
+
+    // assert
+    String expected = String.join("\r\n",
+        "BEGIN:VCALENDAR",
+        "VERSION:2.0",
+        "PRODID:-//UCSB CS156//UCSBDates//EN",
+        "CALSCALE:GREGORIAN",
+        "X-WR-CALNAME:UCSB dates 20222",
+        "BEGIN:VEVENT",
+        "UID:ucsbdate-1@ucsb-cs156",
+        "DTSTAMP:20220101T000000Z",
+        "DTSTART:20220103T080000",
+        "SUMMARY:First day\\; of classes\\, winter",
+        "END:VEVENT",
+        "END:VCALENDAR",
+        "");
+    assertEquals(expected, out.toString());
+    verify(calendarService.entityManager, times(1)).detach(first);
+    verify(calendarService.entityManager, times(1)).detach(noTime);
+  }
+
+  @Test
+  void escape_handles_special_characters() {
+    assertEquals("", UCSBDateCalendarService.escape(null));
+    assertEquals("a\\\\b\\nc\\nd\\ne", UCSBDateCalendarService.escape("a\\b\r\nc\nd\re"));
+  }
+
+  @Test
+  void long_lines_are_folded() throws Exception {
+    StringWriter out = new StringWriter();
+    String line = "x".repeat(75 + 74 + 3);
+
+    UCSBDateCalendarService.writeLine(out, line);
+
+    assertEquals("x".repeat(75) + "\r\n " + "x".repeat(74) + "\r\n " + "xxx\r\n", out.toString());
+  }
+
+  @Test
+  void lines_are_folded_on_utf8_octets_without_splitting_characters() throws Exception {
+    StringWriter out = new StringWriter();
+    // 73 octets, then a 3 octet character that does not fit in the first 75
+    String line = "x".repeat(73) + "\u65e5" + "\u00e9".repeat(37) + "\ud83d\ude00";
+
+    UCSBDateCalendarService.writeLine(out, line);
+
+    String[] lines = out.toString().split("\r\n");
+    assertEquals(3, lines.length);
+    assertEquals("x".repeat(73), lines[0]);
+    assertEquals(" \u65e5" + "\u00e9".repeat(35), lines[1]);
+    assertEquals(" \u00e9\u00e9\ud83d\ude00", lines[2]);
+    for (String folded : lines) {
+      assertTrue(folded.getBytes(StandardCharsets.UTF_8).length <= 75);
+    }
+    assertEquals(line, out.toString().replace("\r\n ", "").replace("\r\n", ""));
+  }
+
+  @Test
+  void utf8Length_counts_octets_per_code_point() {
+    assertEquals(1, UCSBDateCalendarService.utf8Length('x'));
+    assertEquals(2, UCSBDateCalendarService.utf8Length(0xe9));
+    assertEquals(3, UCSBDateCalendarService.utf8Length(0x65e5));
+    assertEquals(4, UCSBDateCalendarService.utf8Length(0x1f600));
+  }
+}
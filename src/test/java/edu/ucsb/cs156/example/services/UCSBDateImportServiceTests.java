@@ -0,0 +1,133 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.models.UCSBDateImportResult;
+
+class UCSBDateImportServiceTests {
+
+  UCSBDateImportService importService;
+  List<Integer> batchSizes = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    importService = new UCSBDateImportService();
+    importService.jdbcTemplate = mock(JdbcTemplate.class);
+    importService.defaultBatchSize = 2;
+    when(importService.jdbcTemplate.batchUpdate(eq(UCSBDateImportService.INSERT_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<?> rows = invocation.getArgument(1);
+          batchSizes.add(rows.size());
+          return new int[rows.size()];
+        });
+  }
+
+  private UCSBDateImportResult importText(String csv, Integer batchSize) throws Exception {
+    return importService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), batchSize);
+  }
+
+  @Test
+  void valid_rows_are_written_in_batches_and_bad_rows_reported() throws Exception {
+    String csv = String.join("\n",
+        "quarterYYYYQ,name,localDateTime",
+        "20222,firstDayOfClasses,2022-01-03T00:00:00",
+        "20222,\"mlk day, observed\",2022-01-17",
+        "",
+        "2022X,badQuarter,2022-01-03T00:00:00",
+        "20223,firstDayOfClasses,2022-03-28T00:00:00",
+        "20223,,2022-03-28T00:00:00",
+        "20223,badDate,March 28",
+        "20223,tooMany,2022-03-28,extra",
+        "20224,firstDayOfSummer,2022-06-20T00:00:00");
+
+    UCSBDateImportResult result = importText(csv, null);
+
+    assertEquals(8, result.getRowsRead());
+    assertEquals(4, result.getRowsImported());
+    assertEquals(4, result.getRowsRejected());
+    assertEquals(2, result.getBatchSize());
+    assertEquals(2, result.getBatches());
+    assertEquals(List.of(2, 2), batchSizes);
+    assertEquals(Set.of("20222", "20223", "20224"), result.getQuarters());
+    assertTrue(result.getElapsedMillis() >= 0);
+    assertTrue(result.getRowsPerSecond() >= 0);
+    assertEquals(List.of(
+        new ImportRowError(5, "invalid quarterYYYYQ '2022X'"),
+        new ImportRowError(7, "name is empty"),
+        new ImportRowError(8, "invalid ISO date 'March 28'"),
+        new ImportRowError(9, "expected 3 columns (quarterYYYYQ,name,localDateTime) but found 4")),
+        result.getErrors());
+  }
+
+  @Test
+  void trailing_partial_batch_is_flushed_and_batch_size_is_clamped() throws Exception {
+    String csv = "20222,a,2022-01-03T00:00:00\n20222,b,2022-01-04T00:00:00\n20222,c,2022-01-05T00:00:00\n";
+
+    UCSBDateImportResult result = importText(csv, 0);
+
+    assertEquals(1, result.getBatchSize());
+    assertEquals(3, result.getBatches());
+    assertEquals(List.of(1, 1, 1), batchSizes);
+
+    batchSizes.clear();
+    result = importText(csv, 1_000_000);
+    assertEquals(UCSBDateImportService.MAX_BATCH_SIZE, result.getBatchSize());
+    assertEquals(List.of(3), batchSizes);
+  }
+
+  @Test
+  void only_the_first_errors_are_reported() throws Exception {
+    String csv = "bad\n".repeat(UCSBDateImportService.MAX_REPORTED_ERRORS + 5);
+
+    UCSBDateImportResult result = importText(csv, null);
+
+    assertEquals(UCSBDateImportService.MAX_REPORTED_ERRORS + 5, result.getRowsRejected());
+    assertEquals(UCSBDateImportService.MAX_REPORTED_ERRORS, result.getErrors().size());
+    assertEquals(0, result.getBatches());
+    verify(importService.jdbcTemplate, times(0)).batchUpdate(eq(UCSBDateImportService.INSERT_SQL), anyList());
+  }
+
+  @Test
+  void parseRow_converts_to_insert_parameters() {
+    Object[] row = UCSBDateImportService.parseRow(" 20222 , firstDayOfClasses , 2022-01-03T08:30:00 ");
+    assertArrayEquals(new Object[] { "20222", "firstDayOfClasses",
+        Timestamp.valueOf(LocalDateTime.parse("2022-01-03T08:30:00")) }, row);
+  }
+
+  @Test
+  void splitCsvLine_handles_quotes() {
+    assertEquals(List.of("a", "b \"quoted\", too", ""), UCSBDateImportService.splitCsvLine("a,\"b \"\"quoted\"\", too\","));
+    assertEquals(List.of("a", "last"), UCSBDateImportService.splitCsvLine("a,\"last\""));
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+        () -> UCSBDateImportService.splitCsvLine("a,\"unterminated"));
+    assertEquals("unterminated quoted field", e.getMessage());
+  }
+
+  @Test
+  void header_detection() {
+    assertTrue(UCSBDateImportService.isHeader(" QuarterYYYYQ,name,localDateTime"));
+    assertEquals(false, UCSBDateImportService.isHeader("20222,quarterYYYYQ,2022-01-03"));
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+class UCSBDateIndexServiceTests {
+
+  UCSBDateIndexService index;
+
+  UCSBDate first = date(1L, "20222", "firstDayOfClasses", "2022-01-03T00:00:00");
+  UCSBDate holiday = date(2L, "20222", "mlkDay", "2022-01-17T00:00:00");
+  UCSBDate last = date(3L, "20222", "lastDayOfClasses", "2022-03-11T00:00:00");
+  UCSBDate spring = date(4L, "20223", "firstDayOfClasses", "2022-03-28T00:00:00");
+  UCSBDate sameTime = date(5L, "20222", "alsoMlkDay", "2022-01-17T00:00:00");
+
+  private static UCSBDate date(long id, String quarter, String name, String ldt) {
+    return UCSBDate.builder()
+        .id(id)
+        .quarterYYYYQ(quarter)
+        .name(name)
+        .localDateTime(LocalDateTime.parse(ldt))
+        .build();
+  }
+
+  private static LocalDateTime t(String ldt) {
+    return LocalDateTime.parse(ldt);
+  }
+
+  @BeforeEach
+  void setup() {
+    index = new UCSBDateIndexService();
+    index.rebuild(List.of(first, holiday, last, spring, sameTime));
+  }
+
+  @Test
+  void init_loads_from_repository() {
+    UCSBDateIndexService fresh = new UCSBDateIndexService();
+    fresh.ucsbDateRepository = mock(UCSBDateRepository.class);
+    when(fresh.ucsbDateRepository.findAll()).thenReturn(List.of(first, spring));
+
+    fresh.init();
+
+    assertEquals(2, fresh.size());
+    assertEquals(List.of(first, spring), fresh.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), null));
+  }
+
+  @Test
+  void range_is_inclusive_and_ordered_by_time_then_id() {
+    List<UCSBDate> result = index.range(t("2022-01-03T00:00:00"), t("2022-03-11T00:00:00"), null);
+    assertEquals(List.of(first, holiday, sameTime, last), result);
+  }
+
+  @Test
+  void range_can_be_limited_to_a_quarter() {
+    assertEquals(List.of(spring), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), "20223"));
+    assertEquals(List.of(), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), "20224"));
+  }
+
+  @Test
+  void range_with_from_after_to_is_empty() {
+    assertEquals(List.of(), index.range(t("2022-12-31T00:00:00"), t("2022-01-01T00:00:00"), null));
+  }
+
+  @Test
+  void put_moves_an_updated_date_to_its_new_position() {
+    UCSBDate moved = date(2L, "20223", "mlkDay", "2022-04-01T00:00:00");
+
+    index.put(moved);
+
+    assertEquals(5, index.size());
+    assertEquals(List.of(first, sameTime, last), index.range(t("2022-01-01T00:00:00"), t("2022-03-31T00:00:00"), "20222"));
+    assertEquals(List.of(spring, moved), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), "20223"));
+  }
+
+  @Test
+  void put_adds_a_new_date() {
+    UCSBDate added = date(6L, "20224", "firstDayOfSummer", "2022-06-20T00:00:00");
+
+    index.put(added);
+
+    assertEquals(6, index.size());
+    assertEquals(List.of(added), index.range(t("2022-06-01T00:00:00"), t("2022-06-30T00:00:00"), "20224"));
+  }
+
+  @Test
+  void remove_drops_a_date_and_empty_quarters() {
+    index.remove(4L);
+    index.remove(99L);
+
+    assertEquals(4, index.size());
+    assertEquals(List.of(), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), "20223"));
+  }
+
+  @Test
+  void dates_without_time_or_quarter_are_handled() {
+    index.put(UCSBDate.builder().id(7L).name("noTime").quarterYYYYQ("20222").build());
+    UCSBDate noQuarter = UCSBDate.builder().id(8L).name("noQuarter").localDateTime(t("2022-01-04T00:00:00")).build();
+    index.put(noQuarter);
+
+    assertEquals(6, index.size());
+    assertEquals(List.of(noQuarter), index.range(t("2022-01-04T00:00:00"), t("2022-01-04T00:00:00"), null));
+
+    index.remove(8L);
+    assertEquals(5, index.size());
+  }
+
+  @Test
+  void index_is_not_affected_by_later_mutation_of_callers_objects() {
+    UCSBDate mutable = date(9L, "20222", "mutable", "2022-02-01T00:00:00");
+    index.put(mutable);
+    mutable.setLocalDateTime(t("2030-01-01T00:00:00"));
+
+    List<UCSBDate> result = index.range(t("2022-02-01T00:00:00"), t("2022-02-01T00:00:00"), "20222");
+    assertEquals(1, result.size());
+    assertNotSame(mutable, result.get(0));
+    assertTrue(result.get(0).getLocalDateTime().equals(t("2022-02-01T00:00:00")));
+  }
+
+  @Test
+  void writes_change_the_etag_of_the_quarters_they_touch() {
+    String before20222 = index.etagForQuarter("20222");
+    String before20223 = index.etagForQuarter("20223");
+    long lastModifiedBefore = index.lastModifiedForQuarter("20223");
+
+    index.put(date(2L, "20223", "mlkDay", "2022-04-01T00:00:00"));
+    assertNotEquals(before20222, index.etagForQuarter("20222"));
+    assertNotEquals(before20223, index.etagForQuarter("20223"));
+    assertTrue(index.lastModifiedForQuarter("20223") >= lastModifiedBefore);
+
+    String afterPut = index.etagForQuarter("20223");
+    index.remove(4L);
+    assertNotEquals(afterPut, index.etagForQuarter("20223"));
+
+    String untouched = index.etagForQuarter("20224");
+    index.remove(99L);
+    index.put(UCSBDate.builder().id(10L).name("noQuarter").localDateTime(t("2022-01-04T00:00:00")).build());
+    assertEquals(untouched, index.etagForQuarter("20224"));
+    assertTrue(untouched.matches("\"\\d+-0\""));
+  }
+
+  @Test
+  void reloadQuarter_replaces_only_that_quarter() {
+    String before = index.etagForQuarter("20222");
+    UCSBDate imported = date(20L, "20222", "imported", "2022-02-14T00:00:00");
+
+    index.reloadQuarter("20222", List.of(first, imported));
+
+    assertEquals(3, index.size());
+    assertEquals(List.of(first, imported), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), "20222"));
+    assertEquals(List.of(first, imported, spring), index.range(t("2022-01-01T00:00:00"), t("2022-12-31T00:00:00"), null));
+    assertNotEquals(before, index.etagForQuarter("20222"));
+
+    index.reloadQuarter("20224", List.of());
+    assertEquals(3, index.size());
+  }
+}
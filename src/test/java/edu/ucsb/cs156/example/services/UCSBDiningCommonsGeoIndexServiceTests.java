@@ -0,0 +1,144 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.DiningCommonsDistance;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+class UCSBDiningCommonsGeoIndexServiceTests {
+
+  UCSBDiningCommonsGeoIndexService index;
+
+  UCSBDiningCommons carrillo = commons("carrillo", false, 34.409953, -119.85277);
+  UCSBDiningCommons dlg = commons("de-la-guerra", true, 34.409811, -119.845026);
+  UCSBDiningCommons ortega = commons("ortega", true, 34.410987, -119.84709);
+  UCSBDiningCommons portola = commons("portola", true, 34.417723, -119.867427);
+  UCSBDiningCommons nowhere = commons("nowhere", true, null, null);
+
+  private static UCSBDiningCommons commons(String code, boolean hasTakeOutMeal, Double latitude, Double longitude) {
+    return UCSBDiningCommons.builder()
+        .code(code)
+        .name(code)
+        .hasTakeOutMeal(hasTakeOutMeal)
+        .latitude(latitude)
+        .longitude(longitude)
+        .build();
+  }
+
+  private static List<String> codes(List<DiningCommonsDistance> distances) {
+    return distances.stream().map(d -> d.getCommons().getCode()).toList();
+  }
+
+  @BeforeEach
+  void setup() {
+    index = new UCSBDiningCommonsGeoIndexService();
+    index.rebuild(List.of(carrillo, dlg, ortega, portola, nowhere));
+  }
+
+  @Test
+  void init_loads_from_repository() {
+    UCSBDiningCommonsGeoIndexService fresh = new UCSBDiningCommonsGeoIndexService();
+    fresh.ucsbDiningCommonsRepository = mock(UCSBDiningCommonsRepository.class);
+    when(fresh.ucsbDiningCommonsRepository.findAll()).thenReturn(List.of(ortega));
+
+    fresh.init();
+
+    assertEquals(List.of("ortega"), codes(fresh.nearest(0, 0, 5, null)));
+  }
+
+  @Test
+  void nearest_first_with_haversine_distances() {
+    // Storke Tower
+    List<DiningCommonsDistance> nearest = index.nearest(34.412627, -119.848615, 2, null);
+
+    assertEquals(List.of("ortega", "de-la-guerra"), codes(nearest));
+    assertEquals(0.230, nearest.get(0).getDistanceKm(), 0.001);
+    assertEquals(0.454, nearest.get(1).getDistanceKm(), 0.001);
+  }
+
+  @Test
+  void take_out_filter_and_commons_without_coordinates() {
+    assertEquals(List.of("carrillo"), codes(index.nearest(34.41, -119.85, 4, false)));
+    assertEquals(List.of("de-la-guerra", "ortega", "portola"), codes(index.nearest(34.41, -119.845, 4, true)));
+  }
+
+  @Test
+  void put_and_remove_change_the_answers() {
+    index.remove("ortega");
+    index.put(commons("carrillo", false, 34.417, -119.867));
+
+    assertEquals(List.of("portola", "carrillo"), codes(index.nearest(34.4177, -119.8674, 2, null)));
+    assertEquals(List.of("de-la-guerra"), codes(index.nearest(34.410987, -119.84709, 1, null)));
+    assertEquals(4, index.size());
+  }
+
+  @Test
+  void removing_an_unknown_code_changes_nothing() {
+    index.remove("nope");
+
+    assertEquals(5, index.size());
+    assertEquals(List.of("ortega"), codes(index.nearest(34.410987, -119.84709, 1, null)));
+  }
+
+  @Test
+  void no_results_when_k_is_not_positive() {
+    assertEquals(List.of(), index.nearest(34.41, -119.85, 0, null));
+  }
+
+  @Test
+  void commons_missing_either_coordinate_are_not_indexed() {
+    index.rebuild(List.of(commons("no-longitude", true, 34.41, null), commons("no-latitude", true, null, -119.85)));
+
+    assertEquals(2, index.size());
+    assertEquals(List.of(), index.nearest(34.41, -119.85, 5, null));
+  }
+
+  @Test
+  void commons_at_the_same_spot_are_ordered_by_code() {
+    index.rebuild(List.of(commons("b", true, 34.41, -119.85), commons("a", true, 34.41, -119.85),
+        commons("c", true, 34.41, -119.85)));
+
+    assertEquals(List.of("a"), codes(index.nearest(34.41, -119.85, 1, null)));
+    assertEquals(List.of("a", "b", "c"), codes(index.nearest(34.41, -119.85, 3, null)));
+  }
+
+  @Test
+  void haversine_distance() {
+    // Santa Barbara to Los Angeles city hall, about 140 km
+    assertEquals(139.9, UCSBDiningCommonsGeoIndexService.haversineKm(34.4208, -119.6982, 34.0537, -118.2428), 0.1);
+    assertEquals(20015.1, UCSBDiningCommonsGeoIndexService.haversineKm(0, 0, 0, 180), 0.1);
+  }
+
+  @Test
+  void matches_a_full_scan_around_the_globe() {
+    Random random = new Random(156);
+    List<UCSBDiningCommons> all = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      all.add(commons("c" + i, random.nextBoolean(), random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    }
+    index.rebuild(all);
+
+    for (int q = 0; q < 50; q++) {
+      double lat = random.nextDouble() * 180 - 90;
+      double lon = random.nextDouble() * 360 - 180;
+      List<String> expected = all.stream()
+          .filter(UCSBDiningCommons::getHasTakeOutMeal)
+          .sorted(Comparator.comparingDouble(c -> UCSBDiningCommonsGeoIndexService.haversineKm(lat, lon, c.getLatitude(), c.getLongitude())))
+          .limit(7)
+          .map(UCSBDiningCommons::getCode)
+          .toList();
+      assertEquals(expected, codes(index.nearest(lat, lon, 7, true)));
+    }
+  }
+}
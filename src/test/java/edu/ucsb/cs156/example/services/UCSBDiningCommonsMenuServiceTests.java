@@ -0,0 +1,182 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.ImportRowError;
+import edu.ucsb.cs156.example.models.MenuReplaceResult;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+class UCSBDiningCommonsMenuServiceTests {
+
+  UCSBDiningCommonsMenuService menuService;
+  List<List<Object[]>> deletes = new ArrayList<>();
+  List<List<Object[]>> reviewDeletes = new ArrayList<>();
+  List<List<Object[]>> inserts = new ArrayList<>();
+
+  private static UCSBDiningCommonsMenuItem item(long id, String name, String station) {
+    return UCSBDiningCommonsMenuItem.builder().Id(id).diningCommonsCode("ortega").name(name).station(station).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    menuService = new UCSBDiningCommonsMenuService();
+    menuService.ucsbDiningCommonsMenuItemRepository = mock(UCSBDiningCommonsMenuItemRepository.class);
+    menuService.ucsbDiningCommonsSnapshotService = mock(UCSBDiningCommonsSnapshotService.class);
+    menuService.menuItemReviewTopService = mock(MenuItemReviewTopService.class);
+    menuService.menuItemReviewStatsService = mock(MenuItemReviewStatsService.class);
+    menuService.jdbcTemplate = mock(JdbcTemplate.class);
+    when(menuService.jdbcTemplate.batchUpdate(eq(UCSBDiningCommonsMenuService.DELETE_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          deletes.add(rows);
+          return new int[rows.size()];
+        });
+    when(menuService.jdbcTemplate.batchUpdate(eq(UCSBDiningCommonsMenuService.DELETE_REVIEWS_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          reviewDeletes.add(rows);
+          return new int[rows.size()];
+        });
+    when(menuService.jdbcTemplate.batchUpdate(eq(UCSBDiningCommonsMenuService.INSERT_SQL), anyList()))
+        .thenAnswer(invocation -> {
+          List<Object[]> rows = invocation.getArgument(1);
+          inserts.add(rows);
+          return new int[rows.size()];
+        });
+  }
+
+  @Test
+  void menu_is_diffed_by_name_and_station() {
+    // arrange
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega")).thenReturn(List.of(
+        item(1L, "Pizza", "Pizza"),
+        item(2L, "Lasagna", "Pasta"),
+        item(3L, "Salad", "Greens")));
+
+    // act
+    MenuReplaceResult result = menuService.replaceMenu("ortega", List.of(
+        item(0L, "Pizza", "Pizza"),
+        item(0L, "Lasagna", "Entree Specials"),
+        item(0L, "Tofu Banh Mi Sandwich", "Entree Specials")));
+
+    // assert
+    assertEquals(MenuReplaceResult.builder().inserted(2).deleted(2).unchanged(1).rejected(0).errors(List.of()).build(), result);
+    assertEquals(1, deletes.size());
+    assertEquals(List.of(2L, 3L), deletes.get(0).stream().map(row -> row[0]).toList());
+    assertEquals(1, inserts.size());
+    assertArrayEquals(new Object[] { "ortega", "Lasagna", "Entree Specials" }, inserts.get(0).get(0));
+    assertArrayEquals(new Object[] { "ortega", "Tofu Banh Mi Sandwich", "Entree Specials" }, inserts.get(0).get(1));
+    verify(menuService.ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("ortega");
+    verify(menuService.menuItemReviewTopService, times(1)).invalidate();
+  }
+
+  @Test
+  void reviews_of_deleted_items_are_deleted_first_and_their_stats_dropped() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenReturn(List.of(item(1L, "Pizza", "Pizza"), item(2L, "Salad", "Greens")));
+
+    menuService.replaceMenu("ortega", List.of(item(0L, "Pizza", "Pizza")));
+
+    assertEquals(List.of(2L), reviewDeletes.get(0).stream().map(row -> row[0]).toList());
+    InOrder order = inOrder(menuService.jdbcTemplate);
+    order.verify(menuService.jdbcTemplate).batchUpdate(eq(UCSBDiningCommonsMenuService.DELETE_REVIEWS_SQL), anyList());
+    order.verify(menuService.jdbcTemplate).batchUpdate(eq(UCSBDiningCommonsMenuService.DELETE_SQL), anyList());
+    verify(menuService.menuItemReviewStatsService, times(1)).removeItems(List.of(2L));
+  }
+
+  @Test
+  void unchanged_menu_writes_nothing() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenReturn(List.of(item(1L, "Pizza", "Pizza"), item(2L, "Soup", null)));
+
+    MenuReplaceResult result = menuService.replaceMenu("ortega", List.of(item(0L, "Soup", null), item(0L, "Pizza", "Pizza")));
+
+    assertEquals(2, result.getUnchanged());
+    verify(menuService.jdbcTemplate, never()).batchUpdate(any(String.class), anyList());
+  }
+
+  @Test
+  void duplicates_and_nameless_items_are_rejected() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenReturn(List.of(item(1L, "Pizza", "Pizza"), item(2L, "Pizza", "Pizza")));
+
+    MenuReplaceResult result = menuService.replaceMenu("ortega", List.of(
+        item(0L, "Pizza", "Pizza"),
+        item(0L, " ", "Pizza"),
+        item(0L, "Pizza", "Pizza")));
+
+    assertEquals(2, result.getRejected());
+    assertEquals(List.of(new ImportRowError(2, "name is empty"), new ImportRowError(3, "duplicate of item 1")), result.getErrors());
+    // the second current row with the same key is a duplicate too
+    assertEquals(1, result.getUnchanged());
+    assertEquals(1, result.getDeleted());
+    assertEquals(List.of(2L), deletes.get(0).stream().map(row -> row[0]).toList());
+  }
+
+  @Test
+  void empty_menu_deletes_everything() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenReturn(List.of(item(1L, "Pizza", "Pizza")));
+
+    MenuReplaceResult result = menuService.replaceMenu("ortega", List.of());
+
+    assertEquals(1, result.getDeleted());
+    verify(menuService.jdbcTemplate, never()).batchUpdate(eq(UCSBDiningCommonsMenuService.INSERT_SQL), anyList());
+  }
+
+  @Test
+  void snapshot_is_dropped_only_after_commit() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega")).thenReturn(List.of());
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      menuService.replaceMenu("ortega", List.of(item(0L, "Pizza", "Pizza")));
+      verify(menuService.ucsbDiningCommonsSnapshotService, never()).invalidateCommons(any());
+      verify(menuService.menuItemReviewTopService, never()).invalidate();
+      verify(menuService.menuItemReviewStatsService, never()).removeItems(any());
+
+      TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    verify(menuService.ucsbDiningCommonsSnapshotService, times(1)).invalidateCommons("ortega");
+    verify(menuService.menuItemReviewTopService, times(1)).invalidate();
+  }
+
+  @Test
+  void null_items_are_rejected_and_only_the_first_errors_are_reported() {
+    when(menuService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega")).thenReturn(List.of());
+    List<UCSBDiningCommonsMenuItem> menu = new ArrayList<>();
+    menu.add(null);
+    for (int i = 0; i < UCSBDiningCommonsMenuService.MAX_REPORTED_ERRORS + 5; i++) {
+      menu.add(item(0L, null, "Pizza"));
+    }
+
+    MenuReplaceResult result = menuService.replaceMenu("ortega", menu);
+
+    assertEquals(UCSBDiningCommonsMenuService.MAX_REPORTED_ERRORS + 6, result.getRejected());
+    assertEquals(UCSBDiningCommonsMenuService.MAX_REPORTED_ERRORS, result.getErrors().size());
+    assertEquals(new ImportRowError(1, "name is empty"), result.getErrors().get(0));
+  }
+}
@@ -0,0 +1,139 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+class UCSBDiningCommonsSnapshotServiceTests {
+
+  UCSBDiningCommonsSnapshotService snapshotService;
+  ObjectMapper mapper = new ObjectMapper();
+
+  UCSBDiningCommons ortega = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+  UCSBDiningCommonsMenuItem banhMi = item(1L, "ortega", "Tofu Banh Mi Sandwich", "Entree Specials");
+  UCSBDiningCommonsMenuItem chowder = item(2L, "ortega", "Chicken Chowder", "Soups");
+  UCSBDiningCommonsMenuItem bakedZiti = item(3L, "ortega", "Baked Ziti", "Entree Specials");
+  UCSBDiningCommonsMenuItem water = item(4L, "ortega", "Water", null);
+
+  private static UCSBDiningCommonsMenuItem item(long id, String code, String name, String station) {
+    return UCSBDiningCommonsMenuItem.builder().Id(id).diningCommonsCode(code).name(name).station(station).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    snapshotService = new UCSBDiningCommonsSnapshotService();
+    snapshotService.ucsbDiningCommonsRepository = mock(UCSBDiningCommonsRepository.class);
+    snapshotService.ucsbDiningCommonsMenuItemRepository = mock(UCSBDiningCommonsMenuItemRepository.class);
+    snapshotService.menuItemReviewStatsService = new MenuItemReviewStatsService();
+    snapshotService.mapper = mapper;
+    snapshotService.menuItemReviewStatsService.add(1L, 5);
+    snapshotService.menuItemReviewStatsService.add(1L, 4);
+    when(snapshotService.ucsbDiningCommonsRepository.findById("ortega")).thenReturn(Optional.of(ortega));
+    when(snapshotService.ucsbDiningCommonsRepository.findById("carrillo")).thenReturn(Optional.empty());
+    when(snapshotService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenReturn(List.of(banhMi, chowder, bakedZiti, water));
+  }
+
+  @Test
+  void items_are_grouped_by_station_with_their_ratings() throws Exception {
+    JsonNode snapshot = mapper.readTree(snapshotService.snapshot("ortega"));
+
+    assertEquals("Ortega", snapshot.get("commons").get("name").asText());
+    JsonNode stations = snapshot.get("stations");
+    List<String> names = new ArrayList<>();
+    stations.fieldNames().forEachRemaining(names::add);
+    assertEquals(List.of("", "Entree Specials", "Soups"), names);
+    JsonNode entrees = stations.get("Entree Specials");
+    assertEquals("Baked Ziti", entrees.get(0).get("name").asText());
+    assertEquals("Tofu Banh Mi Sandwich", entrees.get(1).get("name").asText());
+    assertEquals(mapper.readTree(mapper.writeValueAsString(snapshotService.menuItemReviewStatsService.get(1L))),
+        entrees.get(1).get("rating"));
+    assertEquals(0, stations.get("Soups").get(0).get("rating").get("count").asLong());
+  }
+
+  @Test
+  void snapshots_are_cached_until_invalidated() throws Exception {
+    byte[] first = snapshotService.snapshot("ortega");
+    assertSame(first, snapshotService.snapshot("ortega"));
+
+    snapshotService.invalidateCommons("ortega");
+    byte[] second = snapshotService.snapshot("ortega");
+
+    assertEquals(new String(first), new String(second));
+    verify(snapshotService.ucsbDiningCommonsMenuItemRepository, times(2)).findAllByDiningCommonsCode("ortega");
+  }
+
+  @Test
+  void a_review_invalidates_only_the_commons_of_its_item() throws Exception {
+    byte[] first = snapshotService.snapshot("ortega");
+
+    snapshotService.invalidateItem(99L);
+    assertSame(first, snapshotService.snapshot("ortega"));
+
+    snapshotService.menuItemReviewStatsService.add(2L, 3);
+    snapshotService.invalidateItem(2L);
+    JsonNode soups = mapper.readTree(snapshotService.snapshot("ortega")).get("stations").get("Soups");
+    assertEquals(1, soups.get(0).get("rating").get("count").asLong());
+  }
+
+  @Test
+  void invalidate_all_drops_every_snapshot() throws Exception {
+    snapshotService.snapshot("ortega");
+
+    snapshotService.invalidateAll();
+    snapshotService.snapshot("ortega");
+
+    verify(snapshotService.ucsbDiningCommonsRepository, times(2)).findById("ortega");
+  }
+
+  @Test
+  void a_snapshot_built_across_an_invalidation_is_not_cached() throws Exception {
+    when(snapshotService.ucsbDiningCommonsMenuItemRepository.findAllByDiningCommonsCode("ortega"))
+        .thenAnswer(invocation -> {
+          snapshotService.invalidateCommons("ortega");
+          return List.of(banhMi);
+        });
+
+    byte[] first = snapshotService.snapshot("ortega");
+    byte[] second = snapshotService.snapshot("ortega");
+
+    assertNotSame(first, second);
+    verify(snapshotService.ucsbDiningCommonsMenuItemRepository, times(2)).findAllByDiningCommonsCode("ortega");
+  }
+
+  @Test
+  void invalidating_a_commons_without_a_snapshot_keeps_the_others() throws Exception {
+    byte[] first = snapshotService.snapshot("ortega");
+
+    snapshotService.invalidateCommons("carrillo");
+
+    assertSame(first, snapshotService.snapshot("ortega"));
+  }
+
+  @Test
+  void missing_commons_are_not_found() {
+    EntityNotFoundException e = assertThrows(EntityNotFoundException.class, () -> snapshotService.snapshot("carrillo"));
+    assertEquals("UCSBDiningCommons with id carrillo not found", e.getMessage());
+  }
+}
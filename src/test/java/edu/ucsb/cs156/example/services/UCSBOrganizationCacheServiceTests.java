@@ -0,0 +1,230 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.models.CacheStats;
+import edu.ucsb.cs156.example.models.OrganizationBatch;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+class UCSBOrganizationCacheServiceTests {
+
+  UCSBOrganizationCacheService cacheService;
+  ObjectMapper mapper = new ObjectMapper();
+
+  UCSBOrganization zpr = organization("ZPR", "Zeta Phi Rho", false);
+  UCSBOrganization sky = organization("SKY", "Skydiving Club", true);
+
+  private static UCSBOrganization organization(String code, String name, boolean inactive) {
+    return UCSBOrganization.builder().orgCode(code).orgTranslationShort(name).orgTranslation(name).inactive(inactive).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    cacheService = new UCSBOrganizationCacheService();
+    cacheService.ucsbOrganizationRepository = mock(UCSBOrganizationRepository.class);
+    cacheService.mapper = mapper;
+    cacheService.maxEntries = 2;
+    when(cacheService.ucsbOrganizationRepository.findById("ZPR")).thenReturn(Optional.of(zpr));
+    when(cacheService.ucsbOrganizationRepository.findById("SKY")).thenReturn(Optional.of(sky));
+    when(cacheService.ucsbOrganizationRepository.findById("OSLI")).thenReturn(Optional.of(organization("OSLI", "Student Life", false)));
+    when(cacheService.ucsbOrganizationRepository.findById("NONE")).thenReturn(Optional.empty());
+    when(cacheService.ucsbOrganizationRepository.findAll()).thenReturn(List.of(zpr, sky));
+  }
+
+  @Test
+  void organizations_are_read_through_once() {
+    assertEquals(Optional.of(zpr), cacheService.get("ZPR"));
+    assertEquals(Optional.of(zpr), cacheService.get("ZPR"));
+    assertEquals(Optional.empty(), cacheService.get("NONE"));
+
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findById("ZPR");
+    CacheStats stats = cacheService.stats();
+    assertEquals(1, stats.getHits());
+    assertEquals(2, stats.getMisses());
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  void callers_cannot_change_the_cached_organization() {
+    cacheService.get("ZPR").get().setOrgTranslation("changed");
+    UCSBOrganization cached = cacheService.get("ZPR").get();
+
+    assertEquals("Zeta Phi Rho", cached.getOrgTranslation());
+    assertNotSame(cached, cacheService.get("ZPR").get());
+  }
+
+  @Test
+  void least_recently_used_organization_is_evicted() {
+    cacheService.get("ZPR");
+    cacheService.get("SKY");
+    cacheService.get("ZPR");
+    cacheService.get("OSLI");
+    cacheService.get("ZPR");
+    cacheService.get("SKY");
+
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findById("ZPR");
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findById("SKY");
+    CacheStats stats = cacheService.stats();
+    assertEquals(2, stats.getEvictions());
+    assertEquals(2, stats.getSize());
+  }
+
+  @Test
+  void all_json_is_serialized_once_until_a_write() throws Exception {
+    byte[] first = cacheService.allJson();
+    assertEquals(mapper.writeValueAsString(List.of(zpr, sky)), new String(first));
+    assertSame(first, cacheService.allJson());
+
+    cacheService.evict("SKY");
+    cacheService.allJson();
+
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findAll();
+  }
+
+  @Test
+  void all_json_serialized_during_a_write_is_not_kept() throws Exception {
+    when(cacheService.ucsbOrganizationRepository.findAll()).thenAnswer(invocation -> {
+      cacheService.evict("SKY");
+      return List.of(zpr, sky);
+    });
+
+    byte[] first = cacheService.allJson();
+    byte[] second = cacheService.allJson();
+
+    assertNotSame(first, second);
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findAll();
+  }
+
+  @Test
+  void writes_replace_or_drop_only_their_organization() {
+    cacheService.get("ZPR");
+    cacheService.get("SKY");
+
+    UCSBOrganization renamed = organization("ZPR", "Zeta", false);
+    cacheService.put(renamed);
+    cacheService.evict("SKY");
+
+    assertEquals(Optional.of(renamed), cacheService.get("ZPR"));
+    cacheService.get("SKY");
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findById("ZPR");
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findById("SKY");
+    assertEquals(2, cacheService.stats().getInvalidations());
+  }
+
+  @Test
+  void value_loaded_during_a_write_is_not_kept() {
+    when(cacheService.ucsbOrganizationRepository.findById("ZPR")).thenAnswer(invocation -> {
+      cacheService.evict("ZPR");
+      return Optional.of(zpr);
+    });
+
+    cacheService.get("ZPR");
+    cacheService.get("ZPR");
+
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findById("ZPR");
+  }
+
+  @Test
+  void batches_use_the_cache_and_one_query_for_the_rest() {
+    cacheService.get("SKY");
+    when(cacheService.ucsbOrganizationRepository.findAllById(List.of("ZPR", "NONE"))).thenReturn(List.of(zpr));
+
+    OrganizationBatch batch = cacheService.getAll(List.of("ZPR", "SKY", "NONE", "ZPR"));
+
+    assertEquals(List.of("ZPR", "SKY"), new ArrayList<>(batch.getOrganizations().keySet()));
+    assertEquals(zpr, batch.getOrganizations().get("ZPR"));
+    assertEquals(sky, batch.getOrganizations().get("SKY"));
+    assertEquals(List.of("NONE"), batch.getMissing());
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findAllById(List.of("ZPR", "NONE"));
+
+    // the loaded organization is now cached
+    cacheService.getAll(List.of("ZPR"));
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findAllById(any());
+  }
+
+  @Test
+  void batch_loaded_during_a_write_is_returned_but_not_kept() {
+    when(cacheService.ucsbOrganizationRepository.findAllById(List.of("ZPR"))).thenAnswer(invocation -> {
+      cacheService.evict("SKY");
+      return List.of(zpr);
+    });
+
+    assertEquals(zpr, cacheService.getAll(List.of("ZPR")).getOrganizations().get("ZPR"));
+    assertEquals(zpr, cacheService.getAll(List.of("ZPR")).getOrganizations().get("ZPR"));
+
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findAllById(List.of("ZPR"));
+  }
+
+  @Test
+  void batch_of_cached_codes_makes_no_query() {
+    cacheService.get("SKY");
+
+    OrganizationBatch batch = cacheService.getAll(List.of("SKY"));
+
+    assertEquals(List.of(), batch.getMissing());
+    verify(cacheService.ucsbOrganizationRepository, never()).findAllById(any());
+  }
+
+  @Test
+  void partitions_are_loaded_once_and_kept_current_on_writes() throws Exception {
+    UCSBOrganization osli = organization("OSLI", "Student Life", false);
+    when(cacheService.ucsbOrganizationRepository.findAllByInactive(false)).thenReturn(List.of(zpr, osli));
+    when(cacheService.ucsbOrganizationRepository.findAllByInactive(true)).thenReturn(List.of(sky));
+
+    assertEquals(mapper.writeValueAsString(List.of(osli, zpr)), new String(cacheService.partitionJson(false)));
+    byte[] inactive = cacheService.partitionJson(true);
+    assertEquals(mapper.writeValueAsString(List.of(sky)), new String(inactive));
+
+    UCSBOrganization dormantZpr = organization("ZPR", "Zeta Phi Rho", true);
+    cacheService.put(dormantZpr);
+    cacheService.evict("OSLI");
+    UCSBOrganization ace = organization("ACE", "Ace", false);
+    cacheService.put(ace);
+
+    assertEquals(mapper.writeValueAsString(List.of(ace)), new String(cacheService.partitionJson(false)));
+    assertEquals(mapper.writeValueAsString(List.of(sky, dormantZpr)), new String(cacheService.partitionJson(true)));
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findAllByInactive(false);
+    verify(cacheService.ucsbOrganizationRepository, times(1)).findAllByInactive(true);
+  }
+
+  @Test
+  void partition_loaded_during_a_write_is_not_kept() throws Exception {
+    when(cacheService.ucsbOrganizationRepository.findAllByInactive(true)).thenAnswer(invocation -> {
+      cacheService.evict("ZPR");
+      return List.of(sky);
+    });
+
+    cacheService.partitionJson(true);
+    cacheService.partitionJson(true);
+
+    verify(cacheService.ucsbOrganizationRepository, times(2)).findAllByInactive(true);
+  }
+
+  @Test
+  void partition_json_is_kept_when_a_write_does_not_touch_it() throws Exception {
+    when(cacheService.ucsbOrganizationRepository.findAllByInactive(true)).thenReturn(List.of(sky));
+    byte[] inactive = cacheService.partitionJson(true);
+
+    cacheService.put(organization("ACE", "Ace", false));
+
+    assertSame(inactive, cacheService.partitionJson(true));
+  }
+}